@@ -32,6 +32,7 @@ import javax.swing.JOptionPane;
 import loci.visbio.state.Dynamic;
 import loci.visbio.state.SaveException;
 import loci.visbio.util.DataUtil;
+import loci.visbio.util.ObjectUtil;
 import loci.visbio.util.XMLUtil;
 import loci.visbio.view.TransformLink;
 
@@ -41,7 +42,6 @@ import visad.Data;
 import visad.FlatField;
 import visad.FunctionType;
 import visad.Gridded3DSet;
-import visad.RealTuple;
 import visad.RealTupleType;
 import visad.RealType;
 import visad.ScalarMap;
@@ -97,6 +97,28 @@ public class ArbitrarySlice extends DataTransform implements TransformListener {
 	/** Controls for the arbitrary slice. */
 	protected SliceWidget controls;
 
+	/** Synchronization object for the volume buffer and most recent slice. */
+	protected Object volumeSync = new Object();
+
+	/**
+	 * Parent image planes along the slicing axis, as primitive samples indexed
+	 * by [plane][range component][pixel]. The volume is kept across calls so
+	 * that moving the slicing plane does not reread the parent data.
+	 */
+	protected float[][][] volume;
+
+	/** Dimensional position to which the volume buffer corresponds. */
+	protected int[] volumePos;
+
+	/** Most recently computed slice data. */
+	protected Data lastSlice;
+
+	/** Dimensional position to which the most recent slice data corresponds. */
+	protected int[] lastSlicePos;
+
+	/** Dimensionality for which the most recent slice data was computed. */
+	protected int lastSliceDim;
+
 	// -- Constructor --
 
 	/** Creates an uninitialized arbitrary slice. */
@@ -122,6 +144,7 @@ public class ArbitrarySlice extends DataTransform implements TransformListener {
 		if (this.axis != axis) {
 			this.axis = axis;
 			computeLengths();
+			clearVolume();
 		}
 		if (this.yaw == yaw && this.pitch == pitch && this.loc == loc &&
 			this.res == res && this.showLine == showLine && this.compute == compute)
@@ -134,6 +157,9 @@ public class ArbitrarySlice extends DataTransform implements TransformListener {
 		this.res = res;
 		this.showLine = showLine;
 		this.compute = compute;
+		synchronized (volumeSync) {
+			lastSlice = null;
+		}
 		controls.refreshWidget();
 		notifyListeners(new TransformEvent(this));
 	}
@@ -252,6 +278,14 @@ public class ArbitrarySlice extends DataTransform implements TransformListener {
 			System.err.println(name + ": invalid dimensionality (" + dim + ")");
 			return null;
 		}
+		synchronized (volumeSync) {
+			if (lastSlice != null && lastSliceDim == dim &&
+				ObjectUtil.arraysEqual(pos, lastSlicePos))
+			{
+				// slice parameters and position are unchanged since last computation
+				return lastSlice;
+			}
+		}
 
 		// get some info from the parent transform
 		final ImageTransform it = (ImageTransform) parent;
@@ -363,114 +397,92 @@ public class ArbitrarySlice extends DataTransform implements TransformListener {
 			final float q4y = h * (ly + T4COS * ry + T4SIN * sy + 1) / 2;
 			final float q4z = n * (lz + T4COS * rz + T4SIN * sz + 1) / 2;
 
-			// retrieve parent data from data cache
-			final int[] npos = getParentPos(pos);
-			final FlatField[] fields = new FlatField[n];
-			for (int i = 0; i < n; i++) {
-				npos[axis] = i;
-				final Data data = parent.getData(link, npos, 2, cache);
-				if (data == null || !(data instanceof FlatField)) {
-					System.err.println(name + ": parent image plane #" + (i + 1) +
-						" is not valid");
-					return null;
-				}
-				fields[i] = (FlatField) data;
-			}
+			// retrieve parent data, reusing the volume buffer when possible
+			final long bytes =
+				TileExecutor.getPlaneBytes(w, h, range.length) * n +
+					TileExecutor.getPlaneBytes(res, res, range.length + 3);
+			TileExecutor.acquire(bytes, cache);
 			try {
-				// use image transform's recommended MathType and Units
-				for (int i = 0; i < n; i++) {
-					fields[i] = DataUtil.switchType(fields[i], imageType, imageUnits);
-				}
-			}
-			catch (final VisADException exc) {
-				exc.printStackTrace();
-			}
-			catch (final RemoteException exc) {
-				exc.printStackTrace();
-			}
-
-			// generate planar domain samples and corresponding interpolated values
-			final int res1 = res - 1;
-			final float[][] planeSamples = new float[3][res * res];
-			final float[][] planeValues = new float[range.length][res * res];
-			for (int r = 0; r < res; r++) {
-				final float rr = (float) r / res1;
-				final float xmin = (1 - rr) * q1x + rr * q3x;
-				final float ymin = (1 - rr) * q1y + rr * q3y;
-				final float zmin = (1 - rr) * q1z + rr * q3z;
-				final float xmax = (1 - rr) * q2x + rr * q4x;
-				final float ymax = (1 - rr) * q2y + rr * q4y;
-				final float zmax = (1 - rr) * q2z + rr * q4z;
-				for (int c = 0; c < res; c++) {
-					final float cc = (float) c / res1;
-					final int ndx = r * res + c;
-					final float xs = planeSamples[0][ndx] = (1 - cc) * xmin + cc * xmax;
-					float ys = planeSamples[1][ndx] = (1 - cc) * ymin + cc * ymax;
-					ys = h - ys; // lines are flipped
-					final float zs = planeSamples[2][ndx] = (1 - cc) * zmin + cc * zmax;
-					if (xs < 0 || ys < 0 || zs < 0 || xs > w - 1 || ys > h - 1 ||
-						zs > n - 1)
-					{
-						// this pixel is outside the range of the data (missing)
-						for (int k = 0; k < planeValues.length; k++) {
-							planeValues[k][ndx] = Float.NaN;
+				final float[][][] planes =
+					loadVolume(link, pos, n, range.length, imageType, imageUnits, cache);
+				if (planes == null) return null;
+
+				// generate planar domain samples and interpolated values, in parallel
+				// bands of rows
+				final int res1 = res - 1;
+				final float[][] planeSamples = new float[3][res * res];
+				final float[][] planeValues = new float[range.length][res * res];
+				final int minRows = Math.max(1, TileExecutor.MIN_TILE_SIZE / res);
+				TileExecutor.run(res, minRows, new TileExecutor.TileOp() {
+
+					@Override
+					public void run(final int start, final int end) {
+						for (int r = start; r < end; r++) {
+							final float rr = (float) r / res1;
+							final float xmin = (1 - rr) * q1x + rr * q3x;
+							final float ymin = (1 - rr) * q1y + rr * q3y;
+							final float zmin = (1 - rr) * q1z + rr * q3z;
+							final float xmax = (1 - rr) * q2x + rr * q4x;
+							final float ymax = (1 - rr) * q2y + rr * q4y;
+							final float zmax = (1 - rr) * q2z + rr * q4z;
+							for (int c = 0; c < res; c++) {
+								final float cc = (float) c / res1;
+								final int ndx = r * res + c;
+								final float xs =
+									planeSamples[0][ndx] = (1 - cc) * xmin + cc * xmax;
+								float ys =
+									planeSamples[1][ndx] = (1 - cc) * ymin + cc * ymax;
+								ys = h - ys; // lines are flipped
+								final float zs =
+									planeSamples[2][ndx] = (1 - cc) * zmin + cc * zmax;
+								if (xs < 0 || ys < 0 || zs < 0 || xs > w - 1 ||
+									ys > h - 1 || zs > n - 1)
+								{
+									// this pixel is outside the range of the data (missing)
+									for (int k = 0; k < planeValues.length; k++) {
+										planeValues[k][ndx] = Float.NaN;
+									}
+								}
+								else {
+									// interpolate the value of this pixel for each range
+									// component
+									final int xx = (int) xs, yy = (int) ys, zz = (int) zs;
+									final float wx = xs - xx, wy = ys - yy, wz = zs - zz;
+
+									final int xx1 = xx < w - 1 ? xx + 1 : xx;
+									final int yy1 = yy < h - 1 ? yy + 1 : yy;
+									final int ndx00 = w * yy + xx;
+									final int ndx10 = w * yy + xx1;
+									final int ndx01 = w * yy1 + xx;
+									final int ndx11 = w * yy1 + xx1;
+
+									// interpolate from a single plane if z0 == z1
+									final float[][] plane0 = planes[zz];
+									final float[][] plane1 =
+										wz == 0 ? plane0 : planes[zz + 1];
+
+									for (int k = 0; k < range.length; k++) {
+										final float[] s0 = plane0[k], s1 = plane1[k];
+										// tri-linear interpolation (x, then y, then z)
+										final float vx00 =
+											(1 - wx) * s0[ndx00] + wx * s0[ndx10];
+										final float vx10 =
+											(1 - wx) * s0[ndx01] + wx * s0[ndx11];
+										final float vx01 =
+											(1 - wx) * s1[ndx00] + wx * s1[ndx10];
+										final float vx11 =
+											(1 - wx) * s1[ndx01] + wx * s1[ndx11];
+										final float vxy0 = (1 - wy) * vx00 + wy * vx10;
+										final float vxy1 = (1 - wy) * vx01 + wy * vx11;
+										final float vxyz = (1 - wz) * vxy0 + wz * vxy1;
+										planeValues[k][ndx] = vxyz;
+									}
+								}
+							}
 						}
 					}
-					else {
-						// interpolate the value of this pixel for each range component
-						final int xx = (int) xs, yy = (int) ys, zz = (int) zs;
-						final float wx = xs - xx, wy = ys - yy, wz = zs - zz;
-
-						final int ndx00 = w * yy + xx;
-						final int ndx10 = w * yy + xx + 1;
-						final int ndx01 = w * (yy + 1) + xx;
-						final int ndx11 = w * (yy + 1) + xx + 1;
-
-						FlatField field0, field1;
-						if (wz == 0) {
-							// interpolate from a single field (z0 == z1)
-							field0 = field1 = fields[zz];
-						}
-						else {
-							// interpolate between two fields
-							field0 = fields[zz];
-							field1 = fields[zz + 1];
-						}
+				});
 
-						double[] v000 = null, v100 = null, v010 = null, v110 = null;
-						double[] v001 = null, v101 = null, v011 = null, v111 = null;
-						try {
-							v000 = ((RealTuple) field0.getSample(ndx00)).getValues();
-							v100 = ((RealTuple) field0.getSample(ndx10)).getValues();
-							v010 = ((RealTuple) field0.getSample(ndx01)).getValues();
-							v110 = ((RealTuple) field0.getSample(ndx11)).getValues();
-							v001 = ((RealTuple) field1.getSample(ndx00)).getValues();
-							v101 = ((RealTuple) field1.getSample(ndx10)).getValues();
-							v011 = ((RealTuple) field1.getSample(ndx01)).getValues();
-							v111 = ((RealTuple) field1.getSample(ndx11)).getValues();
-						}
-						catch (final VisADException exc) {
-							exc.printStackTrace();
-						}
-						catch (final RemoteException exc) {
-							exc.printStackTrace();
-						}
-
-						for (int k = 0; k < range.length; k++) {
-							// tri-linear interpolation (x, then y, then z)
-							final float vx00 = (float) ((1 - wx) * v000[k] + wx * v100[k]);
-							final float vx10 = (float) ((1 - wx) * v010[k] + wx * v110[k]);
-							final float vx01 = (float) ((1 - wx) * v001[k] + wx * v101[k]);
-							final float vx11 = (float) ((1 - wx) * v011[k] + wx * v111[k]);
-							final float vxy0 = (1 - wy) * vx00 + wy * vx10;
-							final float vxy1 = (1 - wy) * vx01 + wy * vx11;
-							final float vxyz = (1 - wz) * vxy0 + wz * vxy1;
-							planeValues[k][ndx] = vxyz;
-						}
-					}
-				}
-			}
-			try {
 				final FunctionType planeType =
 					new FunctionType(xyz, imageType.getRange());
 				// set must be gridded, not linear, because ManifoldDimension is 2
@@ -487,6 +499,9 @@ public class ArbitrarySlice extends DataTransform implements TransformListener {
 			catch (final RemoteException exc) {
 				exc.printStackTrace();
 			}
+			finally {
+				TileExecutor.release(bytes);
+			}
 		}
 		else { // construct bounding circle
 			// compute circle coordinates from orthonormal basis
@@ -519,7 +534,13 @@ public class ArbitrarySlice extends DataTransform implements TransformListener {
 		final Data[] data =
 			showLine ? new Data[] { slice, line } : new Data[] { slice };
 		try {
-			return new Tuple(data, false);
+			final Tuple tuple = new Tuple(data, false);
+			synchronized (volumeSync) {
+				lastSlice = tuple;
+				lastSlicePos = ObjectUtil.copy(pos);
+				lastSliceDim = dim;
+			}
+			return tuple;
 		}
 		catch (final VisADException exc) {
 			exc.printStackTrace();
@@ -621,6 +642,8 @@ public class ArbitrarySlice extends DataTransform implements TransformListener {
 			compute = data.compute;
 		}
 
+		clearVolume();
+
 		computeLengths();
 		controls = new SliceWidget(this);
 	}
@@ -663,6 +686,8 @@ public class ArbitrarySlice extends DataTransform implements TransformListener {
 	public void transformChanged(final TransformEvent e) {
 		final int id = e.getId();
 		if (id == TransformEvent.DATA_CHANGED) {
+			// parent data is different now; discard buffered volume
+			clearVolume();
 			initState(null);
 			notifyListeners(new TransformEvent(this));
 		}
@@ -696,6 +721,74 @@ public class ArbitrarySlice extends DataTransform implements TransformListener {
 		makeLabels();
 	}
 
+	/** Discards the buffered volume and most recent slice. */
+	private void clearVolume() {
+		synchronized (volumeSync) {
+			volume = null;
+			volumePos = null;
+			lastSlice = null;
+			lastSlicePos = null;
+		}
+	}
+
+	/**
+	 * Gets the parent planes along the slicing axis at the given dimensional
+	 * position, converted to the image transform's recommended MathType and
+	 * units. The parent is only consulted when the position differs from that
+	 * of the buffered volume.
+	 * 
+	 * @return null if the parent data could not be obtained
+	 */
+	private float[][][] loadVolume(final TransformLink link, final int[] pos,
+		final int n, final int numRange, final FunctionType imageType,
+		final Unit[] imageUnits, final DataCache cache)
+	{
+		synchronized (volumeSync) {
+			if (volume != null && volume.length == n &&
+				ObjectUtil.arraysEqual(pos, volumePos))
+			{
+				return volume;
+			}
+		}
+		clearVolume();
+
+		final float[][][] vol = new float[n][][];
+		final int[] npos = getParentPos(pos);
+		for (int i = 0; i < n; i++) {
+			npos[axis] = i;
+			final Data data = getParentData(link, npos, 2, cache);
+			if (data == null || !(data instanceof FlatField)) {
+				System.err.println(name + ": parent image plane #" + (i + 1) +
+					" is not valid");
+				return null;
+			}
+			try {
+				// use image transform's recommended MathType and Units
+				final FlatField field =
+					DataUtil.switchType((FlatField) data, imageType, imageUnits);
+				vol[i] = field.getFloats(false);
+			}
+			catch (final VisADException exc) {
+				exc.printStackTrace();
+				return null;
+			}
+			catch (final RemoteException exc) {
+				exc.printStackTrace();
+				return null;
+			}
+			if (vol[i] == null || vol[i].length < numRange) {
+				System.err.println(name + ": parent image plane #" + (i + 1) +
+					" has too few range components");
+				return null;
+			}
+		}
+		synchronized (volumeSync) {
+			volume = vol;
+			volumePos = ObjectUtil.copy(pos);
+		}
+		return vol;
+	}
+
 	/** Gets dimensional position for parent transform. */
 	private int[] getParentPos(final int[] pos) {
 		final int[] npos = new int[pos.length + 1];
@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.data;
+
+import java.util.Arrays;
+
+/**
+ * Immutable key identifying a data object in a {@link DataCache}: a data
+ * transform (by instance and parameter version), a dimensional position and a
+ * variant string. The hash code is computed once, at construction.
+ */
+public class CacheKey {
+
+	// -- Fields --
+
+	/** Instance id number of the data transform. */
+	private final int instanceId;
+
+	/** Parameter version of the data transform when this key was made. */
+	private final int version;
+
+	/** Dimensional position. */
+	private final int[] pos;
+
+	/** Variant string distinguishing several objects at one position. */
+	private final String variant;
+
+	/** Cached hash code. */
+	private final int hash;
+
+	// -- Constructor --
+
+	/** Constructs a key for the given transform, position and variant. */
+	public CacheKey(final DataTransform trans, final int[] pos,
+		final String variant)
+	{
+		instanceId = trans.getInstanceId();
+		version = trans.getVersion();
+		this.pos = (int[]) pos.clone();
+		this.variant = variant == null ? "" : variant;
+		int h = instanceId;
+		h = 31 * h + version;
+		h = 31 * h + Arrays.hashCode(this.pos);
+		h = 31 * h + this.variant.hashCode();
+		hash = h;
+	}
+
+	// -- CacheKey API methods --
+
+	/** Gets the instance id number of the data transform. */
+	public int getInstanceId() {
+		return instanceId;
+	}
+
+	/** Gets the parameter version of the data transform. */
+	public int getVersion() {
+		return version;
+	}
+
+	/** Gets the variant string. */
+	public String getVariant() {
+		return variant;
+	}
+
+	// -- Object API methods --
+
+	/** Tests whether the given object is an equivalent key. */
+	@Override
+	public boolean equals(final Object o) {
+		if (o == this) return true;
+		if (!(o instanceof CacheKey)) return false;
+		final CacheKey key = (CacheKey) o;
+		return hash == key.hash && instanceId == key.instanceId &&
+			version == key.version && variant.equals(key.variant) &&
+			Arrays.equals(pos, key.pos);
+	}
+
+	/** Gets the hash code computed at construction. */
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	/** Gets a string representation of this key, for debugging. */
+	@Override
+	public String toString() {
+		final StringBuffer sb = new StringBuffer();
+		sb.append(instanceId);
+		sb.append(".");
+		sb.append(version);
+		sb.append("[");
+		for (int i = 0; i < pos.length; i++) {
+			if (i > 0) sb.append(",");
+			sb.append(pos[i]);
+		}
+		sb.append("]");
+		sb.append(variant);
+		return sb.toString();
+	}
+
+}
@@ -38,10 +38,13 @@ import org.w3c.dom.Element;
 
 import visad.Data;
 import visad.FlatField;
+import visad.FloatSet;
 import visad.FunctionType;
+import visad.ImageFlatField;
 import visad.MathType;
 import visad.RealTupleType;
 import visad.RealType;
+import visad.Set;
 import visad.VisADException;
 
 /**
@@ -155,16 +158,20 @@ public class CollapseTransform extends ImageTransform {
 	{
 		if (dim != 2) return null;
 
-		final int len = parent.getLengths()[axis];
-		final FlatField[] fields = new FlatField[len];
-		final int[] npos = getParentPos(pos);
-		for (int i = 0; i < len; i++) {
-			npos[axis] = i;
-			final Data data = parent.getData(link, npos, dim, cache);
-			if (data == null || !(data instanceof FlatField)) return null;
-			fields[i] = (FlatField) data;
+		if (cache != null && cache.hasData(this, pos, null)) {
+			return cache.getData(this, pos, null, dim);
+		}
+
+		final long bytes =
+			TileExecutor.getPlaneBytes(getImageWidth(), getImageHeight(),
+				range.length);
+		TileExecutor.acquire(bytes, cache);
+		try {
+			return collapse(link, pos, dim, cache);
+		}
+		finally {
+			TileExecutor.release(bytes);
 		}
-		return collapse(fields, range);
 	}
 
 	/** Gets whether this transform provides data of the given dimensionality. */
@@ -258,7 +265,10 @@ public class CollapseTransform extends ImageTransform {
 
 	// -- Utility methods --
 
-	/** Collapses the given fields. */
+	/**
+	 * Collapses the given fields. The collapsed field references the sample
+	 * arrays of any float-backed input fields directly, rather than copying them.
+	 */
 	public static FlatField collapse(final FlatField[] fields,
 		final RealType[] types)
 	{
@@ -298,6 +308,62 @@ public class CollapseTransform extends ImageTransform {
 
 	// -- Helper methods --
 
+	/**
+	 * Collapses the parent's planes at the given dimensional position. When a
+	 * cache is given, each parent plane is cached in float-backed form and the
+	 * collapsed field shares its sample arrays, so the collapsed field itself is
+	 * not cached; its storage is already accounted for by the parent planes.
+	 */
+	private FlatField collapse(final TransformLink link, final int[] pos,
+		final int dim, final DataCache cache)
+	{
+		final int len = parent.getLengths()[axis];
+		final FlatField[] fields = new FlatField[len];
+		final int[] npos = getParentPos(pos);
+		for (int i = 0; i < len; i++) {
+			npos[axis] = i;
+			final boolean cached = cache != null && cache.hasData(parent, npos, null);
+			final Data data =
+				cached ? cache.getData(parent, npos, null, dim) : parent.getData(link,
+					npos, dim, null);
+			if (data == null || !(data instanceof FlatField)) return null;
+			fields[i] = toFloatField((FlatField) data);
+			if (cache != null && (!cached || fields[i] != data)) {
+				// cache the parent plane in the form shared with the collapsed field
+				cache.putData(parent, npos, null, fields[i]);
+			}
+		}
+		return collapse(fields, range);
+	}
+
+	/**
+	 * Gets a field equivalent to the given one whose samples are stored as
+	 * floats, so that its sample arrays can be shared without copying. Returns
+	 * the field itself if it is already float-backed.
+	 */
+	private static FlatField toFloatField(final FlatField ff) {
+		try {
+			boolean floats = !(ff instanceof ImageFlatField);
+			final Set[] rangeSets = ff.getRangeSets();
+			for (int i = 0; i < rangeSets.length && floats; i++) {
+				if (!(rangeSets[i] instanceof FloatSet)) floats = false;
+			}
+			if (floats) return ff;
+
+			final FlatField shared =
+				new FlatField((FunctionType) ff.getType(), ff.getDomainSet());
+			shared.setSamples(ff.getFloats(false), false);
+			return shared;
+		}
+		catch (final VisADException exc) {
+			exc.printStackTrace();
+		}
+		catch (final RemoteException exc) {
+			exc.printStackTrace();
+		}
+		return ff;
+	}
+
 	/** Chooses filename for thumbnail cache based on parent cache's name. */
 	private String getCacheFilename() {
 		ThumbnailCache cache = null;
@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.data;
+
+/**
+ * ContrastEngine derives percentile-based color ranges from plane statistics
+ * histograms, saturating a given percentage of values at each end of the
+ * range. Since it works on (possibly merged) histograms, it never needs to
+ * touch pixel data.
+ */
+public class ContrastEngine {
+
+	// -- Constants --
+
+	/** Default percentage of values to saturate. */
+	public static final double DEFAULT_SATURATION = 0.35;
+
+	// -- Fields --
+
+	/** Percentage of values to saturate, split evenly between both ends. */
+	protected double saturated;
+
+	// -- Constructors --
+
+	/** Constructs a contrast engine with the default saturation. */
+	public ContrastEngine() {
+		this(DEFAULT_SATURATION);
+	}
+
+	/** Constructs a contrast engine that saturates the given percentage. */
+	public ContrastEngine(final double saturated) {
+		setSaturation(saturated);
+	}
+
+	// -- ContrastEngine API methods --
+
+	/** Sets the percentage of values to saturate. */
+	public void setSaturation(final double saturated) {
+		this.saturated = saturated < 0 ? 0 : saturated > 100 ? 100 : saturated;
+	}
+
+	/** Gets the percentage of values to saturate. */
+	public double getSaturation() {
+		return saturated;
+	}
+
+	/**
+	 * Computes the color range of the given range component.
+	 * 
+	 * @return an array containing the low and high values, or null if the
+	 *         statistics contain no values for that component
+	 */
+	public double[] getRange(final PlaneStats stats, final int c) {
+		if (stats == null || c < 0 || stats.getCount(c) == 0) return null;
+		final double fraction = saturated / 200;
+		double lo = getPercentile(stats, c, fraction);
+		double hi = getPercentile(stats, c, 1 - fraction);
+		if (hi <= lo) {
+			lo = stats.getMin(c);
+			hi = stats.getMax(c);
+		}
+		return new double[] { lo, hi };
+	}
+
+	// -- Utility methods --
+
+	/**
+	 * Estimates the value below which the given fraction of the given range
+	 * component's values fall, interpolating linearly within histogram bins.
+	 */
+	public static double getPercentile(final PlaneStats stats, final int c,
+		final double fraction)
+	{
+		final double min = stats.getMin(c);
+		final double width = (stats.getMax(c) - min) / PlaneStats.BINS;
+		final long[] hist = stats.getHistogram(c);
+		final double target = fraction * stats.getCount(c);
+		long total = 0;
+		for (int b = 0; b < hist.length; b++) {
+			if (hist[b] > 0 && total + hist[b] >= target) {
+				final double t = (target - total) / hist[b];
+				return min + (b + t) * width;
+			}
+			total += hist[b];
+		}
+		return stats.getMax(c);
+	}
+
+}
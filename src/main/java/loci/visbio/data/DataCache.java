@@ -25,12 +25,20 @@
 package loci.visbio.data;
 
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Vector;
 
-import loci.formats.FormatTools;
 import visad.Data;
+import visad.FlatField;
+import visad.FunctionType;
 
 /**
  * Provides a simple caching mechanism for full-resolution data in memory.
+ * Clients that display cached data may retain it on behalf of an owner (such
+ * as a transform link), so that data shared between several owners is only
+ * dropped once every owner has released it. When the cache grows past its
+ * memory budget, the least recently used entries that no owner retains are
+ * dropped.
  */
 public class DataCache {
 
@@ -41,33 +49,84 @@ public class DataCache {
 
 	// -- Fields --
 
-	/** Hashtable backing this cache of full-resolution data. */
-	protected Hashtable hash;
+	/** Map backing this cache of full-resolution data, in order of use. */
+	protected LinkedHashMap hash;
+
+	/** Keys held for each transform, as a Vector per transform ID. */
+	protected Hashtable index;
+
+	/** Memory budget for this cache, in bytes. */
+	protected long budget;
+
+	/** Estimated number of bytes occupied by cached data. */
+	protected long size;
+
+	/** Owners retaining each key, as a Vector per key. */
+	protected Hashtable refs;
+
+	/** Computations in progress, as a PendingData per key. */
+	protected Hashtable pending;
 
 	// -- Constructor --
 
 	/** Constructs a cache for managing full-resolution data in memory. */
 	public DataCache() {
-		hash = new Hashtable();
+		hash = new LinkedHashMap(16, 0.75f, true);
+		index = new Hashtable();
+		refs = new Hashtable();
+		pending = new Hashtable();
+		budget = Runtime.getRuntime().maxMemory() / 2;
 	}
 
 	// -- DataCache API methods --
 
-	/** Gets the data object from the cache, computing it if the cache misses. */
-	public synchronized Data getData(final DataTransform trans, final int[] pos,
+	/**
+	 * Gets the data object from the cache, computing it if the cache misses.
+	 * The computation runs without holding the cache's lock, and concurrent
+	 * requests for the same key wait for a single computation.
+	 */
+	public Data getData(final DataTransform trans, final int[] pos,
 		final String append, final int dim)
 	{
-		final String key = getKey(trans, pos, append);
-		Data d = getCachedData(key);
-		if (d == null) { // do not compute for non-null append
-			if (append == null || append.equals("")) {
-				// compute automatically for null append string
-				d = trans.getData(null, pos, dim, null);
-				putCachedData(key, d);
+		final CacheKey key = getKey(trans, pos, append);
+		PendingData p = null;
+		boolean owner = false;
+		synchronized (this) {
+			final Data d = getCachedData(key);
+			if (d != null) {
+				if (DEBUG) System.out.println("DataCache: cache hit for " + key);
+				return d;
 			}
 			if (DEBUG) System.out.println("DataCache: cache miss for " + key);
+			// do not compute for non-null append
+			if (append != null && !append.equals("")) return null;
+
+			// a thread already admitted by TileExecutor.acquire must not wait on
+			// another computation, which may itself be waiting for admission
+			if (key != null && !TileExecutor.isAcquired()) {
+				p = (PendingData) pending.get(key);
+				if (p == null) {
+					p = new PendingData();
+					pending.put(key, p);
+					owner = true;
+				}
+			}
+		}
+		if (p != null && !owner) return p.get();
+
+		// compute automatically for null append string
+		Data d = null;
+		try {
+			d = trans.getData(null, pos, dim, null);
+		}
+		finally {
+			synchronized (this) {
+				if (owner) pending.remove(key);
+				// a computation outlived by a version change must not be cached
+				if (!isStale(trans, key)) putCachedData(key, d);
+			}
+			if (owner) p.set(d);
 		}
-		else if (DEBUG) System.out.println("DataCache: cache hit for " + key);
 		return d;
 	}
 
@@ -78,7 +137,8 @@ public class DataCache {
 	public synchronized void putData(final DataTransform trans, final int[] pos,
 		final String append, final Data d)
 	{
-		putCachedData(getKey(trans, pos, append), d);
+		final CacheKey key = getKey(trans, pos, append);
+		if (!isStale(trans, key)) putCachedData(key, d);
 	}
 
 	/**
@@ -103,59 +163,249 @@ public class DataCache {
 
 	/**
 	 * Removes from the cache data objects at all dimensional positions for the
-	 * given data object.
+	 * given data object. Only the transform's own entries are visited, rather
+	 * than every dimensional position.
 	 */
 	public synchronized void dump(final DataTransform trans, final String append)
 	{
-		final int[] lengths = trans.getLengths();
-		final int len = FormatTools.getRasterLength(lengths);
-		for (int i = 0; i < len; i++) {
-			final int[] pos = FormatTools.rasterToPosition(lengths, i);
-			dump(getKey(trans, pos, append));
+		final Vector keys =
+			(Vector) index.get(Integer.valueOf(trans.getInstanceId()));
+		if (keys == null) return;
+		final String variant = append == null ? "" : append;
+		final Object[] k = keys.toArray();
+		for (int i = 0; i < k.length; i++) {
+			final CacheKey key = (CacheKey) k[i];
+			if (key.getVariant().equals(variant)) dump(key);
 		}
 	}
 
 	/** Removes everything from the cache. */
 	public synchronized void dumpAll() {
 		hash.clear();
+		index.clear();
+		refs.clear();
+		size = 0;
+	}
+
+	/**
+	 * Marks the data object at the specified dimensional position as in use by
+	 * the given owner.
+	 */
+	public synchronized void retain(final Object owner,
+		final DataTransform trans, final int[] pos, final String append)
+	{
+		final CacheKey key = getKey(trans, pos, append);
+		if (key == null) return;
+		Vector owners = (Vector) refs.get(key);
+		if (owners == null) {
+			owners = new Vector();
+			refs.put(key, owners);
+		}
+		if (!owners.contains(owner)) owners.add(owner);
+	}
+
+	/**
+	 * Indicates the given owner no longer uses the data object at the specified
+	 * dimensional position. The data is removed from the cache once no other
+	 * owner retains it.
+	 */
+	public synchronized void release(final Object owner,
+		final DataTransform trans, final int[] pos, final String append)
+	{
+		release(owner, getKey(trans, pos, append));
+	}
+
+	/** Releases every data object retained by the given owner. */
+	public synchronized void releaseAll(final Object owner) {
+		final Vector keys = new Vector(refs.keySet());
+		for (int i = 0; i < keys.size(); i++) {
+			release(owner, (CacheKey) keys.elementAt(i));
+		}
+	}
+
+	/**
+	 * Gets the number of owners retaining the data object at the specified
+	 * dimensional position.
+	 */
+	public synchronized int getRefCount(final DataTransform trans,
+		final int[] pos, final String append)
+	{
+		final Vector owners = (Vector) refs.get(getKey(trans, pos, append));
+		return owners == null ? 0 : owners.size();
+	}
+
+	/** Sets the memory budget for this cache, in bytes. */
+	public synchronized void setBudget(final long budget) {
+		this.budget = budget;
+		trim(null);
+	}
+
+	/** Gets the memory budget for this cache, in bytes. */
+	public synchronized long getBudget() {
+		return budget;
+	}
+
+	/** Gets the estimated number of bytes occupied by cached data. */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/** Gets the number of bytes remaining in this cache's budget. */
+	public synchronized long getAvailable() {
+		return Math.max(0, budget - size);
 	}
 
 	// -- Internal DataCache API methods --
 
 	/** Gets the data in the cache at the specified key. */
-	protected Data getCachedData(final String key) {
+	protected Data getCachedData(final CacheKey key) {
 		if (key == null) return null;
 		final Object o = hash.get(key);
 		if (!(o instanceof Data)) return null;
 		return (Data) o;
 	}
 
-	/** Sets the data in the cache at the specified key. */
-	protected void putCachedData(final String key, final Data d) {
-		if (key != null && d != null) hash.put(key, d);
+	/**
+	 * Sets the data in the cache at the specified key. Entries for older
+	 * versions of the same transform can never be hit again, so they are
+	 * dropped, along with any references retained on them. Data for a version
+	 * older than one already cached is stale, and is not stored.
+	 */
+	protected void putCachedData(final CacheKey key, final Data d) {
+		if (key == null || d == null) return;
+		final Integer id = Integer.valueOf(key.getInstanceId());
+		Vector keys = (Vector) index.get(id);
+		if (keys != null) {
+			final Object[] k = keys.toArray();
+			for (int i = 0; i < k.length; i++) {
+				if (((CacheKey) k[i]).getVersion() > key.getVersion()) return;
+			}
+			for (int i = 0; i < k.length; i++) {
+				final CacheKey old = (CacheKey) k[i];
+				if (old.getVersion() < key.getVersion()) dump(old);
+			}
+		}
+		final Object[] r = refs.keySet().toArray();
+		for (int i = 0; i < r.length; i++) {
+			final CacheKey old = (CacheKey) r[i];
+			if (old.getInstanceId() == key.getInstanceId() &&
+				old.getVersion() < key.getVersion()) refs.remove(old);
+		}
+		keys = (Vector) index.get(id);
+		if (keys == null) {
+			keys = new Vector();
+			index.put(id, keys);
+		}
+		final Object old = hash.put(key, d);
+		if (old == null) keys.add(key);
+		size += estimateSize(d) - estimateSize(old);
+		trim(key);
+	}
+
+	/**
+	 * Gets whether the given key is for an older version of the given
+	 * transform than its current one.
+	 */
+	protected static boolean isStale(final DataTransform trans,
+		final CacheKey key)
+	{
+		return key != null && key.getVersion() < trans.getVersion();
+	}
+
+	/**
+	 * Dumps the least recently used entries that no owner retains, other than
+	 * the given key, until the cache fits within its budget.
+	 */
+	protected void trim(final CacheKey keep) {
+		if (size <= budget) return;
+		final Object[] k = hash.keySet().toArray();
+		for (int i = 0; i < k.length && size > budget; i++) {
+			if (k[i].equals(keep) || refs.containsKey(k[i])) continue;
+			dump((CacheKey) k[i]);
+		}
+	}
+
+	/**
+	 * Removes the given owner from the specified key, dumping the key's data if
+	 * no other owner retains it.
+	 */
+	protected void release(final Object owner, final CacheKey key) {
+		if (key == null) return;
+		final Vector owners = (Vector) refs.get(key);
+		if (owners != null) {
+			owners.remove(owner);
+			if (!owners.isEmpty()) return;
+			refs.remove(key);
+		}
+		dump(key);
 	}
 
 	/** Removes the data object at the specified key from the cache. */
-	protected void dump(final String key) {
-		if (key != null) {
-			hash.remove(key);
-			if (DEBUG) System.out.println("DataCache: dumped " + key);
+	protected void dump(final CacheKey key) {
+		if (key == null) return;
+		final Object old = hash.remove(key);
+		if (old == null) return;
+		size -= estimateSize(old);
+		final Integer id = Integer.valueOf(key.getInstanceId());
+		final Vector keys = (Vector) index.get(id);
+		if (keys != null) {
+			keys.remove(key);
+			if (keys.isEmpty()) index.remove(id);
 		}
+		if (DEBUG) System.out.println("DataCache: dumped " + key);
 	}
 
 	// -- Helper methods --
 
+	/** Estimates the number of bytes occupied by the given data object. */
+	protected static long estimateSize(final Object o) {
+		if (!(o instanceof FlatField)) return 0;
+		final FlatField ff = (FlatField) o;
+		final int rangeCount =
+			((FunctionType) ff.getType()).getFlatRange().getDimension();
+		return 4L * ff.getLength() * rangeCount;
+	}
+
 	/**
-	 * Gets a key string suitable for hashing for the given transform at the
-	 * specified position. Changing the append string allows storage of multiple
-	 * data objects at the same dimensional position for the same transform.
+	 * Gets a key suitable for hashing for the given transform at the specified
+	 * position. Changing the append string allows storage of multiple data
+	 * objects at the same dimensional position for the same transform.
 	 */
-	protected String getKey(final DataTransform trans, final int[] pos,
-		String append)
+	protected CacheKey getKey(final DataTransform trans, final int[] pos,
+		final String append)
 	{
-		if (append == null) append = "";
-		final String id = pos == null ? null : trans.getCacheId(pos, true);
-		return id + append;
+		return pos == null ? null : new CacheKey(trans, pos, append);
+	}
+
+	// -- Helper classes --
+
+	/** A data object being computed by one thread on behalf of others. */
+	private static class PendingData {
+
+		private Data data;
+		private boolean done;
+
+		/** Records the computed data object, waking any waiting threads. */
+		public synchronized void set(final Data d) {
+			data = d;
+			done = true;
+			notifyAll();
+		}
+
+		/** Waits for the data object to be computed. */
+		public synchronized Data get() {
+			while (!done) {
+				try {
+					wait();
+				}
+				catch (final InterruptedException exc) {
+					Thread.currentThread().interrupt();
+					return null;
+				}
+			}
+			return data;
+		}
+
 	}
 
 }
@@ -29,6 +29,7 @@ import java.awt.event.KeyEvent;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
 import java.util.Vector;
 import java.util.zip.ZipEntry;
@@ -88,6 +89,15 @@ public class DataManager extends LogicManager {
 	/** List of registered data transform type labels. */
 	protected Vector<String> transformLabels;
 
+	/** List of registered pixel kernel classes. */
+	protected Vector<Class<?>> kernelTypes;
+
+	/** List of registered pixel kernel labels. */
+	protected Vector<String> kernelLabels;
+
+	/** Cache of full-resolution data shared by all displays. */
+	protected DataCache cache = new DataCache();
+
 	// -- Constructor --
 
 	/** Constructs a dataset manager. */
@@ -116,7 +126,18 @@ public class DataManager extends LogicManager {
 	/** Removes a data object from the list. */
 	public void removeData(final DataTransform data, final boolean confirm) {
 		final boolean success = dataControls.removeData(data, confirm);
-		if (success) bio.generateEvent(this, "remove data", true);
+		if (success) {
+			cache.dump(data, null);
+			bio.generateEvent(this, "remove data", true);
+		}
+	}
+
+	/**
+	 * Gets the process-wide cache of full-resolution data. Displays share this
+	 * cache, so a plane shown in several windows is read and held only once.
+	 */
+	public DataCache getCache() {
+		return cache;
 	}
 
 	/** Gets the root node of the data object tree. */
@@ -157,6 +178,30 @@ public class DataManager extends LogicManager {
 		return labels;
 	}
 
+	/**
+	 * Registers the given implementation of PixelKernel with the data manager,
+	 * using the given label as a description. Registered kernels are offered as
+	 * pixel kernel transforms.
+	 */
+	public void registerKernel(final Class<?> c, final String label) {
+		kernelTypes.add(c);
+		kernelLabels.add(label);
+	}
+
+	/** Gets list of registered pixel kernel types. */
+	public Class<?>[] getRegisteredKernels() {
+		final Class<?>[] types = new Class[kernelTypes.size()];
+		kernelTypes.copyInto(types);
+		return types;
+	}
+
+	/** Gets list of registered pixel kernel labels. */
+	public String[] getRegisteredKernelLabels() {
+		final String[] labels = new String[kernelLabels.size()];
+		kernelLabels.copyInto(labels);
+		return labels;
+	}
+
 	/** Gets a list of data transforms present in the tree. */
 	public Vector<DataTransform> getDataList() {
 		final Vector<DataTransform> v = new Vector<DataTransform>();
@@ -411,10 +456,12 @@ public class DataManager extends LogicManager {
 			// construct transform
 			Object o = null;
 			try {
-				o = c.newInstance();
+				o = c.getDeclaredConstructor().newInstance();
 			}
 			catch (final IllegalAccessException exc) {}
 			catch (final InstantiationException exc) {}
+			catch (final NoSuchMethodException exc) {}
+			catch (final InvocationTargetException exc) {}
 			if (o == null) {
 				System.err.println("Failed to instantiate transform #" + i);
 				continue;
@@ -491,10 +538,18 @@ public class DataManager extends LogicManager {
 		transformLabels = new Vector<String>();
 		registerDataType(Dataset.class, "Dataset");
 		registerDataType(DataSampling.class, "Subsampling");
-		registerDataType(ProjectionTransform.class, "Maximum intensity projection");
+		registerDataType(ProjectionTransform.class, "Intensity projection");
+		registerDataType(SlidingProjectionTransform.class,
+			"Sliding window projection");
 		registerDataType(CollapseTransform.class, "Dimensional collapse");
 		registerDataType(SpectralTransform.class, "Spectral mapping");
 		registerDataType(ArbitrarySlice.class, "Arbitrary slice");
+		registerDataType(KernelTransform.class, "Pixel kernel");
+
+		// pixel kernel registration
+		kernelTypes = new Vector<Class<?>>();
+		kernelLabels = new Vector<String>();
+		registerKernel(SmoothingKernel.class, "Smoothing (3x3 mean)");
 
 		// menu items
 		bio.setSplashStatus(null);
@@ -529,9 +584,12 @@ public class DataManager extends LogicManager {
 		hm.addHelpTopic(s + "/Datasets", "dataset.html");
 		hm.addHelpTopic(s + "/Subsamplings", "subsampling.html");
 		hm.addHelpTopic(s + "/Maximum intensity projections", "max_intensity.html");
+		hm.addHelpTopic(s + "/Sliding window projections",
+			"sliding_projection.html");
 		hm.addHelpTopic(s + "/Dimensional collapse transforms", "collapse.html");
 		hm.addHelpTopic(s + "/Spectral mappings", "spectral.html");
 		hm.addHelpTopic(s + "/Arbitrary slices", "arbitrary_slice.html");
+		hm.addHelpTopic(s + "/Pixel kernels", "pixel_kernel.html");
 		s = "Control panels/Data panel";
 		hm.addHelpTopic(s, "data_panel.html");
 		hm.addHelpTopic(s + "/Importing a dataset from disk", "import_data.html");
@@ -30,7 +30,6 @@ import java.math.BigInteger;
 import javax.swing.JComponent;
 import javax.swing.JOptionPane;
 
-import loci.formats.gui.AWTImageTools;
 import loci.visbio.state.Dynamic;
 import loci.visbio.state.SaveException;
 import loci.visbio.util.MathUtil;
@@ -165,15 +164,30 @@ public class DataSampling extends ImageTransform {
 	/** Obtains an image from the source(s) at the given dimensional position. */
 	@Override
 	public BufferedImage getImage(final int[] pos) {
-		final int[] p = new int[pos.length];
-		for (int i = 0; i < p.length; i++)
-			p[i] = min[i] + step[i] * pos[i] - 1;
+		final int w = getSampleWidth(), h = getSampleHeight();
+		return getImage(pos, 0, 0, w, h, w, h);
+	}
+
+	/**
+	 * Obtains the given region of the image at the given dimensional position,
+	 * scaled to sizeX by sizeY pixels. The region is mapped onto the parent's
+	 * full-resolution image and requested from the parent directly, so that
+	 * the parent can avoid decoding pixels the sampling discards.
+	 */
+	@Override
+	public BufferedImage getImage(final int[] pos, final int x, final int y,
+		final int w, final int h, final int sizeX, final int sizeY)
+	{
+		final int[] p = getParentPos(pos);
 		final ImageTransform it = (ImageTransform) parent;
-		final BufferedImage img = it.getImage(p);
-		if (img == null) return null;
-		final int w = resX > 0 ? resX : img.getWidth();
-		final int h = resY > 0 ? resY : img.getHeight();
-		return AWTImageTools.scale(img, w, h, false);
+		final int pw = it.getImageWidth(), ph = it.getImageHeight();
+		final int sw = getSampleWidth(), sh = getSampleHeight();
+		final int px = (int) ((long) x * pw / sw);
+		final int py = (int) ((long) y * ph / sh);
+		final int pRight = (int) ((long) (x + w) * pw / sw);
+		final int pBottom = (int) ((long) (y + h) * ph / sh);
+		return it.getImage(p, px, py, Math.max(1, pRight - px), Math.max(1,
+			pBottom - py), sizeX, sizeY);
 	}
 
 	/**
@@ -456,6 +470,24 @@ public class DataSampling extends ImageTransform {
 
 	// -- Helper methods --
 
+	/** Gets dimensional position for parent transform. */
+	private int[] getParentPos(final int[] pos) {
+		final int[] p = new int[pos.length];
+		for (int i = 0; i < p.length; i++)
+			p[i] = min[i] + step[i] * pos[i] - 1;
+		return p;
+	}
+
+	/** Gets the sampled image width, defaulting to the parent's width. */
+	private int getSampleWidth() {
+		return resX > 0 ? resX : ((ImageTransform) parent).getImageWidth();
+	}
+
+	/** Gets the sampled image height, defaulting to the parent's height. */
+	private int getSampleHeight() {
+		return resY > 0 ? resY : ((ImageTransform) parent).getImageHeight();
+	}
+
 	/** Creates custom handler for data sampling's thumbnails. */
 	private ThumbnailHandler makeThumbnailHandler() {
 		return new SamplingThumbHandler(this, getCacheFilename());
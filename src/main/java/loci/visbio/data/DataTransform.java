@@ -25,10 +25,14 @@
 package loci.visbio.data;
 
 import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Vector;
 
 import javax.swing.JComponent;
+import javax.swing.Timer;
 
 import loci.visbio.state.Dynamic;
 import loci.visbio.state.SaveException;
@@ -52,11 +56,20 @@ public abstract class DataTransform implements Dynamic, Saveable {
 
 	public static final char MU = (char) 181;
 
+	/**
+	 * Interval in milliseconds (one frame at roughly 30 frames per second)
+	 * within which coalesced data change notifications are merged.
+	 */
+	public static final int COALESCE_DELAY = 33;
+
 	// -- Static fields --
 
 	/** Next free transform id number. */
 	protected static int nextId = 0;
 
+	/** Next free instance id number. */
+	protected static int nextInstanceId = 0;
+
 	// -- Fields --
 
 	/** Parent transform from which this transform obtains its data. */
@@ -68,6 +81,16 @@ public abstract class DataTransform implements Dynamic, Saveable {
 	/** ID number for this data transform. */
 	protected int transformId;
 
+	/**
+	 * ID number unique to this transform instance. Unlike the transform ID it
+	 * is never saved or restored, so it identifies the transform's data in
+	 * caches even when restored transforms reuse saved IDs.
+	 */
+	protected final int instanceId = nextInstanceId++;
+
+	/** Parameter version, incremented whenever this transform's data changes. */
+	protected int version;
+
 	// NB: All subclasses must populate "lengths" and "dims" fields,
 	// then call makeLabels to populate dimensional axis labels list.
 
@@ -92,6 +115,15 @@ public abstract class DataTransform implements Dynamic, Saveable {
 	/** List of transform listeners. */
 	protected Vector listeners = new Vector();
 
+	/** Positions with data changes awaiting a coalesced notification. */
+	protected Vector pending = new Vector();
+
+	/** Whether a coalesced notification is pending for all positions. */
+	protected boolean pendingAll;
+
+	/** Timer that delivers coalesced data change notifications. */
+	protected Timer coalesceTimer;
+
 	// -- Constructors --
 
 	/** Constructs an uninitialized data transform. */
@@ -162,6 +194,19 @@ public abstract class DataTransform implements Dynamic, Saveable {
 		return transformId;
 	}
 
+	/** Gets the ID number unique to this transform instance. */
+	public int getInstanceId() {
+		return instanceId;
+	}
+
+	/**
+	 * Gets the parameter version of this transform. The version changes each
+	 * time listeners are notified that the transform's data has changed.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
 	/** Gets length of each dimensional axis. */
 	public int[] getLengths() {
 		return ObjectUtil.copy(lengths);
@@ -271,16 +316,76 @@ public abstract class DataTransform implements Dynamic, Saveable {
 
 	/** Notifies transform listeners of a parameter change. */
 	public void notifyListeners(final TransformEvent e) {
-		synchronized (listeners) {
-			for (int i = 0; i < listeners.size(); i++) {
-				final TransformListener l = (TransformListener) listeners.elementAt(i);
-				l.transformChanged(e);
+		if (e.getId() == TransformEvent.DATA_CHANGED) {
+			version++;
+			// a notification covering all positions supersedes pending ones
+			if (e.getPositions() == null) {
+				synchronized (pending) {
+					pending.removeAllElements();
+					pendingAll = false;
+				}
 			}
 		}
+		fireTransformChanged(e);
+	}
+
+	/**
+	 * Notes that the data at the given dimensional position (or at all positions
+	 * if null) has changed, and schedules a single DATA_CHANGED notification for
+	 * all such changes made within the next {@link #COALESCE_DELAY} milliseconds.
+	 * Use this method instead of notifyListeners for rapid bursts of changes,
+	 * such as those made while dragging the mouse or typing.
+	 */
+	public void notifyDataChanged(final int[] pos) {
+		version++;
+		synchronized (pending) {
+			if (pos == null) pendingAll = true;
+			else if (!pendingAll && !isPending(pos)) pending.add(pos.clone());
+			if (coalesceTimer == null) {
+				coalesceTimer = new Timer(COALESCE_DELAY, new ActionListener() {
+
+					@Override
+					public void actionPerformed(final ActionEvent e) {
+						flushDataChanged();
+					}
+				});
+				coalesceTimer.setRepeats(false);
+			}
+			if (!coalesceTimer.isRunning()) coalesceTimer.start();
+		}
+	}
+
+	/** Delivers any pending coalesced data change notification immediately. */
+	public void flushDataChanged() {
+		int[][] positions;
+		synchronized (pending) {
+			if (!pendingAll && pending.size() == 0) return;
+			positions = pendingAll ? null : new int[pending.size()][];
+			if (positions != null) pending.copyInto(positions);
+			pending.removeAllElements();
+			pendingAll = false;
+		}
+		fireTransformChanged(new TransformEvent(this,
+			TransformEvent.DATA_CHANGED, positions));
 	}
 
 	// -- Internal DataTransform API methods --
 
+	/**
+	 * Retrieves the parent's data at the given dimensional position, consulting
+	 * the cache only if it already holds the data. Transforms that consume many
+	 * parent planes per call (or keep their own copy of the samples) use this
+	 * method so that visiting a plane does not pin it in the cache.
+	 */
+	protected Data getParentData(final TransformLink link, final int[] pos,
+		final int dim, final DataCache cache)
+	{
+		if (cache != null && cache.hasData(parent, pos, null)) {
+			return cache.getData(parent, pos, null, dim);
+		}
+		return parent.getData(link, pos, dim, null);
+	}
+
 	/** Creates labels based on data transform parameters. */
 	protected void makeLabels() {
 		labels = new String[lengths.length][];
@@ -291,6 +396,24 @@ public abstract class DataTransform implements Dynamic, Saveable {
 		}
 	}
 
+	/** Delivers the given event to all transform listeners. */
+	protected void fireTransformChanged(final TransformEvent e) {
+		synchronized (listeners) {
+			for (int i = 0; i < listeners.size(); i++) {
+				final TransformListener l = (TransformListener) listeners.elementAt(i);
+				l.transformChanged(e);
+			}
+		}
+	}
+
+	/** Gets whether the given position awaits a coalesced notification. */
+	protected boolean isPending(final int[] pos) {
+		for (int i = 0; i < pending.size(); i++) {
+			if (Arrays.equals(pos, (int[]) pending.elementAt(i))) return true;
+		}
+		return false;
+	}
+
 	// -- Object API methods --
 
 	/** Gets a string representation of this transform. */
@@ -344,6 +467,11 @@ public abstract class DataTransform implements Dynamic, Saveable {
 	 */
 	@Override
 	public void discard() {
+		synchronized (pending) {
+			if (coalesceTimer != null) coalesceTimer.stop();
+			pending.removeAllElements();
+			pendingAll = false;
+		}
 		notifyListeners(new TransformEvent(this, TransformEvent.DATA_REMOVED));
 		listeners.removeAllElements();
 	}
@@ -371,6 +499,8 @@ public abstract class DataTransform implements Dynamic, Saveable {
 	@Override
 	public void restoreState(final Element el) throws SaveException {
 		transformId = Integer.parseInt(el.getAttribute("id"));
+		// keep transforms created later from reusing restored IDs
+		if (nextId <= transformId) nextId = transformId + 1;
 		name = el.getAttribute("name");
 		// NB: Parent reference is restored in DataManager.restoreState,
 		// since individual DataTransforms are not aware of each other.
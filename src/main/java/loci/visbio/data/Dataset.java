@@ -49,6 +49,7 @@ import loci.formats.FormatException;
 import loci.formats.FormatTools;
 import loci.formats.IFormatReader;
 import loci.formats.Modulo;
+import loci.formats.gui.AWTImageTools;
 import loci.formats.gui.BufferedImageReader;
 import loci.formats.gui.GUITools;
 import loci.formats.meta.MetadataStore;
@@ -103,6 +104,13 @@ public class Dataset extends ImageTransform {
 	/** Optional listener for constructor progress. */
 	protected StatusListener listener;
 
+	/**
+	 * Whether pyramid levels are exposed as separate series rather than as
+	 * resolutions of one series. State saved before resolution support used
+	 * flattened series, so restoring it keeps them flattened.
+	 */
+	protected boolean flattenedResolutions;
+
 	// -- Computed fields --
 
 	/** Data reader. */
@@ -204,34 +212,92 @@ public class Dataset extends ImageTransform {
 	/** Obtains an image from the source(s) at the given dimensional position. */
 	@Override
 	public BufferedImage getImage(final int[] pos) {
-		final int index = posToIndex(pos);
+		int index = -1;
 		BufferedImage img = null;
-		try {
-			img = reader.openImage(index);
+		synchronized (reader) {
+			try {
+				index = posToIndex(pos);
+				img = reader.openImage(index);
+			}
+			catch (final IOException exc) {
+				if (VisBioFrame.DEBUG) exc.printStackTrace();
+			}
+			catch (final FormatException exc) {
+				if (VisBioFrame.DEBUG) exc.printStackTrace();
+			}
 		}
-		catch (final IOException exc) {
-			if (VisBioFrame.DEBUG) exc.printStackTrace();
+		if (img == null) {
+			System.err.println("Could not read image at index #" + index);
+			return null;
 		}
-		catch (final FormatException exc) {
-			if (VisBioFrame.DEBUG) exc.printStackTrace();
+		return img;
+	}
+
+	/**
+	 * Obtains the given region of the image at the given dimensional position,
+	 * scaled to sizeX by sizeY pixels. Only the requested region is decoded, from
+	 * the coarsest resolution level (if the source has several) that still
+	 * provides at least the requested number of pixels.
+	 */
+	@Override
+	public BufferedImage getImage(final int[] pos, final int x, final int y,
+		final int w, final int h, final int sizeX, final int sizeY)
+	{
+		int index = -1;
+		BufferedImage img = null;
+		synchronized (reader) {
+			index = posToIndex(pos);
+			final int fullX = reader.getSizeX(), fullY = reader.getSizeY();
+			int level = 0;
+			for (int r = 1; r < reader.getResolutionCount(); r++) {
+				reader.setResolution(r);
+				final long lw = (long) w * reader.getSizeX() / fullX;
+				final long lh = (long) h * reader.getSizeY() / fullY;
+				if (lw < sizeX || lh < sizeY) break;
+				level = r;
+			}
+			reader.setResolution(level);
+			final int lx = (int) ((long) x * reader.getSizeX() / fullX);
+			final int ly = (int) ((long) y * reader.getSizeY() / fullY);
+			final int lw =
+				(int) Math.max(1, (long) (x + w) * reader.getSizeX() / fullX - lx);
+			final int lh =
+				(int) Math.max(1, (long) (y + h) * reader.getSizeY() / fullY - ly);
+			try {
+				img = reader.openImage(index, lx, ly, lw, lh);
+			}
+			catch (final IOException exc) {
+				if (VisBioFrame.DEBUG) exc.printStackTrace();
+			}
+			catch (final FormatException exc) {
+				if (VisBioFrame.DEBUG) exc.printStackTrace();
+			}
+			finally {
+				reader.setResolution(0);
+			}
 		}
 		if (img == null) {
 			System.err.println("Could not read image at index #" + index);
 			return null;
 		}
-		return img;
+		if (img.getWidth() == sizeX && img.getHeight() == sizeY) return img;
+		return AWTImageTools.scale(img, sizeX, sizeY, false);
 	}
 
 	/** Gets width of each image. */
 	@Override
 	public int getImageWidth() {
-		return reader.getSizeX();
+		synchronized (reader) {
+			return reader.getSizeX();
+		}
 	}
 
 	/** Gets height of each image. */
 	@Override
 	public int getImageHeight() {
-		return reader.getSizeY();
+		synchronized (reader) {
+			return reader.getSizeY();
+		}
 	}
 
 	/** Gets number of range components at each pixel. */
@@ -308,7 +374,10 @@ public class Dataset extends ImageTransform {
 	@Override
 	public String getCacheId(final int[] pos, final boolean global) {
 		if (pos == null) return null;
-		final int index = posToIndex(pos);
+		final int index;
+		synchronized (reader) {
+			index = posToIndex(pos);
+		}
 		final String prefix = global ? pattern : new File(pattern).getName();
 		return prefix + "/" + index;
 	}
@@ -414,7 +483,8 @@ public class Dataset extends ImageTransform {
 		if (!super.matches(dyn) || !isCompatible(dyn)) return false;
 		final Dataset data = (Dataset) dyn;
 
-		return ObjectUtil.objectsEqual(pattern, data.pattern);
+		return ObjectUtil.objectsEqual(pattern, data.pattern) &&
+			flattenedResolutions == data.flattenedResolutions;
 	}
 
 	/**
@@ -435,6 +505,7 @@ public class Dataset extends ImageTransform {
 
 		if (data != null) {
 			pattern = data.pattern;
+			flattenedResolutions = data.flattenedResolutions;
 		}
 
 		final int numTasks = 4;
@@ -442,6 +513,9 @@ public class Dataset extends ImageTransform {
 		// initialize data reader
 		reader =
 			new BufferedImageReader(new ChannelSeparator(new FileStitcher(true)));
+		// expose pyramid levels as resolutions of one series, for subsampling,
+		// unless restoring state that refers to flattened series
+		reader.setFlattenedResolutions(flattenedResolutions);
 
 		Exception serviceException = null;
 		try {
@@ -561,6 +635,7 @@ public class Dataset extends ImageTransform {
 		final Element child = XMLUtil.createChild(el, "Dataset");
 		super.saveState(child);
 		child.setAttribute("pattern", pattern);
+		child.setAttribute("flattenedResolutions", "" + flattenedResolutions);
 	}
 
 	/** Restores the current state from the given DOM element ("Dataset"). */
@@ -568,11 +643,17 @@ public class Dataset extends ImageTransform {
 	public void restoreState(final Element el) throws SaveException {
 		super.restoreState(el);
 		pattern = el.getAttribute("pattern");
+		// state without the attribute predates unflattened resolutions
+		final String flat = el.getAttribute("flattenedResolutions");
+		flattenedResolutions = flat.equals("") || flat.equals("true");
 	}
 
 	// -- Helper methods --
 
-	/** Gets the 1-D index for the given position array. */
+	/**
+	 * Gets the 1-D index for the given position array. Callers must hold the
+	 * reader's lock.
+	 */
 	private int posToIndex(final int[] pos) {
 		final int t = pos[0];
 		final int z = pos[1];
@@ -28,6 +28,7 @@ import java.awt.image.BufferedImage;
 import java.math.BigInteger;
 import java.rmi.RemoteException;
 
+import loci.formats.gui.AWTImageTools;
 import loci.visbio.state.SaveException;
 import loci.visbio.util.DataUtil;
 import loci.visbio.util.MathUtil;
@@ -142,6 +143,34 @@ public abstract class ImageTransform extends DataTransform {
 		return null;
 	}
 
+	/**
+	 * Obtains the given region of the image at the given dimensional position,
+	 * scaled to sizeX by sizeY pixels. Transforms able to read a subregion or a
+	 * reduced resolution directly from their source should override this method,
+	 * so that callers needing only part of an image need not read all of it.
+	 */
+	public BufferedImage getImage(final int[] pos, final int x, final int y,
+		final int w, final int h, final int sizeX, final int sizeY)
+	{
+		BufferedImage img = getImage(pos);
+		if (img == null) return null;
+		if (x != 0 || y != 0 || w != img.getWidth() || h != img.getHeight()) {
+			img = img.getSubimage(x, y, w, h);
+		}
+		if (sizeX == w && sizeY == h) return img;
+		return AWTImageTools.scale(img, sizeX, sizeY, false);
+	}
+
+	/**
+	 * Gets a per-pixel stage equivalent to this transform's mapping of its
+	 * parent's samples, allowing the transform to be fused into a
+	 * {@link TransformPipeline}. Returns null if the transform is not a
+	 * per-pixel mapping of its parent at the same dimensional position.
+	 */
+	public PixelStage getPixelStage() {
+		return null;
+	}
+
 	/** Gets physical image width in microns. */
 	public double getMicronWidth() {
 		return micronWidth;
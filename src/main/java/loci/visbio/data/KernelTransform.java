@@ -0,0 +1,351 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.data;
+
+import java.lang.reflect.InvocationTargetException;
+import java.rmi.RemoteException;
+
+import javax.swing.JOptionPane;
+
+import loci.visbio.state.Dynamic;
+import loci.visbio.state.SaveException;
+import loci.visbio.util.XMLUtil;
+import loci.visbio.view.TransformLink;
+
+import org.w3c.dom.Element;
+
+import visad.Data;
+import visad.FlatField;
+import visad.FunctionType;
+import visad.RealTupleType;
+import visad.VisADException;
+
+/**
+ * KernelTransform applies a {@link PixelKernel} to each image of its parent,
+ * splitting each image into bands of rows that are processed in parallel.
+ */
+public class KernelTransform extends ImageTransform implements
+	TransformListener
+{
+
+	// -- Fields --
+
+	/** Kernel applied to each image. */
+	protected PixelKernel kernel;
+
+	// -- Constructors --
+
+	/** Creates an uninitialized pixel kernel transform. */
+	public KernelTransform() {
+		super();
+	}
+
+	/** Creates a pixel kernel transform from the given transform. */
+	public KernelTransform(final DataTransform parent, final String name,
+		final PixelKernel kernel)
+	{
+		super(parent, name);
+		this.kernel = kernel;
+		initState(null);
+		parent.addTransformListener(this);
+	}
+
+	// -- KernelTransform API methods --
+
+	/** Gets the kernel applied to each image. */
+	public PixelKernel getKernel() {
+		return kernel;
+	}
+
+	// -- ImageTransform API methods --
+
+	/** Gets width of each image. */
+	@Override
+	public int getImageWidth() {
+		return ((ImageTransform) parent).getImageWidth();
+	}
+
+	/** Gets height of each image. */
+	@Override
+	public int getImageHeight() {
+		return ((ImageTransform) parent).getImageHeight();
+	}
+
+	/** Gets number of range components at each pixel. */
+	@Override
+	public int getRangeCount() {
+		return kernel.getOutputCount(((ImageTransform) parent).getRangeCount());
+	}
+
+	// -- Static DataTransform API methods --
+
+	/** Creates a new pixel kernel transform, with user interaction. */
+	public static DataTransform makeTransform(final DataManager dm) {
+		final DataTransform data = dm.getSelectedData();
+		if (!isValidParent(data)) return null;
+
+		// choose a kernel from those registered
+		final Class<?>[] kernels = dm.getRegisteredKernels();
+		final String[] labels = dm.getRegisteredKernelLabels();
+		if (kernels.length == 0) {
+			JOptionPane.showMessageDialog(dm.getControls(),
+				"No pixel kernels are available.", "VisBio",
+				JOptionPane.ERROR_MESSAGE);
+			return null;
+		}
+		final String label =
+			(String) JOptionPane.showInputDialog(dm.getControls(), "Pixel kernel:",
+				"Create pixel kernel transform", JOptionPane.QUESTION_MESSAGE, null,
+				labels, labels[0]);
+		if (label == null) return null;
+		int index = 0;
+		while (!labels[index].equals(label))
+			index++;
+		final PixelKernel kernel = makeKernel(kernels[index].getName());
+		if (kernel == null) return null;
+
+		final String n =
+			(String) JOptionPane.showInputDialog(dm.getControls(),
+				"Transform name:", "Create pixel kernel transform",
+				JOptionPane.INFORMATION_MESSAGE, null, null, data.getName() + " " +
+					label.toLowerCase());
+		if (n == null) return null;
+
+		return new KernelTransform(data, n, kernel);
+	}
+
+	/**
+	 * Indicates whether this transform type would accept the given transform as
+	 * its parent transform.
+	 */
+	public static boolean isValidParent(final DataTransform data) {
+		return data != null && data instanceof ImageTransform;
+	}
+
+	/** Indicates whether this transform type requires a parent transform. */
+	public static boolean isParentRequired() {
+		return true;
+	}
+
+	// -- DataTransform API methods --
+
+	/**
+	 * Retrieves the data corresponding to the given dimensional position, for the
+	 * given display dimensionality.
+	 * 
+	 * @return null if the transform does not provide data of that dimensionality
+	 */
+	@Override
+	public Data getData(final TransformLink link, final int[] pos, final int dim,
+		final DataCache cache)
+	{
+		if (dim != 2) return null;
+		if (cache != null && cache.hasData(this, pos, null)) {
+			return cache.getData(this, pos, null, dim);
+		}
+
+		final FlatField field =
+			TransformPipeline.plan((ImageTransform) parent).getField(link, pos,
+				cache);
+		if (field == null) return null;
+
+		try {
+			final float[][] in = field.getFloats(false);
+			final int width = getImageWidth(), height = getImageHeight();
+			if (in.length == 0 || in[0].length != width * height) return null;
+			final float[][] out =
+				new float[kernel.getOutputCount(in.length)][width * height];
+
+			// process bands of whole rows, each at least a tile's worth of pixels
+			final int minRows = Math.max(1, TileExecutor.MIN_TILE_SIZE / width);
+			TileExecutor.run(height, minRows, new TileExecutor.TileOp() {
+
+				@Override
+				public void run(final int start, final int end) {
+					kernel.process(in, out, width, height, start, end);
+				}
+			});
+
+			final RealTupleType domain = ((FunctionType) field.getType()).getDomain();
+			final FunctionType ftype =
+				new FunctionType(domain, new RealTupleType(getRangeTypes()));
+			final FlatField ff = new FlatField(ftype, field.getDomainSet());
+			ff.setSamples(out, false);
+			if (cache != null) cache.putData(this, pos, null, ff);
+			return ff;
+		}
+		catch (final VisADException exc) {
+			exc.printStackTrace();
+		}
+		catch (final RemoteException exc) {
+			exc.printStackTrace();
+		}
+		return null;
+	}
+
+	/** Gets whether this transform provides data of the given dimensionality. */
+	@Override
+	public boolean isValidDimension(final int dim) {
+		return dim == 2 && parent.isValidDimension(dim);
+	}
+
+	/**
+	 * Gets a string id uniquely describing this data transform at the given
+	 * dimensional position, for the purposes of thumbnail caching. If global flag
+	 * is true, the id is suitable for use in the default, global cache file.
+	 */
+	@Override
+	public String getCacheId(final int[] pos, final boolean global) {
+		final StringBuffer sb = new StringBuffer(parent.getCacheId(pos, global));
+		sb.append("{");
+		if (global) sb.append("kernel=");
+		sb.append(kernel.getClass().getName());
+		sb.append("}");
+		return sb.toString();
+	}
+
+	// -- Dynamic API methods --
+
+	/** Tests whether two dynamic objects are equivalent. */
+	@Override
+	public boolean matches(final Dynamic dyn) {
+		if (!super.matches(dyn) || !isCompatible(dyn)) return false;
+		final KernelTransform data = (KernelTransform) dyn;
+
+		return kernel == null ? data.kernel == null : data.kernel != null &&
+			kernel.getClass() == data.kernel.getClass();
+	}
+
+	/**
+	 * Tests whether the given dynamic object can be used as an argument to
+	 * initState, for initializing this dynamic object.
+	 */
+	@Override
+	public boolean isCompatible(final Dynamic dyn) {
+		return dyn instanceof KernelTransform;
+	}
+
+	/**
+	 * Modifies this object's state to match that of the given object. If the
+	 * argument is null, the object is initialized according to its current state
+	 * instead.
+	 */
+	@Override
+	public void initState(final Dynamic dyn) {
+		if (dyn != null && !isCompatible(dyn)) return;
+		super.initState(dyn);
+		final KernelTransform data = (KernelTransform) dyn;
+
+		if (data != null) {
+			kernel = data.kernel;
+		}
+
+		lengths = parent.getLengths();
+		dims = parent.getDimTypes();
+		makeLabels();
+
+		thumbs = new ThumbnailHandler(this, getCacheFilename());
+	}
+
+	// -- Saveable API methods --
+
+	/** Writes the current state to the given DOM element ("DataTransforms"). */
+	@Override
+	public void saveState(final Element el) throws SaveException {
+		final Element child = XMLUtil.createChild(el, "PixelKernel");
+		super.saveState(child);
+		child.setAttribute("kernel", kernel.getClass().getName());
+	}
+
+	/**
+	 * Restores the current state from the given DOM element ("PixelKernel").
+	 */
+	@Override
+	public void restoreState(final Element el) throws SaveException {
+		super.restoreState(el);
+		final String className = el.getAttribute("kernel");
+		kernel = makeKernel(className);
+		if (kernel == null) {
+			throw new SaveException("Cannot instantiate pixel kernel: " + className);
+		}
+	}
+
+	// -- TransformListener API methods --
+
+	/** Called when parent data transform's parameters are updated. */
+	@Override
+	public void transformChanged(final TransformEvent e) {
+		final int id = e.getId();
+		if (id == TransformEvent.DATA_CHANGED) {
+			notifyListeners(new TransformEvent(this));
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Instantiates the pixel kernel with the given class name. */
+	private static PixelKernel makeKernel(final String className) {
+		try {
+			final Object o =
+				Class.forName(className).getDeclaredConstructor().newInstance();
+			if (o instanceof PixelKernel) return (PixelKernel) o;
+			System.err.println("Not a pixel kernel: " + className);
+		}
+		catch (final ClassNotFoundException exc) {
+			exc.printStackTrace();
+		}
+		catch (final IllegalAccessException exc) {
+			exc.printStackTrace();
+		}
+		catch (final InstantiationException exc) {
+			exc.printStackTrace();
+		}
+		catch (final NoSuchMethodException exc) {
+			exc.printStackTrace();
+		}
+		catch (final InvocationTargetException exc) {
+			exc.printStackTrace();
+		}
+		return null;
+	}
+
+	/** Chooses filename for thumbnail cache based on parent cache's name. */
+	private String getCacheFilename() {
+		ThumbnailCache cache = null;
+		final ThumbnailHandler th = parent.getThumbHandler();
+		if (th != null) cache = th.getCache();
+		if (cache == null) return "pixel_kernel.visbio";
+		String s = cache.getCacheFile().getAbsolutePath();
+		final int dot = s.lastIndexOf(".");
+		String suffix;
+		if (dot < 0) suffix = "";
+		else {
+			suffix = s.substring(dot);
+			s = s.substring(0, dot);
+		}
+		return s + "_kernel" + suffix;
+	}
+
+}
@@ -0,0 +1,59 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.data;
+
+/**
+ * PixelKernel is a lightweight image filter operating directly on primitive
+ * sample arrays. Kernels registered with the data manager (see
+ * {@link DataManager#registerKernel}) can be applied to any image data object
+ * as a {@link KernelTransform}, which takes care of tiling, parallel execution
+ * and caching.
+ * <p>
+ * A tile is a band of whole output rows, and all samples are floats. Image
+ * planes reach transforms as float FlatFields, and neighborhood filters need
+ * rows outside their band, so a kernel sees the whole float input image and
+ * writes only its band, rather than receiving typed input tiles.
+ * <p>
+ * Implementations must provide a public no-argument constructor, and must be
+ * safe to call from several threads at once for different tiles.
+ */
+public interface PixelKernel {
+
+	/**
+	 * Gets the number of range components produced from images with the given
+	 * number of range components.
+	 */
+	int getOutputCount(int inputCount);
+
+	/**
+	 * Computes rows [y0, y1) of the output image from the input image. Samples
+	 * are indexed by [range component][pixel], where the pixel at (x, y) has
+	 * index y * width + x. The entire input image may be read, but only the
+	 * given rows of the output may be written.
+	 */
+	void process(float[][] in, float[][] out, int width, int height, int y0,
+		int y1);
+
+}
@@ -0,0 +1,49 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.data;
+
+import visad.RealType;
+
+/**
+ * PixelStage is a per-pixel mapping of image samples, where each output pixel
+ * depends only on the input samples at the same pixel. Image transforms that
+ * can express themselves as a pixel stage may be fused with their neighbors
+ * into a single pass by {@link TransformPipeline}.
+ */
+public interface PixelStage {
+
+	/** Gets the range types of the samples produced by this stage. */
+	RealType[] getRangeTypes();
+
+	/**
+	 * Maps count pixels of the input samples, starting at inOffset, to the
+	 * output samples, starting at outOffset. Samples are indexed by [range
+	 * component][pixel]. Every output value in the range must be assigned,
+	 * since output buffers may be reused.
+	 */
+	void apply(float[][] in, int inOffset, float[][] out, int outOffset,
+		int count);
+
+}
@@ -0,0 +1,306 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import visad.Data;
+import visad.FlatField;
+import visad.FunctionType;
+import visad.RealType;
+import visad.VisADException;
+
+/**
+ * Summary statistics (minimum, maximum, mean and a fixed-bin histogram) for
+ * each range component of a plane of image data. Statistics for several planes
+ * can be merged into a single aggregate.
+ */
+public class PlaneStats {
+
+	// -- Constants --
+
+	/** Number of histogram bins per range component. */
+	public static final int BINS = 256;
+
+	// -- Fields --
+
+	/** Name of each range component. */
+	protected String[] names;
+
+	/** Minimum and maximum value of each range component. */
+	protected double[] min, max;
+
+	/** Sum of the values of each range component. */
+	protected double[] sum;
+
+	/** Number of (non-NaN) values of each range component. */
+	protected long[] count;
+
+	/**
+	 * Histogram of each range component, with {@link #BINS} equal bins spanning
+	 * the component's minimum and maximum value.
+	 */
+	protected long[][] hist;
+
+	// -- Constructor --
+
+	/** Constructs a set of plane statistics from the given values. */
+	public PlaneStats(final String[] names, final double[] min,
+		final double[] max, final double[] sum, final long[] count,
+		final long[][] hist)
+	{
+		this.names = names;
+		this.min = min;
+		this.max = max;
+		this.sum = sum;
+		this.count = count;
+		this.hist = hist;
+	}
+
+	// -- PlaneStats API methods --
+
+	/** Gets the number of range components. */
+	public int getRangeCount() {
+		return names.length;
+	}
+
+	/** Gets the name of the given range component. */
+	public String getName(final int c) {
+		return names[c];
+	}
+
+	/** Gets the index of the range component with the given name, or -1. */
+	public int getIndex(final String name) {
+		for (int c = 0; c < names.length; c++) {
+			if (names[c].equals(name)) return c;
+		}
+		return -1;
+	}
+
+	/** Gets the minimum value of the given range component. */
+	public double getMin(final int c) {
+		return min[c];
+	}
+
+	/** Gets the maximum value of the given range component. */
+	public double getMax(final int c) {
+		return max[c];
+	}
+
+	/** Gets the mean value of the given range component. */
+	public double getMean(final int c) {
+		return count[c] == 0 ? Double.NaN : sum[c] / count[c];
+	}
+
+	/** Gets the number of values of the given range component. */
+	public long getCount(final int c) {
+		return count[c];
+	}
+
+	/**
+	 * Gets the histogram of the given range component. Bin i covers values from
+	 * min + i * (max - min) / BINS up to the start of the next bin.
+	 */
+	public long[] getHistogram(final int c) {
+		return hist[c];
+	}
+
+	/** Writes these statistics to a byte array. */
+	public byte[] toBytes() {
+		final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bout);
+		try {
+			out.writeInt(names.length);
+			for (int c = 0; c < names.length; c++) {
+				out.writeUTF(names[c]);
+				out.writeDouble(min[c]);
+				out.writeDouble(max[c]);
+				out.writeDouble(sum[c]);
+				out.writeLong(count[c]);
+				for (int b = 0; b < BINS; b++)
+					out.writeLong(hist[c][b]);
+			}
+			out.close();
+		}
+		catch (final IOException exc) {
+			exc.printStackTrace();
+		}
+		return bout.toByteArray();
+	}
+
+	// -- Utility methods --
+
+	/** Reads plane statistics from the given byte array. */
+	public static PlaneStats fromBytes(final byte[] bytes) throws IOException {
+		final DataInputStream in =
+			new DataInputStream(new ByteArrayInputStream(bytes));
+		final int len = in.readInt();
+		final String[] names = new String[len];
+		final double[] min = new double[len];
+		final double[] max = new double[len];
+		final double[] sum = new double[len];
+		final long[] count = new long[len];
+		final long[][] hist = new long[len][BINS];
+		for (int c = 0; c < len; c++) {
+			names[c] = in.readUTF();
+			min[c] = in.readDouble();
+			max[c] = in.readDouble();
+			sum[c] = in.readDouble();
+			count[c] = in.readLong();
+			for (int b = 0; b < BINS; b++)
+				hist[c][b] = in.readLong();
+		}
+		in.close();
+		return new PlaneStats(names, min, max, sum, count, hist);
+	}
+
+	/**
+	 * Computes statistics for the given data object.
+	 * 
+	 * @return null if the data is not a FlatField
+	 */
+	public static PlaneStats compute(final Data d) {
+		if (d == null || !(d instanceof FlatField)) return null;
+		final FlatField ff = (FlatField) d;
+		final RealType[] types =
+			((FunctionType) ff.getType()).getFlatRange().getRealComponents();
+		final String[] names = new String[types.length];
+		for (int c = 0; c < names.length; c++)
+			names[c] = types[c].getName();
+		try {
+			return compute(names, ff.getFloats(false));
+		}
+		catch (final VisADException exc) {
+			exc.printStackTrace();
+		}
+		return null;
+	}
+
+	/** Computes statistics for the given samples. */
+	public static PlaneStats compute(final String[] names,
+		final float[][] samples)
+	{
+		final int len = samples.length;
+		final double[] min = new double[len];
+		final double[] max = new double[len];
+		final double[] sum = new double[len];
+		final long[] count = new long[len];
+		final long[][] hist = new long[len][BINS];
+		for (int c = 0; c < len; c++) {
+			final float[] s = samples[c];
+
+			// first pass: range and sum
+			float lo = Float.POSITIVE_INFINITY, hi = Float.NEGATIVE_INFINITY;
+			double total = 0;
+			long n = 0;
+			for (int i = 0; i < s.length; i++) {
+				final float v = s[i];
+				if (v != v) continue; // NaN
+				if (v < lo) lo = v;
+				if (v > hi) hi = v;
+				total += v;
+				n++;
+			}
+			if (n == 0) lo = hi = Float.NaN;
+			min[c] = lo;
+			max[c] = hi;
+			sum[c] = total;
+			count[c] = n;
+
+			// second pass: histogram
+			if (n == 0) continue;
+			final long[] h = hist[c];
+			final float scale = hi > lo ? BINS / (hi - lo) : 0;
+			for (int i = 0; i < s.length; i++) {
+				final float v = s[i];
+				if (v != v) continue;
+				int b = (int) ((v - lo) * scale);
+				if (b >= BINS) b = BINS - 1;
+				h[b]++;
+			}
+		}
+		return new PlaneStats(names, min, max, sum, count, hist);
+	}
+
+	/**
+	 * Merges the given plane statistics into a single aggregate. Null entries
+	 * are skipped. Histograms are rebinned onto the aggregate range by bin
+	 * center, so the merged histogram is exact only when all planes share the
+	 * same range.
+	 * 
+	 * @return null if there are no non-null entries
+	 */
+	public static PlaneStats merge(final PlaneStats[] stats) {
+		PlaneStats first = null;
+		for (int i = 0; i < stats.length && first == null; i++)
+			first = stats[i];
+		if (first == null) return null;
+
+		final int len = first.names.length;
+		final double[] min = new double[len];
+		final double[] max = new double[len];
+		final double[] sum = new double[len];
+		final long[] count = new long[len];
+		final long[][] hist = new long[len][BINS];
+		for (int c = 0; c < len; c++) {
+			double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < stats.length; i++) {
+				final PlaneStats s = stats[i];
+				if (s == null || s.names.length != len || s.count[c] == 0) continue;
+				if (s.min[c] < lo) lo = s.min[c];
+				if (s.max[c] > hi) hi = s.max[c];
+				sum[c] += s.sum[c];
+				count[c] += s.count[c];
+			}
+			if (count[c] == 0) {
+				min[c] = max[c] = Double.NaN;
+				continue;
+			}
+			min[c] = lo;
+			max[c] = hi;
+
+			final double scale = hi > lo ? BINS / (hi - lo) : 0;
+			for (int i = 0; i < stats.length; i++) {
+				final PlaneStats s = stats[i];
+				if (s == null || s.names.length != len || s.count[c] == 0) continue;
+				final double step = (s.max[c] - s.min[c]) / BINS;
+				final long[] h = s.hist[c];
+				for (int b = 0; b < BINS; b++) {
+					if (h[b] == 0) continue;
+					final double center = s.min[c] + (b + 0.5) * step;
+					int t = (int) ((center - lo) * scale);
+					if (t >= BINS) t = BINS - 1;
+					hist[c][t] += h[b];
+				}
+			}
+		}
+		return new PlaneStats(first.names, min, max, sum, count, hist);
+	}
+
+}
@@ -0,0 +1,429 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.data;
+
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.Vector;
+
+import visad.FlatField;
+import visad.FunctionType;
+import visad.Set;
+import visad.VisADException;
+
+/**
+ * ProjectionEngine computes intensity projections incrementally, folding one
+ * image plane at a time into primitive accumulators. Several projection modes
+ * can be computed together from a single pass over the planes.
+ * <p>
+ * Maximum, minimum, sum, mean and standard deviation need only a fixed amount
+ * of extra memory regardless of the number of planes being projected. The
+ * median is exact, and therefore retains a reference to every folded plane.
+ * </p>
+ */
+public class ProjectionEngine {
+
+	// -- Constants --
+
+	/** Maximum intensity projection mode. */
+	public static final int MAXIMUM = 0;
+
+	/** Minimum intensity projection mode. */
+	public static final int MINIMUM = 1;
+
+	/** Sum projection mode. */
+	public static final int SUM = 2;
+
+	/** Mean intensity projection mode. */
+	public static final int MEAN = 3;
+
+	/** Standard deviation projection mode. */
+	public static final int STD_DEV = 4;
+
+	/** Median intensity projection mode. */
+	public static final int MEDIAN = 5;
+
+	/** Labels for each projection mode. */
+	public static final String[] MODE_NAMES = { "Maximum", "Minimum", "Sum",
+		"Mean", "Standard deviation", "Median" };
+
+	// -- Fields --
+
+	/** Projection modes being computed. */
+	protected int[] modes;
+
+	/** Flags indicating which accumulators are in use. */
+	protected boolean doMax, doMin, doMoments, doMedian;
+
+	/** Running maximum, indexed by [range component][pixel]. */
+	protected float[][] max;
+
+	/** Running minimum, indexed by [range component][pixel]. */
+	protected float[][] min;
+
+	/** Number of non-missing samples folded in at each pixel. */
+	protected int[][] counts;
+
+	/** Running mean at each pixel. */
+	protected double[][] mean;
+
+	/** Running sum of squared deviations from the mean at each pixel. */
+	protected double[][] m2;
+
+	/** Folded planes, retained for median computation. */
+	protected Vector<float[][]> planes;
+
+	/** Number of range components per plane. */
+	protected int numRange;
+
+	/** Number of pixels per plane. */
+	protected int numPixels;
+
+	/** Number of planes folded into the projection so far. */
+	protected int count;
+
+	/** MathType of the folded planes. */
+	protected FunctionType type;
+
+	/** Domain set of the folded planes. */
+	protected Set domainSet;
+
+	// -- Constructors --
+
+	/** Creates an engine for maximum intensity projection. */
+	public ProjectionEngine() {
+		this(MAXIMUM);
+	}
+
+	/** Creates an engine for the given projection mode. */
+	public ProjectionEngine(final int mode) {
+		this(new int[] { mode });
+	}
+
+	/**
+	 * Creates an engine computing all of the given projection modes from a
+	 * single pass over the planes.
+	 */
+	public ProjectionEngine(final int[] modes) {
+		this.modes = modes;
+		for (int i = 0; i < modes.length; i++) {
+			switch (modes[i]) {
+				case MAXIMUM:
+					doMax = true;
+					break;
+				case MINIMUM:
+					doMin = true;
+					break;
+				case SUM:
+				case MEAN:
+				case STD_DEV:
+					doMoments = true;
+					break;
+				case MEDIAN:
+					doMedian = true;
+					break;
+				default:
+					throw new IllegalArgumentException("Invalid projection mode: " +
+						modes[i]);
+			}
+		}
+	}
+
+	// -- Static methods --
+
+	/** Gets whether the given value is one of the projection mode constants. */
+	public static boolean isValidMode(final int mode) {
+		return mode >= 0 && mode < MODE_NAMES.length;
+	}
+
+	/**
+	 * Parses a projection mode saved as a state attribute, falling back to
+	 * maximum intensity projection if the value is missing or not recognized.
+	 */
+	public static int parseMode(final String value) {
+		if (value == null || value.equals("")) return MAXIMUM;
+		try {
+			final int mode = Integer.parseInt(value);
+			if (isValidMode(mode)) return mode;
+		}
+		catch (final NumberFormatException exc) {}
+		System.err.println("Invalid projection mode (" + value +
+			"); using maximum intensity projection");
+		return MAXIMUM;
+	}
+
+	/**
+	 * Estimates the memory needed to compute the given projection modes over
+	 * the given number of planes, in units of one float plane. Maxima and
+	 * minima need one plane each. The moments need five (an int count plus a
+	 * double mean and squared deviation per sample) and a plane for each mode
+	 * derived from them. The median needs every folded plane plus its result.
+	 */
+	public static int getWorkingPlanes(final int[] modes, final int planeCount)
+	{
+		int planes = 0;
+		boolean moments = false;
+		for (int i = 0; i < modes.length; i++) {
+			switch (modes[i]) {
+				case MAXIMUM:
+				case MINIMUM:
+					planes++;
+					break;
+				case SUM:
+				case MEAN:
+				case STD_DEV:
+					if (!moments) planes += 5;
+					moments = true;
+					planes++;
+					break;
+				case MEDIAN:
+					planes += planeCount + 1;
+					break;
+			}
+		}
+		return planes;
+	}
+
+	// -- ProjectionEngine API methods --
+
+	/** Folds the given image plane into the projection. */
+	public void add(final FlatField field) throws VisADException {
+		if (type == null) {
+			type = (FunctionType) field.getType();
+			domainSet = field.getDomainSet();
+		}
+		add(field.getFloats(false));
+	}
+
+	/**
+	 * Folds the given image plane samples, indexed by [range component][pixel],
+	 * into the projection. The samples are only read, never modified; when
+	 * computing a median, they must not be modified by the caller afterwards.
+	 */
+	public void add(final float[][] samples) {
+		if (count == 0) allocate(samples.length, samples[0].length);
+		if (samples.length != numRange) {
+			throw new IllegalArgumentException("Range component count mismatch: " +
+				samples.length + " != " + numRange);
+		}
+		if (doMax || doMin || doMoments) {
+			TileExecutor.run(numPixels, new TileExecutor.TileOp() {
+
+				@Override
+				public void run(final int start, final int end) {
+					fold(samples, start, end);
+				}
+			});
+		}
+		if (doMedian) planes.add(samples);
+		count++;
+	}
+
+	/** Gets the projection modes computed by this engine. */
+	public int[] getModes() {
+		return modes;
+	}
+
+	/** Gets the number of planes folded into the projection so far. */
+	public int getPlaneCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the projection values for the given mode, indexed by [range
+	 * component][pixel], or null if no planes have been folded in. Pixels with
+	 * no valid samples are NaN.
+	 */
+	public float[][] getValues(final int mode) {
+		if (count == 0) return null;
+		switch (mode) {
+			case MAXIMUM:
+				return doMax ? max : null;
+			case MINIMUM:
+				return doMin ? min : null;
+			case SUM:
+			case MEAN:
+			case STD_DEV:
+				return doMoments ? finishMoments(mode) : null;
+			case MEDIAN:
+				return doMedian ? finishMedian() : null;
+			default:
+				return null;
+		}
+	}
+
+	/** Gets the projection values for the first requested mode. */
+	public float[][] getValues() {
+		return getValues(modes[0]);
+	}
+
+	/**
+	 * Gets the projection for the given mode as a FlatField, with the same
+	 * MathType and domain set as the folded planes. The field references the
+	 * engine's values without copying.
+	 */
+	public FlatField getField(final int mode) throws VisADException,
+		RemoteException
+	{
+		final float[][] values = getValues(mode);
+		if (values == null || type == null) return null;
+		final FlatField ff = new FlatField(type, domainSet);
+		ff.setSamples(values, false);
+		return ff;
+	}
+
+	/** Gets the projection for the first requested mode as a FlatField. */
+	public FlatField getField() throws VisADException, RemoteException {
+		return getField(modes[0]);
+	}
+
+	/** Discards the accumulated projection. */
+	public void reset() {
+		max = min = null;
+		counts = null;
+		mean = m2 = null;
+		planes = null;
+		numRange = numPixels = count = 0;
+		type = null;
+		domainSet = null;
+	}
+
+	// -- Helper methods --
+
+	/** Allocates accumulators for planes of the given dimensions. */
+	private void allocate(final int rangeCount, final int pixelCount) {
+		numRange = rangeCount;
+		numPixels = pixelCount;
+		if (doMax) max = nanArray(rangeCount, pixelCount);
+		if (doMin) min = nanArray(rangeCount, pixelCount);
+		if (doMoments) {
+			counts = new int[rangeCount][pixelCount];
+			mean = new double[rangeCount][pixelCount];
+			m2 = new double[rangeCount][pixelCount];
+		}
+		if (doMedian) planes = new Vector<float[][]>();
+	}
+
+	/** Folds the given range of pixels into the running accumulators. */
+	private void fold(final float[][] samples, final int start, final int end) {
+		for (int k = 0; k < numRange; k++) {
+			final float[] s = samples[k];
+			if (doMax) {
+				final float[] a = max[k];
+				for (int i = start; i < end; i++) {
+					final float v = s[i];
+					// NB: missing (NaN) values never override real ones
+					if (v > a[i] || a[i] != a[i]) a[i] = v;
+				}
+			}
+			if (doMin) {
+				final float[] a = min[k];
+				for (int i = start; i < end; i++) {
+					final float v = s[i];
+					if (v < a[i] || a[i] != a[i]) a[i] = v;
+				}
+			}
+			if (doMoments) {
+				// Welford's algorithm, for numerical stability
+				final int[] n = counts[k];
+				final double[] mk = mean[k], sk = m2[k];
+				for (int i = start; i < end; i++) {
+					final float v = s[i];
+					if (v != v) continue; // skip missing values
+					final int ni = ++n[i];
+					final double delta = v - mk[i];
+					mk[i] += delta / ni;
+					sk[i] += delta * (v - mk[i]);
+				}
+			}
+		}
+	}
+
+	/** Computes sum, mean or standard deviation values from the moments. */
+	private float[][] finishMoments(final int mode) {
+		final float[][] values = new float[numRange][numPixels];
+		TileExecutor.run(numPixels, new TileExecutor.TileOp() {
+
+			@Override
+			public void run(final int start, final int end) {
+				for (int k = 0; k < numRange; k++) {
+					final int[] n = counts[k];
+					final double[] mk = mean[k], sk = m2[k];
+					final float[] v = values[k];
+					for (int i = start; i < end; i++) {
+						final int ni = n[i];
+						if (mode == SUM) v[i] = (float) (mk[i] * ni);
+						else if (ni == 0) v[i] = Float.NaN;
+						else if (mode == MEAN) v[i] = (float) mk[i];
+						else v[i] = ni < 2 ? 0 : (float) Math.sqrt(sk[i] / (ni - 1));
+					}
+				}
+			}
+		});
+		return values;
+	}
+
+	/** Computes median values from the retained planes. */
+	private float[][] finishMedian() {
+		final float[][][] stack = new float[planes.size()][][];
+		planes.copyInto(stack);
+		final float[][] values = new float[numRange][numPixels];
+		TileExecutor.run(numPixels, new TileExecutor.TileOp() {
+
+			@Override
+			public void run(final int start, final int end) {
+				final float[] column = new float[stack.length];
+				for (int k = 0; k < numRange; k++) {
+					final float[] v = values[k];
+					for (int i = start; i < end; i++) {
+						int n = 0;
+						for (int p = 0; p < stack.length; p++) {
+							final float q = stack[p][k][i];
+							if (q == q) column[n++] = q;
+						}
+						if (n == 0) {
+							v[i] = Float.NaN;
+							continue;
+						}
+						Arrays.sort(column, 0, n);
+						final int mid = n / 2;
+						v[i] = n % 2 == 1 ? column[mid] : (column[mid - 1] + column[mid]) / 2;
+					}
+				}
+			}
+		});
+		return values;
+	}
+
+	/** Creates an array filled with NaNs. */
+	private static float[][] nanArray(final int rangeCount, final int pixelCount)
+	{
+		final float[][] a = new float[rangeCount][pixelCount];
+		for (int k = 0; k < rangeCount; k++)
+			Arrays.fill(a[k], Float.NaN);
+		return a;
+	}
+
+}
@@ -42,8 +42,8 @@ import visad.RealType;
 import visad.VisADException;
 
 /**
- * ProjectionTransform performs a maximum intensity projection across a given
- * dimensional axis.
+ * ProjectionTransform performs an intensity projection (maximum, minimum, sum,
+ * mean, standard deviation or median) across a given dimensional axis.
  */
 public class ProjectionTransform extends ImageTransform {
 
@@ -52,20 +52,23 @@ public class ProjectionTransform extends ImageTransform {
 	/** Dimensional axis to project. */
 	protected int axis;
 
+	/** Projection mode (one of the ProjectionEngine mode constants). */
+	protected int mode = ProjectionEngine.MAXIMUM;
+
 	/** Range display mappings. */
 	protected RealType[] range;
 
-	/** Controls for this maximum intensity projection. */
+	/** Controls for this intensity projection. */
 	protected ProjectionWidget controls;
 
 	// -- Constructors --
 
-	/** Creates an uninitialized maximum intensity projection. */
+	/** Creates an uninitialized intensity projection. */
 	public ProjectionTransform() {
 		super();
 	}
 
-	/** Creates a maximum intensity projection from the given transform. */
+	/** Creates an intensity projection from the given transform. */
 	public ProjectionTransform(final DataTransform parent, final String name,
 		final int axis)
 	{
@@ -76,16 +79,33 @@ public class ProjectionTransform extends ImageTransform {
 
 	// -- ProjectionTransform API methods --
 
-	/** Assigns the parameters for this maximum intensity projection. */
+	/** Assigns the parameters for this intensity projection. */
 	public void setParameters(final int axis) {
+		setParameters(axis, mode);
+	}
+
+	/** Assigns the parameters for this projection. */
+	public void setParameters(final int axis, final int mode) {
 		if (axis < 0 || axis >= parent.lengths.length) return;
+		if (!ProjectionEngine.isValidMode(mode)) return;
 		this.axis = axis;
+		this.mode = mode;
 		computeLengths();
 
 		// signal parameter change to listeners
 		notifyListeners(new TransformEvent(this));
 	}
 
+	/** Gets the dimensional axis being projected. */
+	public int getAxis() {
+		return axis;
+	}
+
+	/** Gets the projection mode. */
+	public int getMode() {
+		return mode;
+	}
+
 	// -- ImageTransform API methods --
 
 	/** Gets width of each image. */
@@ -108,13 +128,13 @@ public class ProjectionTransform extends ImageTransform {
 
 	// -- Static DataTransform API methods --
 
-	/** Creates a new maximum intensity projection, with user interaction. */
+	/** Creates a new intensity projection, with user interaction. */
 	public static DataTransform makeTransform(final DataManager dm) {
 		final DataTransform data = dm.getSelectedData();
 		if (!isValidParent(data)) return null;
 		final String n =
 			(String) JOptionPane.showInputDialog(dm.getControls(),
-				"Projection name:", "Create maximum intensity projection",
+				"Projection name:", "Create intensity projection",
 				JOptionPane.INFORMATION_MESSAGE, null, null, data.getName() +
 					" projection");
 		if (n == null) return null;
@@ -153,16 +173,39 @@ public class ProjectionTransform extends ImageTransform {
 	{
 		if (dim != 2) return null;
 
+		// stream parent planes through the engine, one at a time, fusing any
+		// per-pixel transforms between this projection and the source data
 		final int len = parent.getLengths()[axis];
-		final FlatField[] fields = new FlatField[len];
+		final ProjectionEngine engine = new ProjectionEngine(mode);
+		final TransformPipeline pipeline =
+			TransformPipeline.plan((ImageTransform) parent);
 		final int[] npos = getParentPos(pos);
-		for (int i = 0; i < len; i++) {
-			npos[axis] = i;
-			final Data data = parent.getData(link, npos, dim, cache);
-			if (data == null || !(data instanceof FlatField)) return null;
-			fields[i] = (FlatField) data;
+
+		// median projections hold on to every plane; others only accumulators
+		final long bytes =
+			TileExecutor.getPlaneBytes(getImageWidth(), getImageHeight(),
+				getRangeCount()) *
+				ProjectionEngine.getWorkingPlanes(new int[] { mode }, len);
+		TileExecutor.acquire(bytes, cache);
+		try {
+			for (int i = 0; i < len; i++) {
+				npos[axis] = i;
+				final FlatField ff = pipeline.getField(link, npos, cache);
+				if (ff == null) return null;
+				engine.add(ff);
+			}
+			return engine.getField();
 		}
-		return project(fields);
+		catch (final VisADException exc) {
+			exc.printStackTrace();
+		}
+		catch (final RemoteException exc) {
+			exc.printStackTrace();
+		}
+		finally {
+			TileExecutor.release(bytes);
+		}
+		return null;
 	}
 
 	/** Gets whether this transform provides data of the given dimensionality. */
@@ -183,6 +226,11 @@ public class ProjectionTransform extends ImageTransform {
 		sb.append("{");
 		if (global) sb.append("project=");
 		sb.append(axis);
+		if (mode != ProjectionEngine.MAXIMUM) {
+			sb.append(";");
+			if (global) sb.append("mode=");
+			sb.append(mode);
+		}
 		sb.append("}");
 		return sb.toString();
 	}
@@ -201,7 +249,7 @@ public class ProjectionTransform extends ImageTransform {
 		if (!super.matches(dyn) || !isCompatible(dyn)) return false;
 		final ProjectionTransform data = (ProjectionTransform) dyn;
 
-		return axis == data.axis;
+		return axis == data.axis && mode == data.mode;
 	}
 
 	/**
@@ -226,6 +274,7 @@ public class ProjectionTransform extends ImageTransform {
 
 		if (data != null) {
 			axis = data.axis;
+			mode = data.mode;
 		}
 
 		computeLengths();
@@ -242,6 +291,7 @@ public class ProjectionTransform extends ImageTransform {
 		final Element child = XMLUtil.createChild(el, "MaximumIntensityProjection");
 		super.saveState(child);
 		child.setAttribute("axis", "" + axis);
+		child.setAttribute("mode", "" + mode);
 	}
 
 	/**
@@ -252,6 +302,7 @@ public class ProjectionTransform extends ImageTransform {
 	public void restoreState(final Element el) throws SaveException {
 		super.restoreState(el);
 		axis = Integer.parseInt(el.getAttribute("axis"));
+		mode = ProjectionEngine.parseMode(el.getAttribute("mode"));
 	}
 
 	// -- Utility methods --
@@ -260,10 +311,11 @@ public class ProjectionTransform extends ImageTransform {
 	public static FlatField project(final FlatField[] fields) {
 		if (fields == null || fields.length == 0) return null;
 
-		FlatField ff = fields[0];
+		final ProjectionEngine engine = new ProjectionEngine();
 		try {
-			for (int i = 1; i < fields.length; i++)
-				ff = (FlatField) ff.max(fields[i]);
+			for (int i = 0; i < fields.length; i++)
+				engine.add(fields[i]);
+			return engine.getField();
 		}
 		catch (final VisADException exc) {
 			exc.printStackTrace();
@@ -271,7 +323,7 @@ public class ProjectionTransform extends ImageTransform {
 		catch (final RemoteException exc) {
 			exc.printStackTrace();
 		}
-		return ff;
+		return null;
 	}
 
 	// -- Helper methods --
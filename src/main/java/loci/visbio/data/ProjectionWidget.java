@@ -38,7 +38,7 @@ import loci.visbio.util.FormsUtil;
 import loci.visbio.util.LAFUtil;
 
 /**
- * ProjectionWidget is a set of GUI controls for a maximum intensity projection
+ * ProjectionWidget is a set of GUI controls for an intensity projection
  * transform.
  */
 public class ProjectionWidget extends JPanel implements ActionListener {
@@ -51,6 +51,9 @@ public class ProjectionWidget extends JPanel implements ActionListener {
 	/** Dropdown combo box listing available dimensions for projection. */
 	protected BioComboBox axes;
 
+	/** Dropdown combo box listing available projection modes. */
+	protected BioComboBox modes;
+
 	// -- Constructor --
 
 	/** Creates a new maximum intensity projection widget. */
@@ -66,6 +69,11 @@ public class ProjectionWidget extends JPanel implements ActionListener {
 		for (int i = 0; i < names.length; i++)
 			names[i] = (i + 1) + ": " + types[i];
 		axes = new BioComboBox(names);
+		axes.setSelectedIndex(projection.getAxis());
+
+		// create combo box for selecting the projection mode
+		modes = new BioComboBox(ProjectionEngine.MODE_NAMES);
+		modes.setSelectedIndex(projection.getMode());
 
 		// apply button
 		final JButton apply = new JButton("Apply");
@@ -76,10 +84,13 @@ public class ProjectionWidget extends JPanel implements ActionListener {
 		final JPanel row1 =
 			FormsUtil.makeRow(new Object[] { "&Dimension to project", axes },
 				new boolean[] { false, true });
-		final JPanel row2 = ButtonBarFactory.buildCenteredBar(apply);
+		final JPanel row2 =
+			FormsUtil.makeRow(new Object[] { "Projection &mode", modes },
+				new boolean[] { false, true });
+		final JPanel row3 = ButtonBarFactory.buildCenteredBar(apply);
 
 		setLayout(new BorderLayout());
-		add(FormsUtil.makeColumn(row1, row2));
+		add(FormsUtil.makeColumn(row1, row2, row3));
 	}
 
 	// -- ActionListener API methods --
@@ -88,7 +99,7 @@ public class ProjectionWidget extends JPanel implements ActionListener {
 	@Override
 	public void actionPerformed(final ActionEvent e) {
 		final int index = axes.getSelectedIndex();
-		projection.setParameters(index);
+		projection.setParameters(index, modes.getSelectedIndex());
 	}
 
 }
@@ -0,0 +1,473 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.data;
+
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.swing.JComponent;
+import javax.swing.JOptionPane;
+
+import loci.visbio.state.Dynamic;
+import loci.visbio.state.SaveException;
+import loci.visbio.util.ObjectUtil;
+import loci.visbio.util.XMLUtil;
+import loci.visbio.view.TransformLink;
+
+import org.w3c.dom.Element;
+
+import visad.Data;
+import visad.FlatField;
+import visad.FunctionType;
+import visad.Set;
+import visad.VisADException;
+
+/**
+ * SlidingProjectionTransform computes a running projection (maximum, mean or
+ * sum) along a dimensional axis, over a window of the most recent planes at
+ * each position. Stepping through the axis one position at a time updates the
+ * projection incrementally, at the cost of about one parent plane per step.
+ */
+public class SlidingProjectionTransform extends ImageTransform implements
+	TransformListener
+{
+
+	// -- Constants --
+
+	/** Projection modes supported by sliding window projections. */
+	public static final int[] MODES = { ProjectionEngine.MAXIMUM,
+		ProjectionEngine.MEAN, ProjectionEngine.SUM };
+
+	/** Default number of planes in the window. */
+	public static final int DEFAULT_WINDOW = 10;
+
+	// -- Fields --
+
+	/** Dimensional axis along which the window slides. */
+	protected int axis;
+
+	/** Number of planes in the window. */
+	protected int window;
+
+	/** Projection mode (MAXIMUM, MEAN or SUM from ProjectionEngine). */
+	protected int mode;
+
+	/** Controls for this sliding window projection. */
+	protected SlidingProjectionWidget controls;
+
+	/**
+	 * Current window of each link displaying this projection, so that displays
+	 * stepping through different positions do not reset each other's windows.
+	 * Thumbnails, requested without a link, are computed from a fresh window.
+	 */
+	protected Map windows = new WeakHashMap();
+
+	/** MathType of the parent planes. */
+	protected FunctionType planeType;
+
+	/** Domain set of the parent planes. */
+	protected Set planeSet;
+
+	// -- Constructors --
+
+	/** Creates an uninitialized sliding window projection. */
+	public SlidingProjectionTransform() {
+		super();
+	}
+
+	/** Creates a sliding window projection from the given transform. */
+	public SlidingProjectionTransform(final DataTransform parent,
+		final String name, final int axis, final int window, final int mode)
+	{
+		super(parent, name);
+		this.axis = axis;
+		this.window = window;
+		this.mode = mode;
+		initState(null);
+		parent.addTransformListener(this);
+	}
+
+	// -- SlidingProjectionTransform API methods --
+
+	/** Assigns the parameters for this sliding window projection. */
+	public synchronized void setParameters(final int axis, final int window,
+		final int mode)
+	{
+		if (axis < 0 || axis >= parent.lengths.length || window < 1 ||
+			!isValidMode(mode))
+		{
+			return;
+		}
+		this.axis = axis;
+		this.window = window;
+		this.mode = mode;
+		resetWindow();
+
+		// signal parameter change to listeners
+		notifyListeners(new TransformEvent(this));
+	}
+
+	/** Gets the dimensional axis along which the window slides. */
+	public int getAxis() {
+		return axis;
+	}
+
+	/** Gets the number of planes in the window. */
+	public int getWindow() {
+		return window;
+	}
+
+	/** Gets the projection mode. */
+	public int getMode() {
+		return mode;
+	}
+
+	// -- ImageTransform API methods --
+
+	/** Gets width of each image. */
+	@Override
+	public int getImageWidth() {
+		return ((ImageTransform) parent).getImageWidth();
+	}
+
+	/** Gets height of each image. */
+	@Override
+	public int getImageHeight() {
+		return ((ImageTransform) parent).getImageHeight();
+	}
+
+	/** Gets number of range components at each pixel. */
+	@Override
+	public int getRangeCount() {
+		return ((ImageTransform) parent).getRangeCount();
+	}
+
+	// -- Static DataTransform API methods --
+
+	/** Creates a new sliding window projection, with user interaction. */
+	public static DataTransform makeTransform(final DataManager dm) {
+		final DataTransform data = dm.getSelectedData();
+		if (!isValidParent(data)) return null;
+		final String n =
+			(String) JOptionPane.showInputDialog(dm.getControls(),
+				"Projection name:", "Create sliding window projection",
+				JOptionPane.INFORMATION_MESSAGE, null, null, data.getName() +
+					" sliding projection");
+		if (n == null) return null;
+
+		// guess at some reasonable defaults
+		final String[] types = data.getDimTypes();
+		int windowAxis = 0;
+		for (int i = 0; i < types.length; i++) {
+			if (types[i].equals("Time")) {
+				windowAxis = i;
+				break;
+			}
+		}
+		final int windowSize =
+			Math.min(DEFAULT_WINDOW, data.getLengths()[windowAxis]);
+
+		return new SlidingProjectionTransform(data, n, windowAxis, windowSize,
+			ProjectionEngine.MAXIMUM);
+	}
+
+	/**
+	 * Indicates whether this transform type would accept the given transform as
+	 * its parent transform.
+	 */
+	public static boolean isValidParent(final DataTransform data) {
+		return data != null && data instanceof ImageTransform &&
+			data.getLengths().length > 0;
+	}
+
+	/** Indicates whether this transform type requires a parent transform. */
+	public static boolean isParentRequired() {
+		return true;
+	}
+
+	/** Indicates whether sliding window projections support the given mode. */
+	public static boolean isValidMode(final int mode) {
+		for (int i = 0; i < MODES.length; i++) {
+			if (MODES[i] == mode) return true;
+		}
+		return false;
+	}
+
+	// -- DataTransform API methods --
+
+	/**
+	 * Retrieves the data corresponding to the given dimensional position, for the
+	 * given display dimensionality.
+	 * 
+	 * @return null if the transform does not provide data of that dimensionality
+	 */
+	@Override
+	public synchronized Data getData(final TransformLink link, final int[] pos,
+		final int dim, final DataCache cache)
+	{
+		if (dim != 2) return null;
+
+		final int end = pos[axis];
+		final int start = Math.max(0, end - window + 1);
+
+		// determine which planes are already in the window
+		Window w = link == null ? null : (Window) windows.get(link);
+		int next = start;
+		if (w != null && sameWindowAxis(w.pos, pos)) {
+			final int oldEnd = w.pos[axis];
+			final int oldStart = oldEnd - w.engine.size() + 1;
+			if (oldEnd <= end && oldStart <= start && oldEnd >= start - 1) {
+				// slide the existing window forward
+				while (w.engine.size() > 0 && oldEnd - w.engine.size() + 1 < start) {
+					w.engine.evict();
+				}
+				next = oldEnd + 1;
+			}
+			else w = null;
+		}
+		else w = null;
+		if (w == null) {
+			w = new Window(new SlidingWindowEngine(mode, window));
+			if (link != null) windows.put(link, w);
+		}
+
+		// read new planes into the window
+		final TransformPipeline pipeline =
+			TransformPipeline.plan((ImageTransform) parent);
+		final int[] npos = ObjectUtil.copy(pos);
+		try {
+			for (int i = next; i <= end; i++) {
+				npos[axis] = i;
+				final FlatField ff = pipeline.getField(link, npos, cache);
+				if (ff == null) {
+					windows.remove(link);
+					return null;
+				}
+				if (planeType == null) {
+					planeType = (FunctionType) ff.getType();
+					planeSet = ff.getDomainSet();
+				}
+				w.engine.push(ff.getFloats(false));
+				w.pos = ObjectUtil.copy(npos);
+			}
+
+			final FlatField result = new FlatField(planeType, planeSet);
+			result.setSamples(w.engine.getValues(), false);
+			return result;
+		}
+		catch (final VisADException exc) {
+			exc.printStackTrace();
+		}
+		catch (final RemoteException exc) {
+			exc.printStackTrace();
+		}
+		windows.remove(link);
+		return null;
+	}
+
+	/** Gets whether this transform provides data of the given dimensionality. */
+	@Override
+	public boolean isValidDimension(final int dim) {
+		return dim == 2 && parent.isValidDimension(dim);
+	}
+
+	/**
+	 * Gets a string id uniquely describing this data transform at the given
+	 * dimensional position, for the purposes of thumbnail caching. If global flag
+	 * is true, the id is suitable for use in the default, global cache file.
+	 */
+	@Override
+	public String getCacheId(final int[] pos, final boolean global) {
+		final StringBuffer sb = new StringBuffer(parent.getCacheId(pos, global));
+		sb.append("{");
+		if (global) sb.append("window=");
+		sb.append(axis);
+		sb.append(";");
+		sb.append(window);
+		sb.append(";");
+		sb.append(mode);
+		sb.append("}");
+		return sb.toString();
+	}
+
+	/** Gets associated GUI controls for this transform. */
+	@Override
+	public JComponent getControls() {
+		return controls;
+	}
+
+	// -- Dynamic API methods --
+
+	/** Tests whether two dynamic objects are equivalent. */
+	@Override
+	public boolean matches(final Dynamic dyn) {
+		if (!super.matches(dyn) || !isCompatible(dyn)) return false;
+		final SlidingProjectionTransform data = (SlidingProjectionTransform) dyn;
+
+		return axis == data.axis && window == data.window && mode == data.mode;
+	}
+
+	/**
+	 * Tests whether the given dynamic object can be used as an argument to
+	 * initState, for initializing this dynamic object.
+	 */
+	@Override
+	public boolean isCompatible(final Dynamic dyn) {
+		return dyn instanceof SlidingProjectionTransform;
+	}
+
+	/**
+	 * Modifies this object's state to match that of the given object. If the
+	 * argument is null, the object is initialized according to its current state
+	 * instead.
+	 */
+	@Override
+	public void initState(final Dynamic dyn) {
+		if (dyn != null && !isCompatible(dyn)) return;
+		super.initState(dyn);
+		final SlidingProjectionTransform data = (SlidingProjectionTransform) dyn;
+
+		if (data != null) {
+			axis = data.axis;
+			window = data.window;
+			mode = data.mode;
+		}
+
+		lengths = parent.getLengths();
+		dims = parent.getDimTypes();
+		makeLabels();
+		resetWindow();
+
+		controls = new SlidingProjectionWidget(this);
+		thumbs = new ThumbnailHandler(this, getCacheFilename());
+	}
+
+	// -- Saveable API methods --
+
+	/** Writes the current state to the given DOM element ("DataTransforms"). */
+	@Override
+	public void saveState(final Element el) throws SaveException {
+		final Element child = XMLUtil.createChild(el, "SlidingWindowProjection");
+		super.saveState(child);
+		child.setAttribute("axis", "" + axis);
+		child.setAttribute("window", "" + window);
+		child.setAttribute("mode", "" + mode);
+	}
+
+	/**
+	 * Restores the current state from the given DOM element
+	 * ("SlidingWindowProjection").
+	 */
+	@Override
+	public void restoreState(final Element el) throws SaveException {
+		super.restoreState(el);
+		axis = Integer.parseInt(el.getAttribute("axis"));
+		if (axis < 0 || axis >= lengths.length) axis = 0;
+		window = Integer.parseInt(el.getAttribute("window"));
+		if (lengths.length > 0 && window > lengths[axis]) window = lengths[axis];
+		if (window < 1) window = 1;
+		mode = ProjectionEngine.parseMode(el.getAttribute("mode"));
+		if (!isValidMode(mode)) {
+			System.err.println("Invalid sliding projection mode (" + mode +
+				"); using maximum intensity projection");
+			mode = ProjectionEngine.MAXIMUM;
+		}
+	}
+
+	// -- TransformListener API methods --
+
+	/** Called when parent data transform's parameters are updated. */
+	@Override
+	public void transformChanged(final TransformEvent e) {
+		final int id = e.getId();
+		if (id == TransformEvent.DATA_CHANGED) {
+			synchronized (this) {
+				resetWindow();
+			}
+			notifyListeners(new TransformEvent(this));
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Discards all windows, forcing them to be reread from the parent. */
+	private void resetWindow() {
+		windows.clear();
+		planeType = null;
+		planeSet = null;
+	}
+
+	/**
+	 * Gets whether the given position differs from a window's position only
+	 * along the sliding axis.
+	 */
+	private boolean sameWindowAxis(final int[] windowPos, final int[] pos) {
+		if (windowPos == null || pos.length != windowPos.length) return false;
+		for (int i = 0; i < pos.length; i++) {
+			if (i != axis && pos[i] != windowPos[i]) return false;
+		}
+		return true;
+	}
+
+	/** Chooses filename for thumbnail cache based on parent cache's name. */
+	private String getCacheFilename() {
+		ThumbnailCache cache = null;
+		final ThumbnailHandler th = parent.getThumbHandler();
+		if (th != null) cache = th.getCache();
+		if (cache == null) return "sliding_projection.visbio";
+		String s = cache.getCacheFile().getAbsolutePath();
+		final int dot = s.lastIndexOf(".");
+		String suffix;
+		if (dot < 0) suffix = "";
+		else {
+			suffix = s.substring(dot);
+			s = s.substring(0, dot);
+		}
+		return s + "_sliding" + suffix;
+	}
+
+	// -- Helper classes --
+
+	/** A window of planes, with its incremental projection state. */
+	private static class Window {
+
+		/** Incremental projection of the planes in the window. */
+		private final SlidingWindowEngine engine;
+
+		/**
+		 * Dimensional position of the window, with the sliding axis component set
+		 * to the position of the window's newest plane.
+		 */
+		private int[] pos;
+
+		/** Creates an empty window projected by the given engine. */
+		public Window(final SlidingWindowEngine engine) {
+			this.engine = engine;
+		}
+
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.data;
+
+import com.jgoodies.forms.factories.ButtonBarFactory;
+
+import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JButton;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+
+import loci.visbio.util.BioComboBox;
+import loci.visbio.util.FormsUtil;
+import loci.visbio.util.LAFUtil;
+
+/**
+ * SlidingProjectionWidget is a set of GUI controls for a sliding window
+ * projection transform.
+ */
+public class SlidingProjectionWidget extends JPanel implements ActionListener
+{
+
+	// -- Fields --
+
+	/** Associated sliding window projection transform. */
+	protected SlidingProjectionTransform projection;
+
+	/** Dropdown combo box listing available dimensions for the window. */
+	protected BioComboBox axes;
+
+	/** Text field indicating number of planes in the window. */
+	protected JTextField windowField;
+
+	/** Dropdown combo box listing available projection modes. */
+	protected BioComboBox modes;
+
+	// -- Constructor --
+
+	/** Creates a new sliding window projection widget. */
+	public SlidingProjectionWidget(final SlidingProjectionTransform projection) {
+		super();
+		this.projection = projection;
+
+		final DataTransform parent = projection.getParent();
+		final String[] types = parent.getDimTypes();
+
+		// create combo box for selecting which axis to slide along
+		final String[] names = new String[types.length];
+		for (int i = 0; i < names.length; i++)
+			names[i] = (i + 1) + ": " + types[i];
+		axes = new BioComboBox(names);
+		axes.setSelectedIndex(projection.getAxis());
+
+		// create text field for window size
+		windowField = new JTextField("" + projection.getWindow(), 4);
+
+		// create combo box for selecting the projection mode
+		final int[] modeList = SlidingProjectionTransform.MODES;
+		final String[] modeNames = new String[modeList.length];
+		for (int i = 0; i < modeList.length; i++) {
+			modeNames[i] = ProjectionEngine.MODE_NAMES[modeList[i]];
+		}
+		modes = new BioComboBox(modeNames);
+		for (int i = 0; i < modeList.length; i++) {
+			if (modeList[i] == projection.getMode()) modes.setSelectedIndex(i);
+		}
+
+		// apply button
+		final JButton apply = new JButton("Apply");
+		if (!LAFUtil.isMacLookAndFeel()) apply.setMnemonic('a');
+		apply.addActionListener(this);
+
+		// lay out components
+		final JPanel row1 =
+			FormsUtil.makeRow(new Object[] { "&Dimension to slide along", axes },
+				new boolean[] { false, true });
+		final JPanel row2 =
+			FormsUtil.makeRow(new Object[] { "&Window size", windowField,
+				"Projection &mode", modes }, new boolean[] { false, false, false,
+				true });
+		final JPanel row3 = ButtonBarFactory.buildCenteredBar(apply);
+
+		setLayout(new BorderLayout());
+		add(FormsUtil.makeColumn(row1, row2, row3));
+	}
+
+	// -- ActionListener API methods --
+
+	/** Applies changes to this projection's parameters. */
+	@Override
+	public void actionPerformed(final ActionEvent e) {
+		int window = -1;
+		try {
+			window = Integer.parseInt(windowField.getText());
+		}
+		catch (final NumberFormatException exc) {}
+		if (window < 1) {
+			JOptionPane.showMessageDialog(this, "Invalid window size.", "VisBio",
+				JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+		final int mode = SlidingProjectionTransform.MODES[modes.getSelectedIndex()];
+		projection.setParameters(axes.getSelectedIndex(), window, mode);
+	}
+
+}
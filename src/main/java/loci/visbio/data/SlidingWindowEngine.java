@@ -0,0 +1,294 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.data;
+
+import java.util.Arrays;
+
+/**
+ * SlidingWindowEngine maintains a projection over a sliding window of image
+ * planes, updating it incrementally as planes enter and leave the window.
+ * Sums are kept as running totals, so that each window step costs time
+ * proportional to one plane rather than to the window size.
+ * <p>
+ * Maxima use the van Herk/Gil-Werman scheme: the window is split into a front
+ * block, whose ring entries are replaced by suffix maxima when the block is
+ * formed, and a back block of newly pushed planes summarized by a single
+ * running maximum. The maximum of the window is that of the oldest suffix
+ * plane and the running maximum, so maxima need only one plane beyond the
+ * ring, and each plane costs amortized constant work per pixel.
+ */
+public class SlidingWindowEngine {
+
+	// -- Fields --
+
+	/** Projection mode: MAXIMUM, SUM or MEAN from ProjectionEngine. */
+	protected int mode;
+
+	/** Maximum number of planes in the window. */
+	protected int window;
+
+	/** Planes currently in the window, stored by sequence number mod window. */
+	protected float[][][] ring;
+
+	/** Sequence number of the oldest plane in the window. */
+	protected int first;
+
+	/** Sequence number to assign to the next plane pushed. */
+	protected int next;
+
+	/** Number of range components per plane. */
+	protected int numRange;
+
+	/** Number of pixels per plane. */
+	protected int numPixels;
+
+	/** Running sums, indexed by [range component][pixel]. */
+	protected double[][] sums;
+
+	/** Number of non-missing samples in the window at each pixel. */
+	protected int[][] counts;
+
+	/**
+	 * Sequence number of the first plane of the back block. Ring entries of
+	 * older planes hold suffix maxima rather than the planes themselves.
+	 */
+	protected int boundary;
+
+	/** Running maximum of the back block, indexed by [range component][pixel]. */
+	protected float[][] backMax;
+
+	// -- Constructor --
+
+	/** Creates a sliding window engine with the given mode and window size. */
+	public SlidingWindowEngine(final int mode, final int window) {
+		if (mode != ProjectionEngine.MAXIMUM && mode != ProjectionEngine.SUM &&
+			mode != ProjectionEngine.MEAN)
+		{
+			throw new IllegalArgumentException("Unsupported mode: " + mode);
+		}
+		if (window < 1) {
+			throw new IllegalArgumentException("Invalid window size: " + window);
+		}
+		this.mode = mode;
+		this.window = window;
+		ring = new float[window][][];
+	}
+
+	// -- SlidingWindowEngine API methods --
+
+	/**
+	 * Adds the given plane samples, indexed by [range component][pixel], as the
+	 * newest plane of the window, evicting the oldest plane if the window is
+	 * full. The engine keeps a reference to the samples, so they must not be
+	 * modified while they remain in the window.
+	 */
+	public void push(final float[][] samples) {
+		if (sums == null && backMax == null) {
+			allocate(samples.length, samples[0].length);
+		}
+		if (samples.length != numRange || samples[0].length != numPixels) {
+			throw new IllegalArgumentException("Plane dimensions do not match");
+		}
+		if (size() == window) evict();
+
+		final int seq = next;
+		ring[seq % window] = samples;
+		TileExecutor.run(numPixels, new TileExecutor.TileOp() {
+
+			@Override
+			public void run(final int start, final int end) {
+				for (int k = 0; k < numRange; k++) {
+					final float[] s = samples[k];
+					if (mode == ProjectionEngine.MAXIMUM) {
+						final float[] max = backMax[k];
+						for (int i = start; i < end; i++)
+							max[i] = max(max[i], s[i]);
+					}
+					else {
+						final double[] sum = sums[k];
+						final int[] c = counts[k];
+						for (int i = start; i < end; i++) {
+							final float v = s[i];
+							if (v != v) continue; // missing value
+							sum[i] += v;
+							c[i]++;
+						}
+					}
+				}
+			}
+		});
+		next++;
+	}
+
+	/** Removes the oldest plane from the window. */
+	public void evict() {
+		if (size() == 0) return;
+		final int seq = first;
+		if (mode == ProjectionEngine.MAXIMUM) {
+			// the oldest plane leaves with its suffix maximum; form a new front
+			// block from the back block when the front block runs out
+			if (seq == boundary) flip();
+		}
+		else {
+			final float[][] samples = ring[seq % window];
+			TileExecutor.run(numPixels, new TileExecutor.TileOp() {
+
+				@Override
+				public void run(final int start, final int end) {
+					for (int k = 0; k < numRange; k++) {
+						final float[] s = samples[k];
+						final double[] sum = sums[k];
+						final int[] c = counts[k];
+						for (int i = start; i < end; i++) {
+							final float v = s[i];
+							if (v != v) continue; // missing value
+							sum[i] -= v;
+							c[i]--;
+						}
+					}
+				}
+			});
+		}
+		ring[seq % window] = null;
+		first++;
+	}
+
+	/** Gets the number of planes currently in the window. */
+	public int size() {
+		return next - first;
+	}
+
+	/** Gets the maximum number of planes in the window. */
+	public int getWindowSize() {
+		return window;
+	}
+
+	/**
+	 * Gets the projection of the planes currently in the window, indexed by
+	 * [range component][pixel]. Pixels with no valid samples are NaN.
+	 */
+	public float[][] getValues() {
+		if (size() == 0) return null;
+		final float[][] values = new float[numRange][numPixels];
+		TileExecutor.run(numPixels, new TileExecutor.TileOp() {
+
+			@Override
+			public void run(final int start, final int end) {
+				for (int k = 0; k < numRange; k++) {
+					final float[] v = values[k];
+					if (mode == ProjectionEngine.MAXIMUM) {
+						final float[] back = backMax[k];
+						if (first == boundary) {
+							System.arraycopy(back, start, v, start, end - start);
+							continue;
+						}
+						final float[] front = ring[first % window][k];
+						for (int i = start; i < end; i++)
+							v[i] = max(front[i], back[i]);
+					}
+					else {
+						final double[] sum = sums[k];
+						final int[] c = counts[k];
+						for (int i = start; i < end; i++) {
+							if (mode == ProjectionEngine.SUM) v[i] = (float) sum[i];
+							else v[i] = c[i] == 0 ? Float.NaN : (float) (sum[i] / c[i]);
+						}
+					}
+				}
+			}
+		});
+		return values;
+	}
+
+	/** Empties the window and discards all accumulated state. */
+	public void reset() {
+		Arrays.fill(ring, null);
+		first = next = boundary = 0;
+		sums = null;
+		counts = null;
+		backMax = null;
+	}
+
+	// -- Helper methods --
+
+	/** Allocates accumulators for planes of the given dimensions. */
+	private void allocate(final int rangeCount, final int pixelCount) {
+		numRange = rangeCount;
+		numPixels = pixelCount;
+		if (mode == ProjectionEngine.MAXIMUM) {
+			backMax = new float[rangeCount][pixelCount];
+			for (int k = 0; k < rangeCount; k++)
+				Arrays.fill(backMax[k], Float.NaN);
+		}
+		else {
+			sums = new double[rangeCount][pixelCount];
+			counts = new int[rangeCount][pixelCount];
+		}
+	}
+
+	/**
+	 * Turns the back block into the front block, replacing the ring entry of
+	 * each of its planes with the maximum of that plane and all newer ones.
+	 */
+	private void flip() {
+		// newest first, so each raw plane is released as its suffix is formed
+		float[][] prev = null;
+		for (int seq = next - 1; seq >= first; seq--) {
+			final float[][] raw = ring[seq % window];
+			final float[][] newer = prev;
+			final float[][] m = new float[numRange][numPixels];
+			TileExecutor.run(numPixels, new TileExecutor.TileOp() {
+
+				@Override
+				public void run(final int start, final int end) {
+					for (int k = 0; k < numRange; k++) {
+						final float[] s = raw[k], d = m[k];
+						if (newer == null) {
+							System.arraycopy(s, start, d, start, end - start);
+						}
+						else {
+							final float[] n = newer[k];
+							for (int i = start; i < end; i++)
+								d[i] = max(s[i], n[i]);
+						}
+					}
+				}
+			});
+			ring[seq % window] = m;
+			prev = m;
+		}
+		for (int k = 0; k < numRange; k++)
+			Arrays.fill(backMax[k], Float.NaN);
+		boundary = next;
+	}
+
+	/** Gets the larger of two samples, ignoring missing (NaN) values. */
+	private static float max(final float a, final float b) {
+		if (a != a) return b;
+		if (b != b) return a;
+		return a > b ? a : b;
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.data;
+
+/**
+ * SmoothingKernel is a pixel kernel that replaces each sample with the mean
+ * of its 3x3 neighborhood, clamped at the image edges.
+ */
+public class SmoothingKernel implements PixelKernel {
+
+	// -- PixelKernel API methods --
+
+	/** Gets the number of range components produced (one per input). */
+	@Override
+	public int getOutputCount(final int inputCount) {
+		return inputCount;
+	}
+
+	/** Computes rows [y0, y1) of the smoothed image. */
+	@Override
+	public void process(final float[][] in, final float[][] out,
+		final int width, final int height, final int y0, final int y1)
+	{
+		for (int r = 0; r < out.length; r++) {
+			final float[] src = in[r];
+			final float[] dest = out[r];
+			for (int y = y0; y < y1; y++) {
+				final int ya = Math.max(y - 1, 0), yb = Math.min(y + 1, height - 1);
+				for (int x = 0; x < width; x++) {
+					final int xa = Math.max(x - 1, 0), xb = Math.min(x + 1, width - 1);
+					float sum = 0;
+					for (int j = ya; j <= yb; j++) {
+						final int row = j * width;
+						for (int i = xa; i <= xb; i++)
+							sum += src[row + i];
+					}
+					dest[y * width + x] = sum / ((yb - ya + 1) * (xb - xa + 1));
+				}
+			}
+		}
+	}
+
+}
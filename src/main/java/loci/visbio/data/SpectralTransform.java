@@ -137,6 +137,12 @@ public class SpectralTransform extends ImageTransform implements
 		return range.length;
 	}
 
+	/** Gets a per-pixel stage equivalent to this spectral mapping. */
+	@Override
+	public PixelStage getPixelStage() {
+		return new WeightedStage(range, weights);
+	}
+
 	// -- Static DataTransform API methods --
 
 	/** Creates a new spectral mapping, with user interaction. */
@@ -182,10 +188,20 @@ public class SpectralTransform extends ImageTransform implements
 	{
 		if (dim != 2) return null;
 
-		final Data data = parent.getData(link, pos, dim, cache);
-		if (data == null || !(data instanceof FlatField)) return null;
-
-		return doWeightedMapping((FlatField) data, range, weights);
+		final long bytes =
+			TileExecutor.getPlaneBytes(getImageWidth(), getImageHeight(),
+				range.length);
+		TileExecutor.acquire(bytes, cache);
+		try {
+			// fuse with any spectral mappings between this one and the source data
+			final FlatField ff =
+				TransformPipeline.plan(this).getField(link, pos, cache);
+			if (cache != null && ff != null) cache.putData(this, pos, null, ff);
+			return ff;
+		}
+		finally {
+			TileExecutor.release(bytes);
+		}
 	}
 
 	/** Gets whether this transform provides data of the given dimensionality. */
@@ -324,18 +340,7 @@ public class SpectralTransform extends ImageTransform implements
 
 		try {
 			final float[][] samples = field.getFloats(false);
-			final int count = samples[0].length;
-
-			final float[][] nsamps = new float[types.length][count];
-			for (int r = 0; r < types.length; r++) {
-				final int wlen = weights[r].length;
-				for (int c = 0; c < count; c++) {
-					float sum = 0;
-					for (int w = 0; w < wlen; w++)
-						sum += weights[r][w] * samples[w][c];
-					nsamps[r][c] = sum / wlen;
-				}
-			}
+			final float[][] nsamps = mapSamples(samples, weights);
 
 			final RealTupleType domain = ((FunctionType) field.getType()).getDomain();
 			final FunctionType ftype =
@@ -354,6 +359,18 @@ public class SpectralTransform extends ImageTransform implements
 		return null;
 	}
 
+	/**
+	 * Computes the weighted mapping of the given samples, indexed by [range
+	 * component][pixel]. Each output component is the mean of the input
+	 * components scaled by the corresponding weights.
+	 */
+	public static float[][] mapSamples(final float[][] samples,
+		final double[][] weights)
+	{
+		return TransformPipeline.apply(new PixelStage[] { new WeightedStage(null,
+			weights) }, samples);
+	}
+
 	// -- Helper methods --
 
 	/** Chooses filename for thumbnail cache based on parent cache's name. */
@@ -387,4 +404,57 @@ public class SpectralTransform extends ImageTransform implements
 		if (semicolon) sb.append(";");
 	}
 
+	// -- Helper classes --
+
+	/**
+	 * Pixel stage computing a weighted mapping, with the averaging folded into
+	 * precomputed float weights. Inputs with zero weight are still folded in,
+	 * so that a missing (NaN) sample in any input yields NaN, as it did when
+	 * the mapping was computed one pixel at a time.
+	 */
+	private static class WeightedStage implements PixelStage {
+
+		/** Output range components. */
+		private final RealType[] types;
+
+		/** Scaled weights of the inputs, for each output. */
+		private final float[][] factors;
+
+		public WeightedStage(final RealType[] types, final double[][] weights) {
+			this.types = types;
+			factors = new float[weights.length][];
+			for (int r = 0; r < weights.length; r++) {
+				final int wlen = weights[r].length;
+				factors[r] = new float[wlen];
+				for (int w = 0; w < wlen; w++)
+					factors[r][w] = (float) (weights[r][w] / wlen);
+			}
+		}
+
+		@Override
+		public RealType[] getRangeTypes() {
+			return types == null ? new RealType[factors.length] : types;
+		}
+
+		@Override
+		public void apply(final float[][] in, final int inOffset,
+			final float[][] out, final int outOffset, final int count)
+		{
+			final int shift = inOffset - outOffset;
+			for (int r = 0; r < out.length; r++) {
+				final float[] o = out[r];
+				final float[] f = factors[r];
+				for (int c = outOffset; c < outOffset + count; c++)
+					o[c] = 0;
+				for (int w = 0; w < f.length; w++) {
+					final float[] s = in[w];
+					final float factor = f[w];
+					for (int c = outOffset; c < outOffset + count; c++)
+						o[c] += factor * s[c + shift];
+				}
+			}
+		}
+
+	}
+
 }
@@ -43,7 +43,9 @@ import visad.data.visad.BinaryWriter;
 //one huge "cache.visbio" file
 
 /**
- * Disk cache for thumbnails generated from datasets.
+ * Disk cache for thumbnails generated from datasets. Records are appended at
+ * the current end of the cache file, so all reads and writes are serialized
+ * on the cache itself.
  */
 public class ThumbnailCache {
 
@@ -52,6 +54,9 @@ public class ThumbnailCache {
 	/** Default cache file to use if supplied cache file is not available. */
 	private static final File DEFAULT_CACHE = new File("cache.visbio");
 
+	/** Suffix appended to an id string to form its plane statistics id. */
+	private static final String STATS_SUFFIX = "#stats";
+
 	// -- Fields --
 
 	/** File containing thumbnail cache data. */
@@ -66,6 +71,9 @@ public class ThumbnailCache {
 	/** Last retrieved thumbnail index. */
 	protected int last;
 
+	/** Number of plane statistics records in the cache file. */
+	protected int statsCount;
+
 	// -- Constructor --
 
 	/** Constructs a thumbnail cache that uses the given disk file. */
@@ -104,6 +112,7 @@ public class ThumbnailCache {
 					final int size = raf.readInt();
 					ids.add(id);
 					offsets.add(new Long(offset));
+					if (id.endsWith(STATS_SUFFIX)) statsCount++;
 					offset += idLen + size + 8;
 					raf.seek(offset);
 				}
@@ -133,7 +142,7 @@ public class ThumbnailCache {
 	// -- API methods --
 
 	/** Retrieves the thumbnail with the given id string from the disk cache. */
-	public FlatField retrieve(final String id) {
+	public synchronized FlatField retrieve(final String id) {
 		final long offset = getOffset(id);
 		if (offset < 0) return null;
 		try {
@@ -146,7 +155,7 @@ public class ThumbnailCache {
 	}
 
 	/** Stores the given thumbnail in the disk cache. */
-	public void store(final String id, final FlatField thumb) {
+	public synchronized void store(final String id, final FlatField thumb) {
 		// append thumbnail to the data file
 		try {
 			save(id, thumb);
@@ -156,8 +165,39 @@ public class ThumbnailCache {
 		}
 	}
 
+	/**
+	 * Retrieves the plane statistics for the thumbnail with the given id string
+	 * from the disk cache.
+	 */
+	public synchronized PlaneStats retrieveStats(final String id) {
+		final long offset = getOffset(id + STATS_SUFFIX);
+		if (offset < 0) return null;
+		try {
+			return PlaneStats.fromBytes(loadBytes(offset));
+		}
+		catch (final IOException exc) {
+			exc.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the given plane statistics in the disk cache, alongside the
+	 * thumbnail with the given id string.
+	 */
+	public synchronized void storeStats(final String id, final PlaneStats stats) {
+		if (getOffset(id + STATS_SUFFIX) >= 0) return;
+		try {
+			saveBytes(id + STATS_SUFFIX, stats.toBytes());
+			statsCount++;
+		}
+		catch (final IOException exc) {
+			exc.printStackTrace();
+		}
+	}
+
 	/** Wipes the thumbnail disk cache. */
-	public void clear() {
+	public synchronized void clear() {
 		try {
 			file.delete();
 			file.createNewFile();
@@ -168,13 +208,13 @@ public class ThumbnailCache {
 	}
 
 	/** Gets thumbnail cache disk usage in bytes. */
-	public long getUsage() {
+	public synchronized long getUsage() {
 		return file.length();
 	}
 
 	/** Gets the number of thumbnails in the disk cache. */
-	public int getThumbCount() {
-		return ids.size();
+	public synchronized int getThumbCount() {
+		return ids.size() - statsCount;
 	}
 
 	/** Gets the disk cache file. */
@@ -206,9 +246,6 @@ public class ThumbnailCache {
 	protected void save(final String id, final FlatField thumb)
 		throws IOException
 	{
-		final byte[] idBytes = id.getBytes();
-		final long offset = file.length();
-
 		// convert image data into byte array
 		final ByteArrayOutputStream bout = new ByteArrayOutputStream();
 		final BinaryWriter fout = new BinaryWriter(bout);
@@ -219,7 +256,36 @@ public class ThumbnailCache {
 			exc.printStackTrace();
 		}
 		fout.close();
-		final byte[] image = bout.toByteArray();
+		saveBytes(id, bout.toByteArray());
+	}
+
+	/** Loads the data object at the given byte offset of the cache file. */
+	protected FlatField load(final long offset) throws IOException {
+		final byte[] bytes = loadBytes(offset);
+
+		// convert image bytes to FlatField object
+		final BinaryReader fin = new BinaryReader(new ByteArrayInputStream(bytes));
+		FlatField thumb;
+		try {
+			thumb = (FlatField) fin.getData();
+		}
+		catch (final ClassCastException exc) {
+			thumb = null;
+		}
+		catch (final VisADException exc) {
+			thumb = null;
+		}
+		fin.close();
+
+		return thumb;
+	}
+
+	/** Appends a record with the given id and bytes to the cache file. */
+	protected void saveBytes(final String id, final byte[] bytes)
+		throws IOException
+	{
+		final byte[] idBytes = id.getBytes();
+		final long offset = file.length();
 
 		// add id/offset pair to the list
 		ids.add(id);
@@ -230,39 +296,23 @@ public class ThumbnailCache {
 		raf.seek(offset);
 		raf.writeInt(idBytes.length);
 		raf.write(idBytes);
-		raf.writeInt(image.length);
-		raf.write(image);
+		raf.writeInt(bytes.length);
+		raf.write(bytes);
 		raf.close();
 	}
 
-	/** Loads the data object at the given byte offset of the cache file. */
-	protected FlatField load(final long offset) throws IOException {
+	/** Loads the record bytes at the given byte offset of the cache file. */
+	protected byte[] loadBytes(final long offset) throws IOException {
 		final RandomAccessFile raf = new RandomAccessFile(file, "r");
 		raf.seek(offset);
 		final int idLen = raf.readInt();
 		raf.skipBytes(idLen); // skip id string
 
-		// read in image bytes
 		final int length = raf.readInt();
 		final byte[] bytes = new byte[length];
 		raf.readFully(bytes);
 		raf.close();
-
-		// convert image bytes to FlatField object
-		final BinaryReader fin = new BinaryReader(new ByteArrayInputStream(bytes));
-		FlatField thumb;
-		try {
-			thumb = (FlatField) fin.getData();
-		}
-		catch (final ClassCastException exc) {
-			thumb = null;
-		}
-		catch (final VisADException exc) {
-			thumb = null;
-		}
-		fin.close();
-
-		return thumb;
+		return bytes;
 	}
 
 }
@@ -53,6 +53,21 @@ public class ThumbnailHandler implements Runnable, TransformListener {
 	/** Thumbnail data computed from data transform. */
 	protected FlatField[] thumbs;
 
+	/** Per-plane statistics computed alongside the thumbnails. */
+	protected PlaneStats[] stats;
+
+	/**
+	 * Flags indicating which plane statistics were estimated from the
+	 * thumbnail, rather than computed from the full-resolution plane.
+	 */
+	protected boolean[] approx;
+
+	/** Statistics aggregated across all planes computed so far. */
+	protected PlaneStats aggregate;
+
+	/** Synchronization object for plane statistics and their aggregate. */
+	protected final Object statsSync = new Object();
+
 	/** Thumbnail disk cache for faster thumbnail retrieval. */
 	protected ThumbnailCache cache;
 
@@ -100,6 +115,55 @@ public class ThumbnailHandler implements Runnable, TransformListener {
 		if (ndx >= 0 && ndx < thumbs.length) thumbs[ndx] = thumb;
 	}
 
+	/** Gets the plane statistics at the given dimensional position. */
+	public PlaneStats getStats(final int[] pos) {
+		final int ndx = FormatTools.positionToRaster(data.getLengths(), pos);
+		synchronized (statsSync) {
+			return ndx >= 0 && ndx < stats.length ? stats[ndx] : null;
+		}
+	}
+
+	/**
+	 * Gets whether the plane statistics at the given dimensional position were
+	 * computed from the full-resolution plane.
+	 */
+	public boolean hasExactStats(final int[] pos) {
+		final int ndx = FormatTools.positionToRaster(data.getLengths(), pos);
+		synchronized (statsSync) {
+			return ndx >= 0 && ndx < stats.length && stats[ndx] != null &&
+				!approx[ndx];
+		}
+	}
+
+	/**
+	 * Sets the plane statistics of the full-resolution plane at the given
+	 * dimensional position, storing them in the disk cache.
+	 */
+	public void setStats(final int[] pos, final PlaneStats s) {
+		final int ndx = FormatTools.positionToRaster(data.getLengths(), pos);
+		if (s == null) return;
+		synchronized (statsSync) {
+			if (ndx < 0 || ndx >= stats.length) return;
+			stats[ndx] = s;
+			approx[ndx] = false;
+			aggregate = null;
+		}
+		if (cache != null) cache.storeStats(data.getCacheId(pos, global), s);
+	}
+
+	/**
+	 * Gets statistics aggregated across every plane whose statistics are known.
+	 * The aggregate is recomputed only after new plane statistics arrive.
+	 * 
+	 * @return null if no plane statistics are known yet
+	 */
+	public PlaneStats getStats() {
+		synchronized (statsSync) {
+			if (aggregate == null) aggregate = PlaneStats.merge(stats);
+			return aggregate;
+		}
+	}
+
 	/** Sets resolution of computed thumbnails. */
 	public void setResolution(final int[] res) {
 		resolution = res;
@@ -151,6 +215,11 @@ public class ThumbnailHandler implements Runnable, TransformListener {
 			on = oldOn;
 		}
 		thumbs = new FlatField[FormatTools.getRasterLength(data.getLengths())];
+		synchronized (statsSync) {
+			stats = new PlaneStats[thumbs.length];
+			approx = new boolean[thumbs.length];
+			aggregate = null;
+		}
 		count = 0;
 		if (on) startGeneration();
 	}
@@ -174,8 +243,8 @@ public class ThumbnailHandler implements Runnable, TransformListener {
 		if (thumbs[i] != null) return;
 
 		final int[] lengths = data.getLengths();
-		final String id =
-			data.getCacheId(FormatTools.rasterToPosition(lengths, i), global);
+		final int[] pos = FormatTools.rasterToPosition(lengths, i);
+		final String id = data.getCacheId(pos, global);
 
 		// attempt to grab thumbnail from the disk cache
 		boolean cached = false;
@@ -184,25 +253,49 @@ public class ThumbnailHandler implements Runnable, TransformListener {
 			if (ff != null) {
 				thumbs[i] = ff;
 				cached = true;
+				final PlaneStats s = cache.retrieveStats(id);
+				if (s != null) {
+					synchronized (statsSync) {
+						stats[i] = s;
+						aggregate = null;
+					}
+				}
 			}
 		}
 
 		if (!cached) {
 			// compute thumbnail from data object
-			thumbs[i] = computeThumb(FormatTools.rasterToPosition(lengths, i));
+			thumbs[i] = computeThumb(pos);
 			if (cache != null && thumbs[i] != null) cache.store(id, thumbs[i]);
 		}
 
+		// fall back on statistics from the thumbnail itself; these are only an
+		// estimate, so they are not stored in the disk cache
+		if (getStats(pos) == null) {
+			final PlaneStats s = PlaneStats.compute(thumbs[i]);
+			if (s != null) {
+				synchronized (statsSync) {
+					if (stats[i] == null) {
+						stats[i] = s;
+						approx[i] = true;
+						aggregate = null;
+					}
+				}
+			}
+		}
+
 		count++;
 	}
 
 	/**
 	 * Computes a thumbnail for the given dimensional position. Subclasses may
 	 * override this method to provide custom or more efficient thumbnail creation
-	 * behavior.
+	 * behavior. The default implementation also records the plane statistics of
+	 * the full-resolution data.
 	 */
 	protected FlatField computeThumb(final int[] pos) {
 		final Data d = data.getData(null, pos, 2, null);
+		setStats(pos, PlaneStats.compute(d));
 		return makeThumb(d);
 	}
 
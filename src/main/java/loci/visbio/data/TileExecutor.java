@@ -0,0 +1,210 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.data;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * TileExecutor splits per-pixel work over an image plane into tiles of
+ * contiguous pixel indices, and processes the tiles in parallel on a shared
+ * work-stealing pool.
+ * <p>
+ * Transforms computing whole planes may also bracket each computation with
+ * {@link #acquire} and {@link #release}, which hold back new computations
+ * while the output of those already in progress would exceed the memory
+ * remaining in the data cache's budget.
+ */
+public final class TileExecutor {
+
+	// -- Constants --
+
+	/** Smallest number of pixels worth handing off as a separate tile. */
+	public static final int MIN_TILE_SIZE = 16384;
+
+	// -- Static fields --
+
+	/** Work-stealing pool on which tiles are processed. */
+	private static final ForkJoinPool POOL = new ForkJoinPool(Runtime
+		.getRuntime().availableProcessors(),
+		new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+
+			@Override
+			public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+				final ForkJoinWorkerThread thread =
+					ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName("VisBio-TileThread-" + thread.getPoolIndex());
+				return thread;
+			}
+		}, null, false);
+
+	/** Lock guarding the count of bytes being computed. */
+	private static final Object LOCK = new Object();
+
+	/** Estimated output bytes of plane computations in progress. */
+	private static long inFlight = 0;
+
+	/** Nesting depth of plane computations on each thread. */
+	private static final ThreadLocal<int[]> DEPTH = new ThreadLocal<int[]>() {
+
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	// -- Constructor --
+
+	private TileExecutor() {}
+
+	// -- TileExecutor API methods --
+
+	/**
+	 * Performs the given operation across pixel indices [0, count), splitting
+	 * the range into tiles that are processed in parallel when worthwhile. This
+	 * method returns once every tile has been processed.
+	 */
+	public static void run(final int count, final TileOp op) {
+		run(count, MIN_TILE_SIZE, op);
+	}
+
+	/**
+	 * Performs the given operation across indices [0, count), splitting the
+	 * range into tiles of at least minTile indices that are processed in
+	 * parallel when worthwhile. This method returns once every tile has been
+	 * processed.
+	 */
+	public static void run(final int count, final int minTile, final TileOp op) {
+		if (count <= 0) return;
+		final int parallelism = POOL.getParallelism();
+		if (parallelism <= 1 || count <= minTile) {
+			op.run(0, count);
+			return;
+		}
+		// aim for a few tiles per worker so that work stealing can balance load
+		final int tileSize = Math.max(minTile, count / (4 * parallelism));
+		POOL.invoke(new TileTask(op, 0, count, tileSize));
+	}
+
+	/**
+	 * Declares the start of a plane computation whose output occupies about the
+	 * given number of bytes, waiting while the computations already in progress
+	 * leave too little of the given cache's budget (or of the heap, if the cache
+	 * is null). At least one computation is always admitted, and computations
+	 * nested within another on the same thread are admitted immediately, so
+	 * waiting cannot deadlock. Each call must be paired with a call to
+	 * {@link #release} with the same byte count, in a finally block.
+	 */
+	public static void acquire(final long bytes, final DataCache cache) {
+		final int[] depth = DEPTH.get();
+		if (depth[0]++ > 0) return;
+		synchronized (LOCK) {
+			while (inFlight > 0 && inFlight + bytes > getAvailable(cache)) {
+				try {
+					LOCK.wait();
+				}
+				catch (final InterruptedException exc) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			inFlight += bytes;
+		}
+	}
+
+	/**
+	 * Gets whether the current thread is within a plane computation admitted by
+	 * {@link #acquire}.
+	 */
+	public static boolean isAcquired() {
+		return DEPTH.get()[0] > 0;
+	}
+
+	/** Declares the end of a plane computation started with {@link #acquire}. */
+	public static void release(final long bytes) {
+		final int[] depth = DEPTH.get();
+		if (--depth[0] > 0) return;
+		synchronized (LOCK) {
+			inFlight -= bytes;
+			LOCK.notifyAll();
+		}
+	}
+
+	/** Gets the estimated number of bytes in an image plane of floats. */
+	public static long getPlaneBytes(final int width, final int height,
+		final int rangeCount)
+	{
+		return 4L * width * height * rangeCount;
+	}
+
+	// -- Helper methods --
+
+	/** Gets the memory available for new plane computations. */
+	private static long getAvailable(final DataCache cache) {
+		if (cache != null) return cache.getAvailable();
+		final Runtime rt = Runtime.getRuntime();
+		return rt.maxMemory() - rt.totalMemory() + rt.freeMemory();
+	}
+
+	// -- Helper classes --
+
+	/** A unit of work over a contiguous range of pixel indices. */
+	public interface TileOp {
+
+		/** Processes pixel indices in the range [start, end). */
+		void run(int start, int end);
+
+	}
+
+	/** Fork-join task that recursively halves its range down to tile size. */
+	private static class TileTask extends RecursiveAction {
+
+		private final TileOp op;
+		private final int start, end, tileSize;
+
+		public TileTask(final TileOp op, final int start, final int end,
+			final int tileSize)
+		{
+			this.op = op;
+			this.start = start;
+			this.end = end;
+			this.tileSize = tileSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= tileSize) {
+				op.run(start, end);
+				return;
+			}
+			final int mid = (start + end) >>> 1;
+			invokeAll(new TileTask(op, start, mid, tileSize), new TileTask(op, mid,
+				end, tileSize));
+		}
+
+	}
+
+}
@@ -24,6 +24,7 @@
 
 package loci.visbio.data;
 
+import java.util.Arrays;
 import java.util.EventObject;
 
 /**
@@ -48,6 +49,9 @@ public class TransformEvent extends EventObject {
 	/** The type of transform event. */
 	protected int id;
 
+	/** Dimensional positions affected by the event, or null for all. */
+	protected int[][] positions;
+
 	// -- Constructors --
 
 	/** Constructs a new transform event indicating data has changed. */
@@ -57,8 +61,19 @@ public class TransformEvent extends EventObject {
 
 	/** Constructs a new data event. */
 	public TransformEvent(final Object source, final int id) {
+		this(source, id, null);
+	}
+
+	/**
+	 * Constructs a new data event affecting only the given dimensional
+	 * positions. A null position list indicates that all positions are affected.
+	 */
+	public TransformEvent(final Object source, final int id,
+		final int[][] positions)
+	{
 		super(source);
 		this.id = id;
+		this.positions = positions;
 	}
 
 	// -- TransformEvent API methods --
@@ -74,4 +89,21 @@ public class TransformEvent extends EventObject {
 		return id;
 	}
 
+	/**
+	 * Gets the dimensional positions affected by this event, or null if all
+	 * positions are affected.
+	 */
+	public int[][] getPositions() {
+		return positions;
+	}
+
+	/** Gets whether this event affects the given dimensional position. */
+	public boolean affects(final int[] pos) {
+		if (positions == null || pos == null) return true;
+		for (int i = 0; i < positions.length; i++) {
+			if (Arrays.equals(positions[i], pos)) return true;
+		}
+		return false;
+	}
+
 }
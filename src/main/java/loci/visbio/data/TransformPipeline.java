@@ -0,0 +1,198 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.data;
+
+import java.rmi.RemoteException;
+import java.util.Vector;
+
+import loci.visbio.view.TransformLink;
+
+import visad.Data;
+import visad.FlatField;
+import visad.FunctionType;
+import visad.RealTupleType;
+import visad.VisADException;
+
+/**
+ * TransformPipeline fuses a chain of per-pixel image transforms into a single
+ * pass. Planning walks up the parent chain from a transform for as long as
+ * each transform provides a {@link PixelStage}; the first ancestor that does
+ * not is the pipeline's source, whose planes are read as usual. Evaluating the
+ * pipeline then streams the source samples through every stage in small blocks,
+ * so that the intermediate transforms never materialize whole planes.
+ * <p>
+ * Currently only {@link SpectralTransform} provides a stage, so fusion applies
+ * to runs of stacked spectral mappings. Samplings, collapses, slices and
+ * projections need whole planes and always act as pipeline sources.
+ */
+public final class TransformPipeline {
+
+	// -- Constants --
+
+	/** Number of pixels passed through the stages together. */
+	public static final int BLOCK_SIZE = 1024;
+
+	// -- Fields --
+
+	/** Transform whose data the pipeline computes. */
+	private final ImageTransform target;
+
+	/** Transform from which the pipeline reads whole planes. */
+	private final ImageTransform source;
+
+	/** Per-pixel stages between source and target, in order of application. */
+	private final PixelStage[] stages;
+
+	// -- Constructor --
+
+	private TransformPipeline(final ImageTransform target,
+		final ImageTransform source, final PixelStage[] stages)
+	{
+		this.target = target;
+		this.source = source;
+		this.stages = stages;
+	}
+
+	// -- Static TransformPipeline API methods --
+
+	/** Plans a pipeline computing the data of the given transform. */
+	public static TransformPipeline plan(final ImageTransform trans) {
+		final Vector<PixelStage> list = new Vector<PixelStage>();
+		ImageTransform t = trans;
+		while (t.getParent() instanceof ImageTransform) {
+			final PixelStage stage = t.getPixelStage();
+			if (stage == null) break;
+			list.insertElementAt(stage, 0);
+			t = (ImageTransform) t.getParent();
+		}
+		final PixelStage[] stages = new PixelStage[list.size()];
+		list.copyInto(stages);
+		return new TransformPipeline(trans, t, stages);
+	}
+
+	/**
+	 * Applies the given stages, in order, to the given samples, indexed by [range
+	 * component][pixel]. Pixels are processed in parallel tiles, and within each
+	 * tile in blocks small enough that intermediate results stay in cache.
+	 */
+	public static float[][] apply(final PixelStage[] stages,
+		final float[][] samples)
+	{
+		if (stages.length == 0) return samples;
+		final int count = samples[0].length;
+		final int last = stages.length - 1;
+		final float[][] result =
+			new float[stages[last].getRangeTypes().length][count];
+
+		TileExecutor.run(count, new TileExecutor.TileOp() {
+
+			@Override
+			public void run(final int start, final int end) {
+				// allocate block-sized buffers for intermediate stages
+				final float[][][] buffers = new float[last][][];
+				final int blockSize = Math.min(BLOCK_SIZE, end - start);
+				for (int i = 0; i < last; i++) {
+					buffers[i] = new float[stages[i].getRangeTypes().length][blockSize];
+				}
+
+				for (int b = start; b < end; b += blockSize) {
+					final int len = Math.min(blockSize, end - b);
+					float[][] in = samples;
+					int inOffset = b;
+					for (int i = 0; i <= last; i++) {
+						final float[][] out = i == last ? result : buffers[i];
+						final int outOffset = i == last ? b : 0;
+						stages[i].apply(in, inOffset, out, outOffset, len);
+						in = out;
+						inOffset = outOffset;
+					}
+				}
+			}
+		});
+		return result;
+	}
+
+	// -- TransformPipeline API methods --
+
+	/** Gets the transform whose data the pipeline computes. */
+	public ImageTransform getTarget() {
+		return target;
+	}
+
+	/** Gets the transform from which the pipeline reads whole planes. */
+	public ImageTransform getSource() {
+		return source;
+	}
+
+	/** Gets the number of fused per-pixel stages. */
+	public int getStageCount() {
+		return stages.length;
+	}
+
+	/**
+	 * Computes the target's image at the given dimensional position. The cache
+	 * is consulted for the target's data and for the source plane, but a source
+	 * plane that is not already cached is computed directly, so that sweeping
+	 * over many planes (as projections do) does not fill the cache.
+	 */
+	public FlatField getField(final TransformLink link, final int[] pos,
+		final DataCache cache)
+	{
+		if (cache != null && cache.hasData(target, pos, null)) {
+			return toField(cache.getData(target, pos, null, 2));
+		}
+		final Data data =
+			cache != null && cache.hasData(source, pos, null) ? cache.getData(
+				source, pos, null, 2) : source.getData(link, pos, 2, null);
+		final FlatField field = toField(data);
+		if (field == null || stages.length == 0) return field;
+
+		try {
+			final float[][] samples = apply(stages, field.getFloats(false));
+			final RealTupleType domain = ((FunctionType) field.getType()).getDomain();
+			final FunctionType ftype =
+				new FunctionType(domain, new RealTupleType(stages[stages.length - 1]
+					.getRangeTypes()));
+			final FlatField ff = new FlatField(ftype, field.getDomainSet());
+			ff.setSamples(samples, false);
+			return ff;
+		}
+		catch (final VisADException exc) {
+			exc.printStackTrace();
+		}
+		catch (final RemoteException exc) {
+			exc.printStackTrace();
+		}
+		return null;
+	}
+
+	// -- Helper methods --
+
+	/** Casts the given data object to a FlatField, if possible. */
+	private static FlatField toField(final Data data) {
+		return data instanceof FlatField ? (FlatField) data : null;
+	}
+
+}
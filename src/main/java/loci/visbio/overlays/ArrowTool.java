@@ -75,7 +75,7 @@ public class ArrowTool extends OverlayTool {
 	{
 		if (arrow == null) return;
 		arrow.setCoords2(dx, dy);
-		overlay.notifyListeners(new TransformEvent(overlay));
+		overlay.notifyDataChanged(pos);
 	}
 
 }
@@ -75,7 +75,7 @@ public class BoxTool extends OverlayTool {
 	{
 		if (box == null) return;
 		box.setCoords2(dx, dy);
-		overlay.notifyListeners(new TransformEvent(overlay));
+		overlay.notifyDataChanged(pos);
 	}
 
 }
@@ -276,16 +276,8 @@ public class FreeformTool extends OverlayTool {
 
 				if (distPxl > DRAW_THRESH) {
 					final float[] s = OverlayUtil.smooth(new float[] { dx, dy }, last, S);
+					// appending updates curve length and bounding box incrementally
 					freeform.setNextNode(s);
-					final double len = freeform.getCurveLength();
-					final double delta = MathUtil.getDistance(s, last);
-					freeform.setCurveLength(len + delta);
-					// I debated whether to call setBoundaries with every mouseDrag.
-					// This is an efficient
-					// method, but the corresponding update when erasing
-					// requires an O(n)
-					// scan of the nodes many times when a node is deleted.
-					freeform.setBoundaries(s[0], s[1]);
 				}
 				// mode remains DRAW
 			}
@@ -310,7 +302,7 @@ public class FreeformTool extends OverlayTool {
 				setMode(CHILL);
 			}
 		}
-		overlay.notifyListeners(new TransformEvent(overlay));
+		overlay.notifyDataChanged(pos);
 	} // end mouseDrag
 
 	/** Instructs this tool to respond to a mouse release. */
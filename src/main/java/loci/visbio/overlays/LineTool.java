@@ -75,7 +75,7 @@ public class LineTool extends OverlayTool {
 	{
 		if (line == null) return;
 		line.setCoords2(dx, dy);
-		overlay.notifyListeners(new TransformEvent(overlay));
+		overlay.notifyDataChanged(pos);
 	}
 
 }
@@ -74,7 +74,7 @@ public class MarkerTool extends OverlayTool {
 	{
 		if (marker == null) return;
 		marker.setCoords(dx, dy);
-		overlay.notifyListeners(new TransformEvent(overlay));
+		overlay.notifyDataChanged(pos);
 	}
 
 }
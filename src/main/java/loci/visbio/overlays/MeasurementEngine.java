@@ -0,0 +1,257 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.overlays;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import loci.formats.FormatTools;
+import loci.visbio.BioTask;
+import loci.visbio.data.ImageTransform;
+import loci.visbio.data.TileExecutor;
+import visad.Data;
+import visad.FlatField;
+import visad.VisADException;
+
+/**
+ * MeasurementEngine computes intensity statistics of the parent image's pixels
+ * within each box, oval and freeform overlay of an overlay transform, at every
+ * dimensional position holding overlays. Each overlay is rasterized once into
+ * a {@link SpanMask}, and the planes are measured in parallel, reading raw
+ * pixels from the parent transform's images where available. Results remain
+ * valid until the overlay's coordinates or nodes change, or the parent's data
+ * changes, so that repeated measurements only revisit what has changed.
+ * Selecting, recoloring or relabeling an overlay keeps its statistics.
+ */
+public class MeasurementEngine {
+
+	// -- Constants --
+
+	/** Name of the statistics category for intensity statistics. */
+	public static final String INTENSITY = "Intensity";
+
+	// statistic names
+	protected static final String PIXELS = "Pixels";
+	protected static final String MEAN = "Mean";
+	protected static final String SUM = "Sum";
+	protected static final String MIN = "Min";
+	protected static final String MAX = "Max";
+	protected static final String STD_DEV = "Std Dev";
+
+	/** Intensity statistic names. */
+	protected static final String[] STAT_TYPES = { PIXELS, MEAN, SUM, MIN, MAX,
+		STD_DEV };
+
+	// -- Fields --
+
+	/** Overlay transform whose overlays are measured. */
+	protected OverlayTransform trans;
+
+	/** Table of statistics for each measured overlay. */
+	protected Hashtable stats = new Hashtable();
+
+	/** Parameter version of the parent transform when last measured. */
+	protected int version = -1;
+
+	/** Number of planes measured so far by the current measurement. */
+	protected int done;
+
+	// -- Constructor --
+
+	/** Constructs a measurement engine for the given overlay transform. */
+	public MeasurementEngine(final OverlayTransform trans) {
+		this.trans = trans;
+	}
+
+	// -- Static methods --
+
+	/** Returns the names of the intensity statistics. */
+	public static String[] getStatTypes() {
+		return STAT_TYPES;
+	}
+
+	/** Gets whether the given overlay encloses a region that can be measured. */
+	public static boolean isMeasurable(final OverlayObject obj) {
+		return obj instanceof OverlayBox || obj instanceof OverlayOval ||
+			obj instanceof OverlayFreeform;
+	}
+
+	// -- MeasurementEngine API methods --
+
+	/**
+	 * Measures every overlay lacking up-to-date statistics, reporting progress
+	 * to the given task (which may be null).
+	 * 
+	 * @return false if the task was stopped before all planes were measured
+	 */
+	public boolean measure(final BioTask task) {
+		final ImageTransform image = (ImageTransform) trans.getParent();
+		final int width = image.getImageWidth();
+		final int height = image.getImageHeight();
+		final int[] lengths = trans.getLengths();
+		final OverlayStore overlays = trans.overlays;
+		if (overlays == null) return true;
+
+		// gather overlays needing measurement, dropping those since removed
+		final Vector planes = new Vector();
+		final Vector objects = new Vector();
+		final Hashtable current = new Hashtable();
+		synchronized (overlays) {
+			final boolean dataChanged = image.getVersion() != version;
+			version = image.getVersion();
+			final int[] ndx = overlays.getIndices();
+			for (int i = 0; i < ndx.length; i++) {
+				final Vector objs = overlays.get(ndx[i]);
+				final Vector stale = new Vector();
+				for (int j = 0; j < objs.size(); j++) {
+					final OverlayObject obj = (OverlayObject) objs.elementAt(j);
+					if (!isMeasurable(obj)) continue;
+					final RoiStats s = dataChanged ? null : getStats(obj);
+					if (s == null) stale.add(obj);
+					else current.put(obj, s);
+				}
+				if (stale.size() == 0) continue;
+				planes.add(Integer.valueOf(ndx[i]));
+				objects.add(stale);
+			}
+		}
+		stats = current;
+
+		// measure planes in parallel
+		final int total = planes.size();
+		final long bytes =
+			TileExecutor.getPlaneBytes(width, height, image.getRangeCount());
+		done = 0;
+		if (task != null) task.setStatus(0, total, "Measuring overlays");
+		TileExecutor.run(total, 1, new TileExecutor.TileOp() {
+
+			@Override
+			public void run(final int start, final int end) {
+				for (int i = start; i < end; i++) {
+					if (task != null && task.isStopped()) return;
+					final int raster = ((Integer) planes.elementAt(i)).intValue();
+					final int[] pos = FormatTools.rasterToPosition(lengths, raster);
+					measurePlane(image, pos, width, height,
+						(Vector) objects.elementAt(i), bytes);
+					if (task == null) continue;
+					int count;
+					synchronized (MeasurementEngine.this) {
+						count = ++done;
+					}
+					task.setStatus(count, total, "Measured " + count + " of " + total +
+						" planes");
+				}
+			}
+		});
+		return task == null || !task.isStopped();
+	}
+
+	/**
+	 * Gets the intensity statistics of the given overlay, or null if it has not
+	 * been measured since its geometry last changed.
+	 */
+	public RoiStats getStats(final OverlayObject obj) {
+		final RoiStats s = (RoiStats) stats.get(obj);
+		if (s == null || s.geomCount != obj.geomCount) return null;
+		return s;
+	}
+
+	/**
+	 * Gets the given intensity statistic of the given range component of the
+	 * given overlay, or null if the overlay has no up-to-date statistics.
+	 */
+	public String getStat(final OverlayObject obj, final String name,
+		final int c)
+	{
+		final RoiStats s = getStats(obj);
+		if (s == null) return null;
+		if (name.equals(PIXELS)) return "" + s.getCount(c);
+		else if (name.equals(MEAN)) return "" + s.getMean(c);
+		else if (name.equals(SUM)) return "" + s.getSum(c);
+		else if (name.equals(MIN)) return "" + s.getMin(c);
+		else if (name.equals(MAX)) return "" + s.getMax(c);
+		else if (name.equals(STD_DEV)) return "" + s.getStdDev(c);
+		return "No such statistic";
+	}
+
+	// -- Helper methods --
+
+	/** Measures the given overlays within the plane at the given position. */
+	protected void measurePlane(final ImageTransform image, final int[] pos,
+		final int width, final int height, final Vector objs, final long bytes)
+	{
+		TileExecutor.acquire(bytes, null);
+		try {
+			final float[][] samples = readPlane(image, pos, width, height);
+			if (samples == null) return;
+			for (int i = 0; i < objs.size(); i++) {
+				final OverlayObject obj = (OverlayObject) objs.elementAt(i);
+				// note geometry count first, so later edits mark result stale
+				final int geomCount = obj.geomCount;
+				final SpanMask mask = SpanMask.make(obj, width, height);
+				if (mask == null) continue;
+				stats.put(obj, RoiStats.compute(samples, width, mask, geomCount));
+			}
+		}
+		finally {
+			TileExecutor.release(bytes);
+		}
+	}
+
+	/**
+	 * Reads the samples of the plane at the given position, indexed by range
+	 * component, then by row-major pixel index starting from the top row.
+	 * Pixels are read directly from the transform's image when it provides one,
+	 * and otherwise from its data.
+	 */
+	protected float[][] readPlane(final ImageTransform image, final int[] pos,
+		final int width, final int height)
+	{
+		final BufferedImage img = image.getImage(pos);
+		if (img != null && img.getWidth() == width && img.getHeight() == height) {
+			final Raster r = img.getRaster();
+			final float[][] samples = new float[r.getNumBands()][];
+			for (int b = 0; b < samples.length; b++)
+				samples[b] = r.getSamples(0, 0, width, height, b, (float[]) null);
+			return samples;
+		}
+		final Data d = image.getData(null, pos, 2, null);
+		if (!(d instanceof FlatField)) return null;
+		try {
+			final float[][] samples = ((FlatField) d).getFloats(false);
+			if (samples.length == 0 || samples[0].length != width * height) {
+				return null;
+			}
+			return samples;
+		}
+		catch (final VisADException exc) {
+			exc.printStackTrace();
+			return null;
+		}
+	}
+
+}
@@ -75,7 +75,7 @@ public class OvalTool extends OverlayTool {
 	{
 		if (oval == null) return;
 		oval.setCoords2(dx, dy);
-		overlay.notifyListeners(new TransformEvent(overlay));
+		overlay.notifyDataChanged(pos);
 	}
 
 }
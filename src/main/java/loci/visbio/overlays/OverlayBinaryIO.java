@@ -0,0 +1,414 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.overlays;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Vector;
+
+import loci.formats.FormatTools;
+import loci.visbio.util.ObjectUtil;
+
+/**
+ * Utility methods for saving and loading overlays in a compact binary format.
+ * <p>
+ * A binary overlay file begins with a magic number and format version,
+ * followed by a sequence of records, each consisting of a one-byte record
+ * type, a four-byte payload length and the payload itself, so that readers can
+ * skip records they do not understand. The records are: the dimensional axes
+ * of the transform; one record per dimensional position holding overlays, with
+ * the nodes of noded objects stored as blocks of 32-bit floats; an optional
+ * index of the file offset of each position's record; and an end marker. When
+ * an index is written, the file closes with the index's offset and a second
+ * magic number, allowing the overlays of a single position to be read without
+ * scanning the whole file.
+ * </p>
+ * All values are big-endian, as written by {@link DataOutputStream}.
+ */
+public final class OverlayBinaryIO {
+
+	// -- Constants --
+
+	/** File extension for binary overlay files. */
+	public static final String EXTENSION = "vbo";
+
+	/** Magic number at the start of a binary overlay file ("VBOV"). */
+	public static final int MAGIC = 0x56424f56;
+
+	/** Magic number at the end of an indexed binary overlay file ("VBOI"). */
+	public static final int INDEX_MAGIC = 0x56424f49;
+
+	/** Current version of the binary overlay format. */
+	public static final int VERSION = 1;
+
+	// record types
+	protected static final byte END = 0;
+	protected static final byte AXES = 1;
+	protected static final byte PLANE = 2;
+	protected static final byte INDEX = 3;
+
+	/** Number of bytes in the header and in each record prefix. */
+	protected static final int HEADER_SIZE = 8, PREFIX_SIZE = 5;
+
+	/** Number of bytes in the trailer of an indexed file. */
+	protected static final int TRAILER_SIZE = 12;
+
+	// -- Constructor --
+
+	private OverlayBinaryIO() {}
+
+	// -- OverlayBinaryIO API methods --
+
+	/**
+	 * Writes the overlays of the given transform to the given stream, with an
+	 * index of the offset of each dimensional position's record if requested.
+	 */
+	public static void saveOverlays(final OutputStream os,
+		final OverlayTransform trans, final boolean index) throws IOException
+	{
+		final DataOutputStream out = new DataOutputStream(os);
+		final String[] dims = trans.getDimTypes();
+		final int[] lengths = trans.getLengths();
+		final OverlayStore overlays = trans.overlays;
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		long offset = HEADER_SIZE;
+
+		// dimensional axes
+		final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		final DataOutputStream rec = new DataOutputStream(buf);
+		rec.writeInt(dims.length);
+		for (int i = 0; i < dims.length; i++) {
+			writeString(rec, dims[i]);
+			rec.writeInt(lengths[i]);
+		}
+		offset += writeRecord(out, AXES, buf);
+
+		// one record per dimensional position holding overlays
+		int[] ndx = new int[0];
+		long[] offsets = new long[0];
+		if (overlays != null) {
+			synchronized (overlays) {
+				ndx = overlays.getIndices();
+				offsets = new long[ndx.length];
+				for (int i = 0; i < ndx.length; i++) {
+					final Vector objs = overlays.get(ndx[i]);
+					buf.reset();
+					rec.writeInt(ndx[i]);
+					rec.writeInt(objs.size());
+					for (int j = 0; j < objs.size(); j++)
+						writeObject(rec, (OverlayObject) objs.elementAt(j));
+					offsets[i] = offset;
+					offset += writeRecord(out, PLANE, buf);
+				}
+			}
+		}
+
+		// offset index
+		long indexOffset = -1;
+		if (index) {
+			buf.reset();
+			rec.writeInt(ndx.length);
+			for (int i = 0; i < ndx.length; i++) {
+				rec.writeInt(ndx[i]);
+				rec.writeLong(offsets[i]);
+			}
+			indexOffset = offset;
+			writeRecord(out, INDEX, buf);
+		}
+
+		out.writeByte(END);
+		out.writeInt(0);
+		if (index) {
+			out.writeLong(indexOffset);
+			out.writeInt(INDEX_MAGIC);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Reads all overlays from the given stream, which must contain a binary
+	 * overlay file whose dimensional axes match those of the given transform.
+	 */
+	public static OverlayStore loadOverlays(final InputStream is,
+		final OverlayTransform trans) throws IOException
+	{
+		final DataInputStream in = new DataInputStream(is);
+		readHeader(in);
+		final int[] lengths = trans.getLengths();
+		final OverlayStore store =
+			new OverlayStore(FormatTools.getRasterLength(lengths));
+		boolean axes = false;
+		while (true) {
+			final byte type = in.readByte();
+			final int length = in.readInt();
+			if (type == END) break;
+			if (type == AXES) {
+				checkAxes(in, trans);
+				axes = true;
+			}
+			else if (type == PLANE) {
+				if (!axes) throw new IOException("Overlay plane before axes");
+				readPlane(in, trans, store, null);
+			}
+			else skipFully(in, length);
+		}
+		trans.setTextDrawn(true);
+		return store;
+	}
+
+	/**
+	 * Reads the overlays at the given dimensional position from an indexed
+	 * binary overlay file, without reading the records of other positions.
+	 * Returns null if the file has no index.
+	 */
+	public static OverlayObject[] loadOverlays(final RandomAccessFile file,
+		final OverlayTransform trans, final int[] pos) throws IOException
+	{
+		file.seek(0);
+		readHeader(file);
+		if (file.readByte() != AXES) throw new IOException("Missing axes record");
+		file.readInt();
+		checkAxes(file, trans);
+
+		// locate the offset index from the trailer
+		final long len = file.length();
+		if (len < HEADER_SIZE + TRAILER_SIZE) return null;
+		file.seek(len - TRAILER_SIZE);
+		final long indexOffset = file.readLong();
+		if (file.readInt() != INDEX_MAGIC) return null;
+		file.seek(indexOffset);
+		if (file.readByte() != INDEX) throw new IOException("Invalid index");
+		file.readInt();
+
+		// find the requested position's record
+		final int raster = FormatTools.positionToRaster(trans.getLengths(), pos);
+		final int count = file.readInt();
+		long offset = -1;
+		for (int i = 0; i < count; i++) {
+			final int ndx = file.readInt();
+			final long off = file.readLong();
+			if (ndx == raster) offset = off;
+		}
+		if (offset < 0) return new OverlayObject[0];
+
+		file.seek(offset);
+		if (file.readByte() != PLANE) throw new IOException("Invalid index");
+		file.readInt();
+		final Vector objs = new Vector();
+		readPlane(file, trans, null, objs);
+		final OverlayObject[] oo = new OverlayObject[objs.size()];
+		objs.copyInto(oo);
+		return oo;
+	}
+
+	/** Gets whether the given file name denotes a binary overlay file. */
+	public static boolean isBinaryFile(final String name) {
+		return name.toLowerCase().endsWith("." + EXTENSION);
+	}
+
+	// -- Helper methods --
+
+	/** Writes a record with the given type and buffered payload. */
+	private static long writeRecord(final DataOutputStream out, final byte type,
+		final ByteArrayOutputStream payload) throws IOException
+	{
+		out.writeByte(type);
+		out.writeInt(payload.size());
+		payload.writeTo(out);
+		return PREFIX_SIZE + payload.size();
+	}
+
+	/** Writes one overlay object. */
+	private static void writeObject(final DataOutputStream out,
+		final OverlayObject obj) throws IOException
+	{
+		writeString(out, obj.getClass().getName());
+		out.writeFloat(obj.x1);
+		out.writeFloat(obj.y1);
+		out.writeFloat(obj.x2);
+		out.writeFloat(obj.y2);
+		writeString(out, obj.text);
+		// a flag distinguishes a missing color from transparent black
+		out.writeBoolean(obj.color != null);
+		if (obj.color != null) out.writeInt(obj.color.getRGB());
+		out.writeBoolean(obj.filled);
+		writeString(out, obj.group);
+		writeString(out, obj.notes);
+		if (obj instanceof OverlayNodedObject) {
+			final float[][] nodes = ((OverlayNodedObject) obj).getNodes();
+			final int n = nodes[0].length;
+			out.writeInt(n);
+			final ByteBuffer bytes = ByteBuffer.allocate(8 * n);
+			final FloatBuffer floats = bytes.asFloatBuffer();
+			floats.put(nodes[0]);
+			floats.put(nodes[1]);
+			out.write(bytes.array());
+		}
+		else out.writeInt(-1);
+	}
+
+	/**
+	 * Reads the payload of a plane record, adding its objects to the given
+	 * store or, if the store is null, to the given list.
+	 */
+	private static void readPlane(final DataInput in,
+		final OverlayTransform trans, final OverlayStore store, final Vector list)
+		throws IOException
+	{
+		final int raster = in.readInt();
+		if (store != null && (raster < 0 || raster >= store.getLength())) {
+			throw new IOException("Invalid dimensional position: " + raster);
+		}
+		final int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			final OverlayObject obj = readObject(in, trans);
+			if (obj == null) continue;
+			if (store != null) store.add(raster, obj);
+			else list.add(obj);
+		}
+	}
+
+	/**
+	 * Reads one overlay object, returning null if its class cannot be
+	 * instantiated.
+	 */
+	private static OverlayObject readObject(final DataInput in,
+		final OverlayTransform trans) throws IOException
+	{
+		final String className = readString(in);
+		final float x1 = in.readFloat(), y1 = in.readFloat();
+		final float x2 = in.readFloat(), y2 = in.readFloat();
+		final String text = readString(in);
+		final Color color = in.readBoolean() ? new Color(in.readInt(), true) : null;
+		final boolean filled = in.readBoolean();
+		final String group = readString(in);
+		final String notes = readString(in);
+		final int n = in.readInt();
+		float[][] nodes = null;
+		if (n >= 0) {
+			final byte[] bytes = new byte[8 * n];
+			in.readFully(bytes);
+			final FloatBuffer floats = ByteBuffer.wrap(bytes).asFloatBuffer();
+			nodes = new float[2][n];
+			floats.get(nodes[0]);
+			floats.get(nodes[1]);
+		}
+
+		final OverlayObject obj = OverlayIO.createOverlay(className, trans);
+		if (obj == null) return null;
+		obj.x1 = x1;
+		obj.y1 = y1;
+		obj.x2 = x2;
+		obj.y2 = y2;
+		obj.text = text;
+		obj.color = color;
+		obj.filled = filled;
+		obj.group = group;
+		obj.notes = notes;
+		obj.drawing = false;
+		obj.selected = false;
+		if (nodes != null && obj instanceof OverlayNodedObject) {
+			((OverlayNodedObject) obj).setNodes(nodes);
+		}
+		return obj;
+	}
+
+	/** Reads and verifies the magic number and version. */
+	private static void readHeader(final DataInput in)
+		throws IOException
+	{
+		if (in.readInt() != MAGIC) throw new IOException("Not an overlay file");
+		final int version = in.readInt();
+		if (version > VERSION) {
+			throw new IOException("Unsupported overlay file version " + version);
+		}
+	}
+
+	/**
+	 * Reads the payload of an axes record, verifying that the axes match those
+	 * of the given transform.
+	 */
+	private static void checkAxes(final DataInput in,
+		final OverlayTransform trans) throws IOException
+	{
+		final int count = in.readInt();
+		final String[] dims = new String[count];
+		final int[] lengths = new int[count];
+		for (int i = 0; i < count; i++) {
+			dims[i] = readString(in);
+			lengths[i] = in.readInt();
+		}
+		if (!ObjectUtil.arraysEqual(trans.getDimTypes(), dims)) {
+			throw new IOException("Dimensional axis types do not match");
+		}
+		if (!ObjectUtil.arraysEqual(trans.getLengths(), lengths)) {
+			throw new IOException("Dimensional axis lengths do not match");
+		}
+	}
+
+	/** Writes a possibly null string as length-prefixed UTF-8 bytes. */
+	private static void writeString(final DataOutputStream out, final String s)
+		throws IOException
+	{
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		final byte[] bytes = s.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/** Reads a possibly null string written by {@link #writeString}. */
+	private static String readString(final DataInput in)
+		throws IOException
+	{
+		final int len = in.readInt();
+		if (len < 0) return null;
+		final byte[] bytes = new byte[len];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	/** Skips the given number of bytes. */
+	private static void skipFully(final DataInputStream in, final int n)
+		throws IOException
+	{
+		if (in.skipBytes(n) < n) throw new EOFException();
+	}
+
+}
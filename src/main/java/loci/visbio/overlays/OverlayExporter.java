@@ -0,0 +1,476 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.overlays;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.Vector;
+
+import loci.formats.FormatTools;
+import loci.poi.hssf.usermodel.HSSFCell;
+import loci.poi.hssf.usermodel.HSSFCellStyle;
+import loci.poi.hssf.usermodel.HSSFDataFormat;
+import loci.poi.hssf.usermodel.HSSFRichTextString;
+import loci.poi.hssf.usermodel.HSSFRow;
+import loci.poi.hssf.usermodel.HSSFSheet;
+import loci.poi.hssf.usermodel.HSSFWorkbook;
+import loci.poi.hssf.util.Region;
+import loci.visbio.VisBio;
+import loci.visbio.VisBioFrame;
+import loci.visbio.state.BooleanOption;
+import loci.visbio.state.OptionManager;
+import loci.visbio.util.ColorUtil;
+
+/**
+ * OverlayExporter writes the overlay table, selected statistics and node lists
+ * of an overlay transform as spreadsheet rows. Rows are produced directly from
+ * the transform's {@link OverlayStore}, one traversal per section, rather than
+ * first gathering the objects of each type into lists, and are handed one at a
+ * time to either a delimited text writer (CSV or TSV), which streams them
+ * straight to its output, or a workbook writer, which starts a new worksheet
+ * whenever the current one reaches the .xls row limit. Intensity statistics
+ * are included for overlays measured by the transform's
+ * {@link MeasurementEngine}.
+ */
+public class OverlayExporter {
+
+	// -- Constants --
+
+	/** Maximum number of rows in an .xls worksheet. */
+	public static final int MAX_SHEET_ROWS = 65536;
+
+	/** Field delimiter for comma-separated values. */
+	public static final char CSV = ',';
+
+	/** Field delimiter for tab-separated values. */
+	public static final char TSV = '\t';
+
+	/** Number of columns merged for the file header in .xls output. */
+	protected static final short HEADER_COLUMNS = 12;
+
+	/** Column headings following the dimensional axes in the overlay table. */
+	protected static final String[] COLUMNS =
+		{ "x1", "y1", "x2", "y2", "text", "color", "filled", "group", "notes" };
+
+	// -- Fields --
+
+	/** Overlay transform whose overlays are exported. */
+	protected OverlayTransform trans;
+
+	// -- Constructor --
+
+	/** Constructs an exporter for the overlays of the given transform. */
+	public OverlayExporter(final OverlayTransform trans) {
+		this.trans = trans;
+	}
+
+	// -- OverlayExporter API methods --
+
+	/**
+	 * Writes the overlays to the given writer as delimited text, using the given
+	 * field delimiter (typically {@link #CSV} or {@link #TSV}).
+	 */
+	public void exportDelimited(final Writer out, final char delimiter)
+		throws IOException
+	{
+		write(new DelimitedRowWriter(out, delimiter));
+		out.flush();
+	}
+
+	/**
+	 * Writes the overlays to a new .xls workbook, continuing onto additional
+	 * worksheets as needed.
+	 */
+	public HSSFWorkbook exportWorkbook() {
+		final WorkbookRowWriter w = new WorkbookRowWriter();
+		try {
+			write(w);
+		}
+		catch (final IOException exc) {
+			// workbook rows are written in memory
+			exc.printStackTrace();
+		}
+		return w.wb;
+	}
+
+	/**
+	 * Gets the delimiter for exporting to the given file name, or 0 if the file
+	 * should be exported as an .xls workbook.
+	 */
+	public static char getDelimiter(final String name) {
+		final String lower = name.toLowerCase();
+		if (lower.endsWith(".csv")) return CSV;
+		if (lower.endsWith(".tsv")) return TSV;
+		return 0;
+	}
+
+	// -- Helper methods --
+
+	/** Writes all sections as rows to the given row writer. */
+	protected void write(final RowWriter w) throws IOException {
+		final String[] dims = trans.getDimTypes();
+		final int[] lengths = trans.getLengths();
+		final OverlayStore overlays = trans.overlays;
+
+		// file header
+		w.title(VisBio.TITLE + " " + VisBio.VERSION + " overlay file written " +
+			new Date());
+
+		// table header
+		w.text("Overlay");
+		for (int i = 0; i < lengths.length; i++)
+			w.text(dims[i] + " (" + lengths[i] + ")");
+		for (int i = 0; i < COLUMNS.length; i++)
+			w.text(COLUMNS[i]);
+		w.endRow();
+
+		if (overlays == null) return;
+		synchronized (overlays) {
+			final int[] ndx = overlays.getIndices();
+			writeTable(w, overlays, ndx, lengths);
+			writeStatistics(w, overlays, ndx);
+			writeNodes(w, overlays, ndx);
+		}
+	}
+
+	/** Writes one row per overlay, in dimensional order. */
+	protected void writeTable(final RowWriter w, final OverlayStore overlays,
+		final int[] ndx, final int[] lengths) throws IOException
+	{
+		for (int i = 0; i < ndx.length; i++) {
+			final int[] pos = FormatTools.rasterToPosition(lengths, ndx[i]);
+			final Vector objs = overlays.get(ndx[i]);
+			for (int j = 0; j < objs.size(); j++) {
+				final OverlayObject obj = (OverlayObject) objs.elementAt(j);
+				w.text(obj.toString());
+				// add 1 to shift indices for humans
+				for (int p = 0; p < pos.length; p++)
+					w.integer(pos[p] + 1);
+				if (obj.hasEndpoint()) {
+					w.number(obj.x1);
+					w.number(obj.y1);
+				}
+				else {
+					w.text(OverlayIO.NOT_APPLICABLE);
+					w.text(OverlayIO.NOT_APPLICABLE);
+				}
+				if (obj.hasEndpoint2()) {
+					w.number(obj.x2);
+					w.number(obj.y2);
+				}
+				else {
+					w.text(OverlayIO.NOT_APPLICABLE);
+					w.text(OverlayIO.NOT_APPLICABLE);
+				}
+				w.text(obj.hasText() ? obj.text : OverlayIO.NOT_APPLICABLE);
+				w.text(ColorUtil.colorToHex(obj.color));
+				w.text(obj.canBeFilled() ? "" + obj.filled : OverlayIO.NOT_APPLICABLE);
+				w.text(obj.group);
+				w.text(obj.notes);
+				w.endRow();
+			}
+		}
+	}
+
+	/** Writes the selected statistics of each overlay, grouped by type. */
+	protected void writeStatistics(final RowWriter w,
+		final OverlayStore overlays, final int[] ndx) throws IOException
+	{
+		final OptionManager om =
+			(OptionManager) VisBioFrame.getVisBio().getManager(OptionManager.class);
+		final String[] titles = OverlayUtil.getOverlayTypes();
+		final MeasurementEngine engine = trans.getMeasurements();
+		final String[] intensityTypes = MeasurementEngine.getStatTypes();
+		final boolean[] intensity = new boolean[intensityTypes.length];
+		for (int j = 0; j < intensityTypes.length; j++) {
+			final String name = MeasurementEngine.INTENSITY + "." + intensityTypes[j];
+			intensity[j] = ((BooleanOption) om.getOption(name)).getValue();
+		}
+		for (int v = 0; v < titles.length; v++) {
+			// look up which statistics are selected once per type
+			final String[] statTypes = OverlayUtil.getStatTypes(titles[v]);
+			final boolean[] selected = new boolean[statTypes.length];
+			for (int j = 0; j < statTypes.length; j++) {
+				final String name = titles[v] + "." + statTypes[j];
+				selected[j] = ((BooleanOption) om.getOption(name)).getValue();
+			}
+
+			int count = 0;
+			for (int i = 0; i < ndx.length; i++) {
+				final Vector objs = overlays.get(ndx[i]);
+				for (int k = 0; k < objs.size(); k++) {
+					final OverlayObject obj = (OverlayObject) objs.elementAt(k);
+					if (!titles[v].equals(obj.toString())) continue;
+					if (count++ == 0) {
+						w.endRow();
+						w.text(titles[v] + " Statistics");
+						w.endRow();
+					}
+					// index from 1 for readability
+					w.text(titles[v] + " " + count);
+					w.endRow();
+					for (int j = 0; j < statTypes.length; j++) {
+						if (!selected[j]) continue;
+						w.text(""); // indent one column
+						w.text(statTypes[j]);
+						w.text(obj.getStat(statTypes[j]));
+						w.endRow();
+					}
+					writeIntensity(w, engine, obj, intensityTypes, intensity);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the selected intensity statistics of each range component of the
+	 * given overlay, if it has been measured.
+	 */
+	protected void writeIntensity(final RowWriter w,
+		final MeasurementEngine engine, final OverlayObject obj,
+		final String[] statTypes, final boolean[] selected) throws IOException
+	{
+		final RoiStats stats = engine.getStats(obj);
+		if (stats == null) return;
+		final int len = stats.getRangeCount();
+		for (int c = 0; c < len; c++) {
+			final String suffix = len == 1 ? "" : " (channel " + (c + 1) + ")";
+			for (int j = 0; j < statTypes.length; j++) {
+				if (!selected[j]) continue;
+				w.text(""); // indent one column
+				w.text(statTypes[j] + suffix);
+				w.text(engine.getStat(obj, statTypes[j], c));
+				w.endRow();
+			}
+		}
+	}
+
+	/** Writes the nodes of each freeform, then of each polyline. */
+	protected void writeNodes(final RowWriter w, final OverlayStore overlays,
+		final int[] ndx) throws IOException
+	{
+		w.endRow(); // skip a row
+		final String[] types = { "Freeform", "Polyline" };
+		for (int t = 0; t < types.length; t++) {
+			int count = 0;
+			for (int i = 0; i < ndx.length; i++) {
+				final Vector objs = overlays.get(ndx[i]);
+				for (int k = 0; k < objs.size(); k++) {
+					final OverlayObject obj = (OverlayObject) objs.elementAt(k);
+					if (!types[t].equals(obj.toString())) continue;
+					final OverlayNodedObject ono = (OverlayNodedObject) obj;
+					w.text(ono + " " + ++count);
+					w.endRow();
+					w.text("X");
+					w.text("Y");
+					w.endRow();
+					final float[][] nodes = ono.getNodes();
+					for (int j = 0; j < nodes[0].length; j++) {
+						w.number(nodes[0][j]);
+						w.number(nodes[1][j]);
+						w.endRow();
+					}
+					w.endRow(); // skip a row
+				}
+			}
+		}
+	}
+
+	// -- Helper classes --
+
+	/** Receives exported rows one cell at a time. */
+	protected abstract static class RowWriter {
+
+		/** Writes a row containing only the given file header. */
+		public void title(final String s) throws IOException {
+			text(s);
+			endRow();
+		}
+
+		/** Appends a text cell to the current row. */
+		public abstract void text(String s) throws IOException;
+
+		/** Appends an integer cell to the current row. */
+		public abstract void integer(int value) throws IOException;
+
+		/** Appends a floating point cell to the current row. */
+		public abstract void number(float value) throws IOException;
+
+		/** Ends the current row, which may be empty. */
+		public abstract void endRow() throws IOException;
+
+	}
+
+	/** Writes rows to a character stream as delimited text. */
+	protected static class DelimitedRowWriter extends RowWriter {
+
+		/** Output to which rows are written. */
+		protected Writer out;
+
+		/** Field delimiter. */
+		protected char delimiter;
+
+		/** Number of cells written to the current row. */
+		protected int cells;
+
+		/** Constructs a writer using the given field delimiter. */
+		public DelimitedRowWriter(final Writer out, final char delimiter) {
+			this.out = out;
+			this.delimiter = delimiter;
+		}
+
+		/** Appends a text cell, quoting or flattening it as needed. */
+		@Override
+		public void text(final String s) throws IOException {
+			startCell();
+			if (s == null) return;
+			if (delimiter != CSV) {
+				out.write(s.replaceAll("[\t\r\n]", " "));
+			}
+			else if (s.indexOf(CSV) < 0 && s.indexOf('"') < 0 &&
+				s.indexOf('\n') < 0 && s.indexOf('\r') < 0)
+			{
+				out.write(s);
+			}
+			else {
+				out.write('"');
+				out.write(s.replaceAll("\"", "\"\""));
+				out.write('"');
+			}
+		}
+
+		/** Appends an integer cell. */
+		@Override
+		public void integer(final int value) throws IOException {
+			startCell();
+			out.write(Integer.toString(value));
+		}
+
+		/** Appends a floating point cell. */
+		@Override
+		public void number(final float value) throws IOException {
+			startCell();
+			out.write(Float.toString(value));
+		}
+
+		/** Ends the current row with a line separator. */
+		@Override
+		public void endRow() throws IOException {
+			out.write("\n");
+			cells = 0;
+		}
+
+		/** Writes a delimiter unless the cell is the first of its row. */
+		protected void startCell() throws IOException {
+			if (cells++ > 0) out.write(delimiter);
+		}
+
+	}
+
+	/**
+	 * Writes rows to an .xls workbook, starting a new worksheet each time the
+	 * current one is full.
+	 */
+	protected static class WorkbookRowWriter extends RowWriter {
+
+		/** Workbook being written. */
+		protected HSSFWorkbook wb = new HSSFWorkbook();
+
+		/** Worksheet currently being written. */
+		protected HSSFSheet sheet = wb.createSheet();
+
+		/** Index of the current row within the worksheet. */
+		protected int rownum;
+
+		/** Current row, or null if no cells have been written to it. */
+		protected HSSFRow row;
+
+		/** Index of the next cell within the current row. */
+		protected short cellnum;
+
+		/** Cell styles for text, integer and floating point cells. */
+		protected HSSFCellStyle text, integer, flt;
+
+		/** Constructs a writer for a new workbook. */
+		public WorkbookRowWriter() {
+			text = wb.createCellStyle();
+			text.setDataFormat(HSSFDataFormat.getBuiltinFormat("text"));
+			integer = wb.createCellStyle();
+			integer.setDataFormat((short) 1);
+			flt = wb.createCellStyle();
+			flt.setDataFormat((short) 0); // "general" format
+		}
+
+		/** Writes the file header across several merged cells. */
+		@Override
+		public void title(final String s) {
+			sheet.addMergedRegion(new Region(rownum, (short) 0, rownum,
+				HEADER_COLUMNS));
+			text(s);
+			endRow();
+		}
+
+		/** Appends a text cell. */
+		@Override
+		public void text(final String s) {
+			final HSSFCell c = nextCell(text);
+			if (s != null) c.setCellValue(new HSSFRichTextString(s));
+		}
+
+		/** Appends an integer cell. */
+		@Override
+		public void integer(final int value) {
+			nextCell(integer).setCellValue(value);
+		}
+
+		/** Appends a floating point cell. */
+		@Override
+		public void number(final float value) {
+			nextCell(flt).setCellValue(value);
+		}
+
+		/** Ends the current row, moving to a new worksheet if needed. */
+		@Override
+		public void endRow() {
+			row = null;
+			cellnum = 0;
+			if (++rownum == MAX_SHEET_ROWS) {
+				sheet = wb.createSheet();
+				rownum = 0;
+			}
+		}
+
+		/** Creates the next cell of the current row with the given style. */
+		protected HSSFCell nextCell(final HSSFCellStyle style) {
+			if (row == null) row = sheet.createRow(rownum);
+			final HSSFCell c = row.createCell(cellnum++);
+			c.setCellStyle(style);
+			return c;
+		}
+
+	}
+
+}
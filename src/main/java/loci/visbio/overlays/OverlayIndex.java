@@ -0,0 +1,325 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.overlays;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * OverlayIndex is a uniform grid over the overlay objects of one dimensional
+ * position, binning each object by its bounding box so that hit tests and
+ * rectangle selection only visit objects near the area of interest.
+ * <p>
+ * Objects are added and removed as the overlay transform changes its object
+ * lists. Objects whose geometry changes are only marked as moved, and are
+ * rebinned the next time the index is flushed. The index also tracks which of
+ * its objects are selected, so that selection changes need not visit every
+ * object of the plane.
+ * </p>
+ */
+public class OverlayIndex {
+
+	// -- Constants --
+
+	/** Default width and height of a grid cell, in domain units. */
+	public static final float DEFAULT_CELL_SIZE = 64;
+
+	/**
+	 * Maximum number of cells an object may cover before it is kept in a list
+	 * of large objects that every query visits instead.
+	 */
+	protected static final int MAX_CELLS = 256;
+
+	// -- Fields --
+
+	/** Width and height of a grid cell. */
+	protected float cellSize;
+
+	/** Objects binned in each grid cell, keyed by packed cell coordinates. */
+	protected Hashtable cells = new Hashtable();
+
+	/** Objects too large to bin. */
+	protected Vector large = new Vector();
+
+	/** Indexed bounds of each object. */
+	protected Hashtable entries = new Hashtable();
+
+	/** Objects whose geometry has changed since the last flush. */
+	protected Hashtable moved = new Hashtable();
+
+	/** Indexed objects that are currently selected. */
+	protected Hashtable selected = new Hashtable();
+
+	// -- Constructors --
+
+	/** Constructs an overlay index with the default cell size. */
+	public OverlayIndex() {
+		this(DEFAULT_CELL_SIZE);
+	}
+
+	/** Constructs an overlay index with the given cell size. */
+	public OverlayIndex(final float cellSize) {
+		this.cellSize = cellSize;
+	}
+
+	// -- OverlayIndex API methods --
+
+	/** Adds the given object to the index. */
+	public void add(final OverlayObject obj) {
+		final float[] b = obj.getBounds();
+		entries.put(obj, b);
+		bin(obj, b, true);
+		if (obj.isSelected()) selected.put(obj, obj);
+	}
+
+	/** Removes the given object from the index. */
+	public void remove(final OverlayObject obj) {
+		final float[] b = (float[]) entries.remove(obj);
+		if (b != null) bin(obj, b, false);
+		moved.remove(obj);
+		selected.remove(obj);
+	}
+
+	/** Rebins the given object if its bounds have changed. */
+	public void update(final OverlayObject obj) {
+		final float[] b = (float[]) entries.get(obj);
+		if (b == null) add(obj);
+		else {
+			final float[] nb = obj.getBounds();
+			if (sameBounds(b, nb)) return;
+			bin(obj, b, false);
+			entries.put(obj, nb);
+			bin(obj, nb, true);
+		}
+	}
+
+	/** Gets whether the given object is in the index. */
+	public boolean contains(final OverlayObject obj) {
+		return entries.containsKey(obj);
+	}
+
+	/**
+	 * Marks the given object as moved, so that it is rebinned on the next
+	 * flush. Objects not in the index are ignored.
+	 */
+	public void markMoved(final OverlayObject obj) {
+		if (entries.containsKey(obj)) moved.put(obj, obj);
+	}
+
+	/** Rebins every object marked as moved since the last flush. */
+	public void flush() {
+		if (moved.isEmpty()) return;
+		final Object[] objs = moved.keySet().toArray();
+		for (int i = 0; i < objs.length; i++) {
+			final OverlayObject obj = (OverlayObject) objs[i];
+			moved.remove(obj);
+			if (entries.containsKey(obj)) update(obj);
+		}
+	}
+
+	/**
+	 * Records the current selection state of the given object. Objects not in
+	 * the index are ignored.
+	 */
+	public void updateSelection(final OverlayObject obj) {
+		if (!entries.containsKey(obj)) return;
+		if (obj.isSelected()) selected.put(obj, obj);
+		else selected.remove(obj);
+	}
+
+	/** Gets the indexed objects that are currently selected. */
+	public Vector getSelected() {
+		return new Vector(selected.keySet());
+	}
+
+	/** Removes every object from the index. */
+	public void clear() {
+		cells.clear();
+		large.clear();
+		entries.clear();
+		moved.clear();
+		selected.clear();
+	}
+
+	/** Gets the number of indexed objects. */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Brings the index up to date with the given list of objects, visiting
+	 * every one of them. Used to build the index of a plane; later changes are
+	 * applied incrementally.
+	 */
+	public void sync(final Vector objs) {
+		moved.clear();
+
+		// add new objects, rebinning and reselecting known ones
+		final Hashtable present = new Hashtable();
+		for (int i = 0; i < objs.size(); i++) {
+			final OverlayObject obj = (OverlayObject) objs.elementAt(i);
+			present.put(obj, obj);
+			update(obj);
+			updateSelection(obj);
+		}
+
+		// drop objects no longer in the list
+		if (present.size() < entries.size()) {
+			final Vector gone = new Vector();
+			final Enumeration e = entries.keys();
+			while (e.hasMoreElements()) {
+				final Object obj = e.nextElement();
+				if (!present.containsKey(obj)) gone.add(obj);
+			}
+			for (int i = 0; i < gone.size(); i++) {
+				remove((OverlayObject) gone.elementAt(i));
+			}
+		}
+	}
+
+	/**
+	 * Gets the objects whose bounding boxes intersect the given rectangle. Each
+	 * object appears at most once.
+	 */
+	public Vector query(final float x1, final float y1, final float x2,
+		final float y2)
+	{
+		final float xmin = Math.min(x1, x2), xmax = Math.max(x1, x2);
+		final float ymin = Math.min(y1, y2), ymax = Math.max(y1, y2);
+		final Vector result = new Vector();
+		final Hashtable seen = new Hashtable();
+		for (int i = 0; i < large.size(); i++) {
+			addIfHit(large.elementAt(i), xmin, ymin, xmax, ymax, result, seen);
+		}
+		final int cx1 = cell(xmin), cx2 = cell(xmax);
+		final int cy1 = cell(ymin), cy2 = cell(ymax);
+		if ((long) (cx2 - cx1 + 1) * (cy2 - cy1 + 1) > entries.size()) {
+			// query covers more cells than there are objects; scan them all
+			final Enumeration e = entries.keys();
+			while (e.hasMoreElements()) {
+				addIfHit(e.nextElement(), xmin, ymin, xmax, ymax, result, seen);
+			}
+			return result;
+		}
+		for (int cy = cy1; cy <= cy2; cy++) {
+			for (int cx = cx1; cx <= cx2; cx++) {
+				final Vector v = (Vector) cells.get(key(cx, cy));
+				if (v == null) continue;
+				for (int i = 0; i < v.size(); i++) {
+					addIfHit(v.elementAt(i), xmin, ymin, xmax, ymax, result, seen);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the object nearest to the given point, considering only objects
+	 * whose bounding boxes lie within the given distance.
+	 * 
+	 * @return null if no object is closer than the given distance
+	 */
+	public OverlayObject getNearest(final float x, final float y,
+		final double maxDist)
+	{
+		final float r = (float) maxDist;
+		final Vector v = query(x - r, y - r, x + r, y + r);
+		double dist = maxDist;
+		OverlayObject nearest = null;
+		for (int i = 0; i < v.size(); i++) {
+			final OverlayObject obj = (OverlayObject) v.elementAt(i);
+			final double d = obj.getDistance(x, y);
+			if (d < dist) {
+				dist = d;
+				nearest = obj;
+			}
+		}
+		return nearest;
+	}
+
+	// -- Helper methods --
+
+	/** Adds the given object to, or removes it from, the cells it covers. */
+	protected void bin(final OverlayObject obj, final float[] b,
+		final boolean add)
+	{
+		final int cx1 = cell(b[0]), cy1 = cell(b[1]);
+		final int cx2 = cell(b[2]), cy2 = cell(b[3]);
+		if ((long) (cx2 - cx1 + 1) * (cy2 - cy1 + 1) > MAX_CELLS) {
+			if (add) large.add(obj);
+			else large.remove(obj);
+			return;
+		}
+		for (int cy = cy1; cy <= cy2; cy++) {
+			for (int cx = cx1; cx <= cx2; cx++) {
+				final Long k = key(cx, cy);
+				Vector v = (Vector) cells.get(k);
+				if (add) {
+					if (v == null) {
+						v = new Vector();
+						cells.put(k, v);
+					}
+					v.add(obj);
+				}
+				else if (v != null) {
+					v.remove(obj);
+					if (v.isEmpty()) cells.remove(k);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the given object to the result list if its indexed bounds intersect
+	 * the given rectangle and it has not been seen yet.
+	 */
+	protected void addIfHit(final Object obj, final float xmin,
+		final float ymin, final float xmax, final float ymax, final Vector result,
+		final Hashtable seen)
+	{
+		if (seen.containsKey(obj)) return;
+		seen.put(obj, obj);
+		final float[] b = (float[]) entries.get(obj);
+		if (b[0] > xmax || b[2] < xmin || b[1] > ymax || b[3] < ymin) return;
+		result.add(obj);
+	}
+
+	/** Gets the grid cell coordinate containing the given value. */
+	protected int cell(final float v) {
+		return (int) Math.floor(v / cellSize);
+	}
+
+	/** Packs the given cell coordinates into a hash key. */
+	protected static Long key(final int cx, final int cy) {
+		return new Long((long) cx << 32 | cy & 0xffffffffL);
+	}
+
+	/** Tests whether two bounding boxes are identical. */
+	protected static boolean sameBounds(final float[] a, final float[] b) {
+		return a[0] == b[0] && a[1] == b[1] && a[2] == b[2] && a[3] == b[3];
+	}
+
+}
@@ -0,0 +1,561 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.overlays;
+
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Vector;
+
+import javax.swing.JComponent;
+
+import loci.formats.FormatTools;
+import loci.visbio.data.TileExecutor;
+import loci.visbio.util.ColorUtil;
+import loci.visbio.util.ObjectUtil;
+
+/**
+ * OverlayLoader reads overlay files written by {@link OverlayIO#saveOverlays}.
+ * Lines are read in large batches and classified sequentially by the file's
+ * parsing state machine; the table rows and freeform node coordinates of each
+ * batch are then parsed in parallel, and finally assembled in file order into
+ * an {@link OverlayStore}. Node coordinates are parsed directly from each line
+ * without tokenizing, and accumulate in a reusable buffer from which each
+ * noded object receives its node array in a single copy.
+ */
+public class OverlayLoader {
+
+	// -- Constants --
+
+	/** Maximum number of lines read and parsed together. */
+	public static final int BATCH_SIZE = 65536;
+
+	/** Smallest number of lines worth parsing on a separate thread. */
+	protected static final int MIN_TILE = 1024;
+
+	/** Number of fields in a table row besides the dimensional position. */
+	protected static final int ROW_FIELDS = 10;
+
+	/**
+	 * Powers of ten exactly representable as floats. Dividing a mantissa below
+	 * 2^24 by one of these rounds only once, so the quotient is the correctly
+	 * rounded float.
+	 */
+	protected static final float[] POW10 = new float[11];
+
+	static {
+		POW10[0] = 1;
+		for (int i = 1; i < POW10.length; i++)
+			POW10[i] = 10 * POW10[i - 1];
+	}
+
+	// file parsing state machine states
+	protected static final int WAIT = 0;
+	protected static final int TABLE = 1;
+	protected static final int NODES = 2;
+
+	// line kinds within a batch
+	protected static final int BAD_LINE = 0;
+	protected static final int TABLE_HEADER = 1;
+	protected static final int TABLE_ROW = 2;
+	protected static final int NODES_HEADER = 3;
+	protected static final int NODE = 4;
+
+	// -- Fields --
+
+	/** Overlay transform for which overlays are being loaded. */
+	protected OverlayTransform trans;
+
+	/** Dimensional axis types of the transform. */
+	protected String[] dims;
+
+	/** Dimensional axis lengths of the transform. */
+	protected int[] lengths;
+
+	/** Component over which error messages are displayed. */
+	protected JComponent owner;
+
+	/** Overlays loaded so far, or null before the table header. */
+	protected OverlayStore store;
+
+	/** Noded objects read from the table, in order of appearance. */
+	protected Vector noded = new Vector();
+
+	/** Number of node lists encountered so far. */
+	protected int nodeLists;
+
+	/** Nodes of the node list currently being read. */
+	protected float[][] nodes = new float[2][1024];
+
+	/** Number of nodes in the node list currently being read. */
+	protected int numNodes;
+
+	/** Current state of the parsing state machine. */
+	protected int state = WAIT;
+
+	/** Number of lines read so far. */
+	protected int lineNum;
+
+	// batch buffers, indexed by position within the batch
+	protected String[] lines = new String[BATCH_SIZE];
+	protected int[] kinds = new int[BATCH_SIZE];
+	protected int[] lineNums = new int[BATCH_SIZE];
+	protected String[] errors = new String[BATCH_SIZE];
+	protected Row[] rows = new Row[BATCH_SIZE];
+	protected float[] xs = new float[BATCH_SIZE];
+	protected float[] ys = new float[BATCH_SIZE];
+
+	// -- Constructor --
+
+	/** Constructs a loader of overlays for the given transform. */
+	public OverlayLoader(final OverlayTransform trans) {
+		this.trans = trans;
+		dims = trans.getDimTypes();
+		lengths = trans.getLengths();
+		owner = trans.getControls();
+	}
+
+	// -- OverlayLoader API methods --
+
+	/**
+	 * Reads the overlays from the given reader, or returns null (after
+	 * displaying an error message) if the input is invalid.
+	 */
+	public OverlayStore load(final BufferedReader in) throws IOException {
+		boolean done = false;
+		while (!done) {
+			// read and classify the next batch of lines
+			int count = 0;
+			while (count < BATCH_SIZE) {
+				final String line = in.readLine();
+				if (line == null) {
+					done = true;
+					break;
+				}
+				lineNum++;
+				final int kind = classify(line.trim());
+				if (kind < 0) continue;
+				lines[count] = line;
+				kinds[count] = kind;
+				lineNums[count] = lineNum;
+				errors[count] = null;
+				count++;
+				if (kind == BAD_LINE) {
+					// no need to read past the first invalid line
+					done = true;
+					break;
+				}
+			}
+
+			// parse the batch in parallel
+			TileExecutor.run(count, MIN_TILE, new TileExecutor.TileOp() {
+
+				@Override
+				public void run(final int start, final int end) {
+					for (int i = start; i < end; i++)
+						parse(i);
+				}
+			});
+
+			// assemble the parsed lines in file order
+			for (int i = 0; i < count; i++) {
+				if (!assemble(i)) return null;
+				lines[i] = null;
+				rows[i] = null;
+			}
+		}
+
+		// after parsing all lines:
+		if (store == null || store.getIndices().length == 0) {
+			showError(lineNum, "no overlays found");
+			return null;
+		}
+		else if (noded.size() > 0) {
+			// a lone noded object may omit its node list, and is left without nodes
+			if (nodeLists == 0 && noded.size() == 1) nodeLists++;
+			if (nodeLists < noded.size()) {
+				showError(lineNum, "missing node lists for one or more Freeforms");
+				return null;
+			}
+			// store last node list read
+			storeNodes();
+		}
+
+		trans.setTextDrawn(true);
+		return store;
+	}
+
+	// -- Helper methods --
+
+	/** Reports that the overlays cannot be loaded, due to the given line. */
+	protected void showError(final int line, final String msg) {
+		OverlayIO.displayErrorMsg(owner, line, msg);
+	}
+
+	/**
+	 * Advances the parsing state machine with the given trimmed line, returning
+	 * the kind of line it is, or -1 if it should be ignored. This matches the
+	 * behavior of the original line-by-line loader, without regular expressions.
+	 */
+	protected int classify(final String input) {
+		if (state == WAIT) {
+			if (input.length() == 0 || input.startsWith("#")) return -1;
+			if (input.startsWith("Overlay")) {
+				state = TABLE;
+				return TABLE_HEADER;
+			}
+			return BAD_LINE;
+		}
+		if (input.length() == 0) return -1;
+		if (isNodesHeader(input)) {
+			state = NODES;
+			return NODES_HEADER;
+		}
+		if (state == TABLE) {
+			if (input.startsWith("Line") || input.startsWith("Freeform") ||
+				input.startsWith("Marker") || input.startsWith("Text") ||
+				input.startsWith("Oval") || input.startsWith("Box") ||
+				input.startsWith("Arrow") || input.startsWith("Polyline"))
+			{
+				return TABLE_ROW;
+			}
+			if (input.startsWith("#")) return -1;
+			return BAD_LINE;
+		}
+		// state == NODES
+		if (input.startsWith("#") || isColumnHeader(input)) return -1;
+		final char c = input.charAt(0);
+		if (c == '-' || (c >= '0' && c <= '9')) return NODE;
+		return BAD_LINE;
+	}
+
+	/** Parses the line at the given batch index. */
+	protected void parse(final int i) {
+		final String line = lines[i];
+		switch (kinds[i]) {
+			case BAD_LINE:
+				if (state == TABLE) {
+					errors[i] = "invalid line in overlay table";
+				}
+				else if (state == NODES) {
+					errors[i] = "invalid line in freeform node lists";
+				}
+				else errors[i] = "invalid line before overlay data";
+				break;
+			case TABLE_HEADER:
+				errors[i] = checkHeader(line);
+				break;
+			case TABLE_ROW:
+				rows[i] = new Row();
+				errors[i] = rows[i].parse(line, lengths);
+				break;
+			case NODE:
+				final String trim = line.trim();
+				final int len = trim.length();
+				int sep = 0;
+				while (sep < len && !isSpace(trim.charAt(sep)))
+					sep++;
+				xs[i] = parseDecimal(trim, 0, sep);
+				ys[i] = parseDecimal(trim, sep + 1, len);
+				if (Float.isNaN(xs[i]) || Float.isNaN(ys[i])) {
+					errors[i] = "invalid line in freeform node lists";
+				}
+				break;
+		}
+	}
+
+	/**
+	 * Incorporates the parsed line at the given batch index into the loaded
+	 * overlays, returning false if loading must be aborted.
+	 */
+	protected boolean assemble(final int i) {
+		final int line = lineNums[i];
+		final Row row = rows[i];
+		if (errors[i] != null) {
+			showError(line, errors[i]);
+			// an invalid color only skips the affected overlay
+			return row != null && row.badColor;
+		}
+		switch (kinds[i]) {
+			case TABLE_HEADER:
+				store = new OverlayStore(FormatTools.getRasterLength(lengths));
+				break;
+			case TABLE_ROW:
+				final String className = "loci.visbio.overlays.Overlay" + row.type;
+				final OverlayObject obj =
+					OverlayIO.createOverlay(className, trans, line);
+				if (obj == null) break;
+				if (obj instanceof OverlayNodedObject) noded.add(obj);
+				obj.x1 = row.x1;
+				obj.y1 = row.y1;
+				obj.x2 = row.x2;
+				obj.y2 = row.y2;
+				obj.text = row.text;
+				obj.color = row.color;
+				obj.filled = row.filled;
+				obj.group = row.group;
+				obj.notes = row.notes;
+				obj.drawing = false;
+				obj.selected = false;
+				store.add(row.raster, obj);
+				break;
+			case NODES_HEADER:
+				if (nodeLists == noded.size()) {
+					final String s =
+						"more \"Noded Object\" (Freeforms, Polylines) node lists " +
+							"than Noded Objects (" + nodeLists + ") specified in table";
+					showError(line, s);
+					return false;
+				}
+				// store nodes of previously read noded object
+				if (nodeLists > 0) storeNodes();
+				nodeLists++;
+				break;
+			case NODE:
+				if (numNodes == nodes[0].length) {
+					final float[][] temp = new float[2][2 * numNodes];
+					for (int c = 0; c < 2; c++)
+						System.arraycopy(nodes[c], 0, temp[c], 0, numNodes);
+					nodes = temp;
+				}
+				nodes[0][numNodes] = xs[i];
+				nodes[1][numNodes] = ys[i];
+				numNodes++;
+				break;
+		}
+		return true;
+	}
+
+	/** Assigns the nodes read so far to the next noded object. */
+	protected void storeNodes() {
+		final OverlayNodedObject ono =
+			(OverlayNodedObject) noded.elementAt(nodeLists - 1);
+		final float[][] temp = new float[2][numNodes];
+		for (int c = 0; c < 2; c++)
+			System.arraycopy(nodes[c], 0, temp[c], 0, numNodes);
+		ono.setNodes(temp);
+		numNodes = 0;
+	}
+
+	/**
+	 * Verifies that the dimensional axes named in the given table header match
+	 * those of the transform, returning an error message if they do not.
+	 */
+	protected String checkHeader(final String line) {
+		final String[] tokens = tokenize(line);
+		// parse table header from first valid line
+		final int numDims = tokens.length - ROW_FIELDS;
+		if (numDims < 0) return "insufficient column headings";
+
+		// verify lengths and dims match the parent transform
+		final int[] theLengths = new int[numDims];
+		final String[] theDims = new String[numDims];
+		for (int i = 0; i < numDims; i++) {
+			// skip "Overlay" column heading
+			final String s = tokens[i + 1];
+			final int left = s.lastIndexOf(" (");
+			final int right = s.lastIndexOf(")");
+			try {
+				theLengths[i] = Integer.parseInt(s.substring(left + 2, right));
+				theDims[i] = s.substring(0, left);
+			}
+			catch (final IndexOutOfBoundsException exc) {}
+			catch (final NumberFormatException exc) {}
+		}
+		if (!ObjectUtil.arraysEqual(dims, theDims)) {
+			return "dimensional axis types do not match";
+		}
+		if (!ObjectUtil.arraysEqual(lengths, theLengths)) {
+			return "dimensional axis lengths do not match";
+		}
+		return null;
+	}
+
+	// -- Utility methods --
+
+	/**
+	 * Splits the given line on tabs, discarding empty fields, and marks the
+	 * start of the first field and the end of the last with '#' characters,
+	 * matching the original StringTokenizer-based parsing.
+	 */
+	protected static String[] tokenize(final String line) {
+		final String s = "#" + line + "#";
+		final int len = s.length();
+		int count = 0;
+		for (int i = 0; i < len; i++) {
+			if (s.charAt(i) != '\t' && (i == 0 || s.charAt(i - 1) == '\t')) count++;
+		}
+		final String[] tokens = new String[count];
+		int start = -1, t = 0;
+		for (int i = 0; i <= len; i++) {
+			final boolean tab = i == len || s.charAt(i) == '\t';
+			if (tab && start >= 0) {
+				tokens[t++] = s.substring(start, i);
+				start = -1;
+			}
+			else if (!tab && start < 0) start = i;
+		}
+		return tokens;
+	}
+
+	/**
+	 * Parses a decimal number of the form -?[0-9]+\.[0-9]+ from the given range
+	 * of characters, returning NaN if the range does not hold such a number.
+	 * Numbers whose digits or exponent fall outside the exact float fast path
+	 * are handed to {@link Float#parseFloat}, so the result always matches it.
+	 */
+	protected static float parseDecimal(final String s, final int start,
+		final int end)
+	{
+		int i = start;
+		final boolean neg = i < end && s.charAt(i) == '-';
+		if (neg) i++;
+		long mantissa = 0;
+		int digits = 0, frac = -1;
+		for (; i < end; i++) {
+			final char c = s.charAt(i);
+			if (c == '.') {
+				if (frac >= 0) return Float.NaN;
+				frac = 0;
+			}
+			else if (c >= '0' && c <= '9') {
+				if (digits < 18) mantissa = 10 * mantissa + (c - '0');
+				digits++;
+				if (frac >= 0) frac++;
+			}
+			else return Float.NaN;
+		}
+		if (frac <= 0 || digits == frac) return Float.NaN;
+		if (digits > 18 || mantissa >= 1 << 24 || frac >= POW10.length) {
+			return Float.parseFloat(s.substring(start, end));
+		}
+		final float value = mantissa / POW10[frac];
+		return neg ? -value : value;
+	}
+
+	/** Gets whether the given line introduces a list of nodes. */
+	protected static boolean isNodesHeader(final String s) {
+		final String suffix = " nodes:";
+		int i;
+		if (s.startsWith("# Freeform ")) i = 11;
+		else if (s.startsWith("# Polyline ")) i = 11;
+		else return false;
+		final int end = s.length() - suffix.length();
+		if (end <= i || !s.endsWith(suffix)) return false;
+		for (; i < end; i++) {
+			final char c = s.charAt(i);
+			if (c < '0' || c > '9') return false;
+		}
+		return true;
+	}
+
+	/** Gets whether the given line is the X/Y column header of a node list. */
+	protected static boolean isColumnHeader(final String s) {
+		return s.length() == 3 && (s.charAt(0) == 'X' || s.charAt(0) == 'x') &&
+			s.charAt(1) == '\t' && (s.charAt(2) == 'Y' || s.charAt(2) == 'y');
+	}
+
+	/** Gets whether the given character is whitespace, as in a regex \s. */
+	protected static boolean isSpace(final char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000b' || c == '\f' ||
+			c == '\r';
+	}
+
+	// -- Helper classes --
+
+	/** Values parsed from one row of the overlay table. */
+	protected static class Row {
+
+		protected String type, text, group, notes;
+		protected int raster;
+		protected float x1, y1, x2, y2;
+		protected Color color;
+		protected boolean filled, badColor;
+
+		/**
+		 * Parses the given table row, returning an error message if the row is
+		 * invalid.
+		 */
+		protected String parse(final String line, final int[] lengths) {
+			final String[] tokens = tokenize(line);
+			final int count = tokens.length;
+			if (count != lengths.length + ROW_FIELDS) {
+				return "line in data table has an insufficient number of fields (" +
+					count + " instead of " + (lengths.length + ROW_FIELDS) + ")";
+			}
+			type = tokens[0].substring(1); // remove initial #
+			int t = 1;
+
+			final int[] pos = new int[lengths.length];
+			for (int i = 0; i < pos.length; i++) {
+				try {
+					final int p = Integer.parseInt(tokens[t++]);
+					// overlay files index dimensional positions from 1
+					if (p <= 0 || p > lengths[i]) {
+						return "line has an invalid dimensional position";
+					}
+					pos[i] = p - 1;
+				}
+				catch (final NumberFormatException exc) {
+					return "line has an invalid dimensional position";
+				}
+			}
+			raster = FormatTools.positionToRaster(lengths, pos);
+
+			try {
+				x1 = parseCoordinate(tokens[t++]);
+				y1 = parseCoordinate(tokens[t++]);
+				x2 = parseCoordinate(tokens[t++]);
+				y2 = parseCoordinate(tokens[t++]);
+			}
+			catch (final NumberFormatException exc) {
+				return "line has invalid coordinate values";
+			}
+
+			text = tokens[t++];
+			try {
+				color = ColorUtil.hexToColor(tokens[t++]);
+			}
+			catch (final NumberFormatException exc) {
+				badColor = true;
+				return "line has invalid color value";
+			}
+			filled = tokens[t++].equalsIgnoreCase("true");
+			group = tokens[t++];
+			notes = tokens[t++];
+			notes = notes.substring(0, notes.length() - 1); // remove trailing #
+			return null;
+		}
+
+		/** Parses a coordinate value, which may be not applicable. */
+		protected static float parseCoordinate(final String s) {
+			if (s.equals(OverlayIO.NOT_APPLICABLE)) return Float.NaN;
+			final float v = parseDecimal(s, 0, s.length());
+			return Float.isNaN(v) ? Float.parseFloat(s) : v;
+		}
+
+	}
+
+}
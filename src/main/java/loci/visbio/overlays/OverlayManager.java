@@ -74,13 +74,16 @@ public class OverlayManager extends LogicManager {
 		// register Overlay options
 		final OptionManager om =
 			(OptionManager) bio.getManager(OptionManager.class);
-		final String[] overlayTypes = OverlayUtil.getOverlayTypes();
+		final String[] overlayTypes = OverlayUtil.getStatCategories();
 		for (int i = 0; i < overlayTypes.length; i++) {
 			final String[] statTypes = OverlayUtil.getStatTypes(overlayTypes[i]);
+			// intensity statistics require reading every plane, so are off
+			final boolean value =
+				!overlayTypes[i].equals(MeasurementEngine.INTENSITY);
 			for (int j = 0; j < statTypes.length; j++) {
 				final String name = overlayTypes[i] + "." + statTypes[j];
 				om.addBooleanOption("Overlays", name, '|', "Toggles whether the " +
-					name + " statistic is exported or saved", true);
+					name + " statistic is exported or saved", value);
 			}
 		}
 
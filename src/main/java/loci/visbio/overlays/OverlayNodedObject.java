@@ -27,6 +27,7 @@ package loci.visbio.overlays;
 import java.awt.Color;
 import java.rmi.RemoteException;
 import java.util.Arrays;
+import java.util.Hashtable;
 
 import loci.visbio.util.MathUtil;
 import visad.DataImpl;
@@ -93,6 +94,12 @@ public abstract class OverlayNodedObject extends OverlayObject {
 	/** Radius in pixels of circle indicating a node is selected. */
 	protected static final float RADIUS = 3.0f;
 
+	/** Level of detail at which every node is drawn. */
+	protected static final int FULL_DETAIL = Integer.MIN_VALUE;
+
+	/** Largest distance in pixels a simplified curve may stray from a node. */
+	protected static final float DETAIL_PIXELS = 0.5f;
+
 	// -- Fields --
 
 	/** Synchronization object for nodes array. */
@@ -107,8 +114,17 @@ public abstract class OverlayNodedObject extends OverlayObject {
 	/** Total number of nodes (real + buffer) nodes in the node array. */
 	protected int maxNodes;
 
-	/** Length of curve of a noded object. */
-	protected double curveLength;
+	/** Lengths of the segments between consecutive real nodes. */
+	protected SegmentLengths segLengths = new SegmentLengths(0);
+
+	/** Bounds of the real nodes, maintained as nodes are added and moved. */
+	protected float minX, minY, maxX, maxY;
+
+	/** Whether the tracked node bounds are up to date. */
+	protected boolean boundsValid;
+
+	/** Simplified node arrays, keyed by level of detail. */
+	protected Hashtable lodNodes = new Hashtable();
 
 	/** Whether there is a higlighted node. */
 	protected boolean highlightNode;
@@ -136,11 +152,12 @@ public abstract class OverlayNodedObject extends OverlayObject {
 		synchronized (nodesSync) {
 			maxNodes = 100;
 			nodes = new float[2][maxNodes];
-			Arrays.fill(nodes[0], x1);
-			Arrays.fill(nodes[1], y1);
+			nodes[0][0] = x1;
+			nodes[1][0] = y1;
 			numNodes = 1;
+			segLengths = new SegmentLengths(maxNodes);
+			extendBounds(x1, y1);
 		}
-		computeLength();
 		turnOffHighlighting();
 	}
 
@@ -184,9 +201,36 @@ public abstract class OverlayNodedObject extends OverlayObject {
 		// want to delete them after drawing is done.
 	}
 
-	/** Gets VisAD data object representing this overlay. */
+	/** Gets VisAD data object representing this overlay, with every node. */
 	@Override
 	public DataImpl getData() {
+		return makeData(FULL_DETAIL);
+	}
+
+	/**
+	 * Gets VisAD data object representing this overlay as drawn at the given
+	 * number of domain units per pixel, simplifying away nodes too close
+	 * together to tell apart at that scale.
+	 */
+	@Override
+	public DataImpl getData(final float scale) {
+		return makeData(getDetailLevel(scale));
+	}
+
+	/**
+	 * Gets the level of detail for the given number of domain units per pixel:
+	 * the base-2 logarithm of the simplification tolerance, rounded down so
+	 * that nearby scales share a level.
+	 */
+	@Override
+	public int getDetailLevel(final float scale) {
+		final double tol = DETAIL_PIXELS * scale;
+		if (!(tol > 0) || Double.isInfinite(tol)) return FULL_DETAIL;
+		return (int) Math.floor(Math.log(tol) / Math.log(2));
+	}
+
+	/** Gets VisAD data object representing this overlay at the given level. */
+	protected DataImpl makeData(final int level) {
 		if (!hasData()) return null;
 
 		final RealTupleType domain = overlay.getDomainType();
@@ -198,8 +242,13 @@ public abstract class OverlayNodedObject extends OverlayObject {
 		SampledSet fieldSet = null;
 		try {
 			synchronized (nodesSync) {
+				// the original nodes are drawn in full while still being traced
+				final float[][] used =
+					isDrawing() || level == FULL_DETAIL || numNodes <= 2
+						? getUsedNodes() : getLevelNodes(level);
 				fieldSet =
-					new Gridded2DSet(domain, nodes, maxNodes, null, null, null, false);
+					new Gridded2DSet(domain, used, used[0].length, null, null, null,
+						false);
 			}
 
 			// I've written !isDrawing() to prevent a manifold dimension mismatch
@@ -258,8 +307,9 @@ public abstract class OverlayNodedObject extends OverlayObject {
 	@Override
 	public double getDistance(final double x, final double y) {
 		synchronized (nodesSync) {
+			// measure the real nodes in place, ignoring any buffer nodes
 			final double[] distSegWt =
-				MathUtil.getDistSegWt(nodes, (float) x, (float) y);
+				MathUtil.getDistSegWt(nodes, numNodes, (float) x, (float) y);
 			return distSegWt[0];
 		}
 	}
@@ -274,7 +324,7 @@ public abstract class OverlayNodedObject extends OverlayObject {
 			return "" + numNodes;
 		}
 		else if (name.equals(LENGTH)) {
-			return "" + (float) curveLength;
+			return "" + (float) getCurveLength();
 		}
 		else return "No such statistic for this overlay type";
 	}
@@ -283,8 +333,8 @@ public abstract class OverlayNodedObject extends OverlayObject {
 	@Override
 	public String getStatistics() {
 		return BOUNDS + " = (" + x1 + ", " + y1 + "), (" + x2 + ", " + y2 + ")\n" +
-			NODES + " = " + numNodes + "\n" + LENGTH + " = " + (float) curveLength +
-			"\n";
+			NODES + " = " + numNodes + "\n" + LENGTH + " = " +
+			(float) getCurveLength() + "\n";
 	}
 
 	/** True iff this overlay has an endpoint coordinate pair. */
@@ -365,12 +415,14 @@ public abstract class OverlayNodedObject extends OverlayObject {
 	public void setHighlightNode(final int i) {
 		// if (Thread.currentThread().getName().indexOf("ComputeDataThread") < 0)
 		// new Exception().printStackTrace();
+		if (!highlightNode || highlightIndex != i) invalidate();
 		highlightNode = true;
 		highlightIndex = i;
 	}
 
 	/** Turn off node highlighting. */
 	public void turnOffHighlighting() {
+		if (highlightNode) invalidate();
 		highlightNode = false;
 		highlightIndex = -1;
 	}
@@ -402,6 +454,15 @@ public abstract class OverlayNodedObject extends OverlayObject {
 		}
 	}
 
+	/**
+	 * Returns the nodes simplified for drawing at the given number of domain
+	 * units per pixel. The result is cached per level of detail and must not be
+	 * modified; the node array itself is left intact.
+	 */
+	public float[][] getSimplifiedNodes(final float multiplier) {
+		return getLevelNodes(getDetailLevel(multiplier));
+	}
+
 	/** Returns the number of real nodes in the array. */
 	public int getNumNodes() {
 		synchronized (nodesSync) {
@@ -441,11 +502,17 @@ public abstract class OverlayNodedObject extends OverlayObject {
 				nodes[0][i] = nodes[0][i] + dx;
 				nodes[1][i] = nodes[1][i] + dy;
 			}
+			// segment lengths are unchanged by a translation
+			minX += dx;
+			minY += dy;
+			maxX += dx;
+			maxY += dy;
 		}
 
 		// same as super
 		this.x1 = x1;
 		this.y1 = y1;
+		nodesChanged();
 	}
 
 	/** Sets the node array to that provided--for loading from saved. */
@@ -454,70 +521,52 @@ public abstract class OverlayNodedObject extends OverlayObject {
 			this.nodes = nodes;
 			numNodes = nodes[0].length;
 			maxNodes = numNodes;
+			boundsValid = false;
+			lodNodes.clear();
 		}
 		computeLength();
 		updateBoundingBox();
 	}
 
 	/**
-	 * Updates the coordinates of the bounding box of a noded object by checking
-	 * the entire node array.
+	 * Updates the coordinates of the bounding box of a noded object. The node
+	 * array is scanned only if a node on the edge of the box has moved inward or
+	 * been deleted since the last update.
 	 */
 	public void updateBoundingBox() {
-		if (numNodes == 0) return;
-		float xmin, xmax, ymin, ymax;
 		synchronized (nodesSync) {
-			xmin = xmax = nodes[0][0];
-			ymin = ymax = nodes[1][0];
-			for (int i = 1; i < numNodes; i++) {
-				if (nodes[0][i] < xmin) xmin = nodes[0][i];
-				if (nodes[0][i] > xmax) xmax = nodes[0][i];
-				if (nodes[1][i] < ymin) ymin = nodes[1][i];
-				if (nodes[1][i] > ymax) ymax = nodes[1][i];
-			}
+			if (numNodes == 0) return;
+			if (!boundsValid) scanBounds();
+			applyBounds();
 		}
-		this.x1 = xmin;
-		this.y1 = ymin;
-		this.x2 = xmax;
-		this.y2 = ymax;
+		geometryChanged();
 	}
 
 	/** Gets length of curve. */
 	public double getCurveLength() {
-		return curveLength;
+		synchronized (nodesSync) {
+			return segLengths.getTotal();
+		}
 	}
 
 	/** Determines length of last line segment in this curve. */
 	public double getLastSegmentLength() {
-		final float[][] lastSeg =
-			{ getNodeCoords(getNumNodes() - 1), getNodeCoords(getNumNodes() - 2) };
-		final double[][] lastSegD =
-			{ { lastSeg[0][0], lastSeg[0][1] }, { lastSeg[1][0], lastSeg[1][1] } };
-		return MathUtil.getDistance(lastSegD[0], lastSegD[1]);
-	}
-
-	/** Sets length of curve. */
-	public void setCurveLength(final double len) {
-		curveLength = len;
-	}
-
-	/** Computes length of curve. */
-	public void computeLength() {
-		boolean notFull = false;
 		synchronized (nodesSync) {
-			if (maxNodes != numNodes) notFull = true;
+			final int n = segLengths.size();
+			return n == 0 ? 0 : segLengths.get(n - 1);
 		}
-		if (notFull) truncateNodeArray();
+	}
 
-		double length = 0;
+	/**
+	 * Recomputes the length of every segment of the curve. Lengths are otherwise
+	 * kept up to date as nodes are changed, so this is needed only after
+	 * modifying the node array directly.
+	 */
+	public void computeLength() {
 		synchronized (nodesSync) {
-			for (int i = 0; i < numNodes - 1; i++) {
-				final double[] a = { nodes[0][i], nodes[1][i] };
-				final double[] b = { nodes[0][i + 1], nodes[1][i + 1] };
-				length += MathUtil.getDistance(a, b);
-			}
+			segLengths.rebuild(nodes, numNodes);
+			lodNodes.clear();
 		}
-		this.curveLength = length;
 	}
 
 	// -- OverlayNodedObject API Methods: node array mutators --
@@ -553,13 +602,18 @@ public abstract class OverlayNodedObject extends OverlayObject {
 		}
 		else {
 			synchronized (nodesSync) {
+				moveBounds(nodes[0][ndx], nodes[1][ndx], x, y);
 				nodes[0][ndx] = x;
 				nodes[1][ndx] = y;
-				if (ndx == numNodes - 1 && numNodes < maxNodes) {
-					Arrays.fill(nodes[0], numNodes, maxNodes, x);
-					Arrays.fill(nodes[1], numNodes, maxNodes, y);
+				if (ndx > 0) {
+					segLengths.set(ndx - 1, SegmentLengths.distance(nodes, ndx - 1, ndx));
 				}
+				if (ndx < numNodes - 1) {
+					segLengths.set(ndx, SegmentLengths.distance(nodes, ndx, ndx + 1));
+				}
+				applyBounds();
 			}
+			nodesChanged();
 		}
 	}
 
@@ -582,13 +636,17 @@ public abstract class OverlayNodedObject extends OverlayObject {
 				// same as last node, do nothing
 			}
 			else {
-				if (numNodes >= maxNodes) {
-					maxNodes *= 2;
-					resizeNodeArray(maxNodes);
+				if (numNodes >= maxNodes) resizeNodeArray(Math.max(2 * maxNodes, 2));
+				nodes[0][numNodes] = x;
+				nodes[1][numNodes] = y;
+				numNodes++;
+				if (numNodes > 1) {
+					segLengths.add(SegmentLengths.distance(nodes, numNodes - 2,
+						numNodes - 1));
 				}
-				Arrays.fill(nodes[0], numNodes, maxNodes, x);
-				Arrays.fill(nodes[1], numNodes++, maxNodes, y);
-				// i.e., set all remaining nodes (as per maxNodes) to next node coords
+				extendBounds(x, y);
+				applyBounds();
+				nodesChanged();
 			}
 		}
 	}
@@ -654,14 +712,17 @@ public abstract class OverlayNodedObject extends OverlayObject {
 	/** Actually inserts a node. */
 	private void insert(final int index, final float x, final float y) {
 		for (int j = 0; j < 2; j++) {
-			for (int i = numNodes; i > index; i--) {
-				// right shift every node right of index by 1
-				nodes[j][i] = nodes[j][i - 1];
-			}
+			// right shift every node right of index by 1
+			System.arraycopy(nodes[j], index, nodes[j], index + 1, numNodes - index);
 		}
 		nodes[0][index] = x;
 		nodes[1][index] = y;
 		numNodes++;
+		// the shift is O(n) anyway, so rebuild rather than splice the lengths
+		segLengths.rebuild(nodes, numNodes);
+		extendBounds(x, y);
+		applyBounds();
+		nodesChanged();
 	}
 
 	/** Deletes a range of nodes from the node array. */
@@ -684,6 +745,9 @@ public abstract class OverlayNodedObject extends OverlayObject {
 				numNodes -= victims;
 				maxNodes -= victims;
 				nodes = newNodes;
+				segLengths.rebuild(nodes, numNodes);
+				boundsValid = false;
+				nodesChanged();
 			}
 			else {
 				// System.out.println("deleteBetween(int, int) out of bounds error");
@@ -716,6 +780,9 @@ public abstract class OverlayNodedObject extends OverlayObject {
 				numNodes -= 1 + offset;
 				maxNodes = numNodes;
 				nodes = newNodes;
+				segLengths.rebuild(nodes, numNodes);
+				boundsValid = false;
+				nodesChanged();
 			}
 		}
 	}
@@ -786,6 +853,8 @@ public abstract class OverlayNodedObject extends OverlayObject {
 				}
 			}
 			nodes = temp;
+			segLengths.rebuild(nodes, numNodes);
+			nodesChanged();
 		}
 	}
 
@@ -794,29 +863,114 @@ public abstract class OverlayNodedObject extends OverlayObject {
 		resizeNodeArray(numNodes);
 	}
 
-	/** Resizes the node array, truncating if necessary. */
-	// TODO is it possible to use System.arraycopy here?
+	/**
+	 * Resizes the node array, truncating if necessary. Buffer nodes beyond the
+	 * real nodes are left unset.
+	 */
 	protected void resizeNodeArray(final int newLength) {
 		synchronized (nodesSync) {
-			final int loopMax = Math.min(nodes[0].length, newLength);
+			final int count = Math.min(numNodes, newLength);
 			final float[][] a2 = new float[2][newLength];
-			for (int j = 0; j < 2; j++) { // manually copy nodes to a2
-				for (int i = 0; i < loopMax; i++) {
-					a2[j][i] = nodes[j][i];
-				}
-				// case where newLength > a.length:
-				// fills rest of new array with nodes co-locational with last node
-				for (int i = loopMax; i < a2[0].length; i++) {
-					a2[j][i] = nodes[j][loopMax - 1];
-				}
-			}
+			for (int j = 0; j < 2; j++)
+				System.arraycopy(nodes[j], 0, a2[j], 0, count);
 			nodes = a2;
 			maxNodes = newLength;
+			invalidate();
 		}
 	}
 
 	// -- Helper methods --
 
+	/** Gets the nodes simplified to the given level of detail. */
+	protected float[][] getLevelNodes(final int level) {
+		synchronized (nodesSync) {
+			if (level == FULL_DETAIL || numNodes <= 2) return getNodes();
+			final Integer key = Integer.valueOf(level);
+			float[][] simple = (float[][]) lodNodes.get(key);
+			if (simple == null) {
+				final float tol = (float) Math.pow(2, level);
+				simple = OverlayUtil.simplify(nodes, numNodes, tol);
+				lodNodes.put(key, simple);
+			}
+			return simple;
+		}
+	}
+
+	/** Discards simplified nodes and cached data after the nodes change. */
+	private void nodesChanged() {
+		lodNodes.clear();
+		geometryChanged();
+	}
+
+	/**
+	 * Gets an array of just the real nodes, padded to at least two nodes. The
+	 * node array itself is returned when it holds no buffer nodes.
+	 */
+	private float[][] getUsedNodes() {
+		if (numNodes == 0 || (numNodes > 1 && numNodes == nodes[0].length)) {
+			return nodes;
+		}
+		final int len = Math.max(numNodes, 2);
+		final float[][] used = new float[2][len];
+		for (int j = 0; j < 2; j++) {
+			System.arraycopy(nodes[j], 0, used[j], 0, numNodes);
+			Arrays.fill(used[j], numNodes, len, nodes[j][numNodes - 1]);
+		}
+		return used;
+	}
+
+	/** Extends the tracked bounds to cover a node just added. */
+	private void extendBounds(final float x, final float y) {
+		if (numNodes == 1) {
+			minX = maxX = x;
+			minY = maxY = y;
+			boundsValid = true;
+		}
+		else if (boundsValid) {
+			if (x < minX) minX = x;
+			if (x > maxX) maxX = x;
+			if (y < minY) minY = y;
+			if (y > maxY) maxY = y;
+		}
+	}
+
+	/**
+	 * Updates the tracked bounds for a node moved from (ox, oy) to (x, y),
+	 * invalidating them if the node leaves an edge of the bounds inward.
+	 */
+	private void moveBounds(final float ox, final float oy, final float x,
+		final float y)
+	{
+		if ((ox == minX && x > ox) || (ox == maxX && x < ox) ||
+			(oy == minY && y > oy) || (oy == maxY && y < oy))
+		{
+			boundsValid = false;
+		}
+		else extendBounds(x, y);
+	}
+
+	/** Recomputes the tracked bounds by checking the entire node array. */
+	private void scanBounds() {
+		minX = maxX = nodes[0][0];
+		minY = maxY = nodes[1][0];
+		for (int i = 1; i < numNodes; i++) {
+			if (nodes[0][i] < minX) minX = nodes[0][i];
+			if (nodes[0][i] > maxX) maxX = nodes[0][i];
+			if (nodes[1][i] < minY) minY = nodes[1][i];
+			if (nodes[1][i] > maxY) maxY = nodes[1][i];
+		}
+		boundsValid = true;
+	}
+
+	/** Copies the tracked bounds, if up to date, to the bounding box. */
+	private void applyBounds() {
+		if (!boundsValid || numNodes == 0) return;
+		x1 = minX;
+		y1 = minY;
+		x2 = maxX;
+		y2 = maxY;
+	}
+
 	// NOTE: Right now this method returns Freeforms only, though it could be used
 	// on Polylines too.
 	/**
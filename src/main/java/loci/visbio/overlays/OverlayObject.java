@@ -25,7 +25,9 @@
 package loci.visbio.overlays;
 
 import java.awt.Color;
+import java.util.Hashtable;
 
+import loci.visbio.view.TransformLink;
 import visad.DataImpl;
 
 /**
@@ -85,6 +87,37 @@ public abstract class OverlayObject {
 	/** Number of horizontal and vertical dividing lines for selection grid. */
 	protected int horizGridCount, vertGridCount;
 
+	/** Number of changes made to the appearance of this overlay. */
+	protected int modCount;
+
+	/**
+	 * Number of changes made to the coordinates or nodes of this overlay. Unlike
+	 * the appearance count, this is unaffected by selection, color, text and
+	 * other changes that leave the enclosed region as it was.
+	 */
+	protected int geomCount;
+
+	/** Cached VisAD data objects representing this overlay, by detail level. */
+	protected Hashtable cachedData = new Hashtable();
+
+	/** Change count at which the cached data objects were computed. */
+	protected int dataCount = -1;
+
+	/** Cached selection layer for this overlay. */
+	protected DataImpl cachedLayer;
+
+	/** Change count at which the cached selection layer was computed. */
+	protected int layerCount = -1;
+
+	/** Link for which the cached selection layer was computed. */
+	protected TransformLink layerLink;
+
+	/** Display scale for which the cached selection layer was computed. */
+	protected float layerScale;
+
+	/** Whether the cached selection layer is an outline. */
+	protected boolean layerOutline;
+
 	// -- Constructor --
 
 	/** Constructs an overlay. */
@@ -104,6 +137,15 @@ public abstract class OverlayObject {
 	/** Gets VisAD data object representing this overlay. */
 	public abstract DataImpl getData();
 
+	/**
+	 * Gets VisAD data object representing this overlay as drawn at the given
+	 * number of domain units per pixel. Most overlays look the same at every
+	 * scale, so by default the scale is ignored.
+	 */
+	public DataImpl getData(final float scale) {
+		return getData();
+	}
+
 	/** Computes the shortest distance from this overlay to the given point. */
 	public abstract double getDistance(double x, double y);
 
@@ -150,12 +192,14 @@ public abstract class OverlayObject {
 	public void setX(final float x1) {
 		if (!hasEndpoint()) return;
 		this.x1 = x1;
+		geometryChanged();
 	}
 
 	/** Changes Y coordinate of the overlay's first endpoint. */
 	public void setY(final float y1) {
 		if (!hasEndpoint()) return;
 		this.y1 = y1;
+		geometryChanged();
 	}
 
 	/** Changes coordinates of the overlay's first endpoint. */
@@ -163,6 +207,7 @@ public abstract class OverlayObject {
 		if (!hasEndpoint()) return;
 		this.x1 = x1;
 		this.y1 = y1;
+		geometryChanged();
 	}
 
 	/** Gets X coordinate of the overlay's first endpoint. */
@@ -179,12 +224,14 @@ public abstract class OverlayObject {
 	public void setX2(final float x2) {
 		if (!hasEndpoint2()) return;
 		this.x2 = x2;
+		geometryChanged();
 	}
 
 	/** Changes Y coordinate of the overlay's second endpoint. */
 	public void setY2(final float y2) {
 		if (!hasEndpoint2()) return;
 		this.y2 = y2;
+		geometryChanged();
 	}
 
 	/** Changes coordinates of the overlay's second endpoint. */
@@ -192,6 +239,7 @@ public abstract class OverlayObject {
 		if (!hasEndpoint2()) return;
 		this.x2 = x2;
 		this.y2 = y2;
+		geometryChanged();
 	}
 
 	/** Gets X coordinate of the overlay's second endpoint. */
@@ -204,10 +252,21 @@ public abstract class OverlayObject {
 		return y2;
 	}
 
+	/**
+	 * Gets the bounding box of this overlay, as an array containing the minimum
+	 * X, minimum Y, maximum X and maximum Y coordinates.
+	 */
+	public float[] getBounds() {
+		if (!hasEndpoint2() && !hasText()) return new float[] { x1, y1, x1, y1 };
+		return new float[] { Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2),
+			Math.max(y1, y2) };
+	}
+
 	/** Changes text to render. */
 	public void setText(final String text) {
 		if (!hasText()) return;
 		this.text = text;
+		invalidate();
 	}
 
 	/** Gets text to render. */
@@ -218,6 +277,7 @@ public abstract class OverlayObject {
 	/** Sets color of this overlay. */
 	public void setColor(final Color c) {
 		color = c;
+		invalidate();
 	}
 
 	/** Gets color of this overlay. */
@@ -228,6 +288,7 @@ public abstract class OverlayObject {
 	/** Sets whether overlay is solid. */
 	public void setFilled(final boolean filled) {
 		if (canBeFilled()) this.filled = filled;
+		invalidate();
 	}
 
 	/** Gets whether overlay is solid. */
@@ -265,7 +326,10 @@ public abstract class OverlayObject {
 
 	/** Sets whether this overlay is currently selected. */
 	public void setSelected(final boolean selected) {
+		if (this.selected == selected) return;
 		this.selected = selected;
+		invalidate();
+		overlay.selectionChanged(this);
 	}
 
 	/** Gets whether this overlay is currently selected. */
@@ -275,6 +339,7 @@ public abstract class OverlayObject {
 
 	/** Sets whether this overlay is still being initially drawn. */
 	public void setDrawing(final boolean drawing) {
+		if (this.drawing != drawing) invalidate();
 		this.drawing = drawing;
 		overlay.setTextDrawn(!drawing);
 	}
@@ -284,13 +349,85 @@ public abstract class OverlayObject {
 		return drawing;
 	}
 
+	/**
+	 * Marks the appearance of this overlay as changed, so that its cached data
+	 * object and selection layer are recomputed the next time they are needed.
+	 */
+	public void invalidate() {
+		modCount++;
+	}
+
+	/**
+	 * Gets VisAD data object representing this overlay as drawn at the given
+	 * number of domain units per pixel, reusing the previous result for the
+	 * same level of detail if the overlay has not changed since it was
+	 * computed. Displays at different scales each keep their own result.
+	 */
+	public DataImpl getCachedData(final float scale) {
+		final Integer level = Integer.valueOf(getDetailLevel(scale));
+		synchronized (cachedData) {
+			final int count = modCount;
+			if (dataCount != count) {
+				cachedData.clear();
+				dataCount = count;
+			}
+			DataImpl data = (DataImpl) cachedData.get(level);
+			if (data == null) {
+				data = getData(scale);
+				if (data != null) cachedData.put(level, data);
+			}
+			return data;
+		}
+	}
+
+	/**
+	 * Gets the level of detail at which this overlay is drawn at the given
+	 * number of domain units per pixel. Overlays drawn the same way at every
+	 * scale have a single level.
+	 */
+	public int getDetailLevel(final float scale) {
+		return 0;
+	}
+
+	/**
+	 * Gets the selection layer (or outline, for text overlays) of this overlay
+	 * for the given link, reusing the previous result if neither the overlay
+	 * nor the display scale has changed since it was computed.
+	 */
+	public DataImpl getSelectionLayer(final TransformLink link,
+		final boolean outline, final float scale)
+	{
+		final int count = modCount;
+		if (layerCount != count || layerLink != link || layerOutline != outline ||
+			layerScale != scale)
+		{
+			cachedLayer = OverlayUtil.getSelectionLayer(this, link, outline);
+			layerCount = count;
+			layerLink = link;
+			layerOutline = outline;
+			layerScale = scale;
+		}
+		return cachedLayer;
+	}
+
 	// -- Internal OverlayObject API methods --
 
+	/**
+	 * Marks the geometry of this overlay as changed, invalidating its cached
+	 * data and rebinning it in the overlay's spatial index.
+	 */
+	protected void geometryChanged() {
+		geomCount++;
+		invalidate();
+		overlay.objectMoved(this);
+	}
+
 	/** Sets value of largest and smallest x, y values. */
 	protected void setBoundaries(final float x, final float y) {
 		x1 = Math.min(x1, x);
 		x2 = Math.max(x2, x);
 		y1 = Math.min(y1, y);
 		y2 = Math.max(y2, y);
+		geometryChanged();
 	}
 }// end class
@@ -0,0 +1,145 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.overlays;
+
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * OverlayStore holds the overlay objects of an overlay transform, keyed by
+ * rasterized dimensional position. Only positions that actually hold overlays
+ * have an object list allocated, so that datasets with very many dimensional
+ * positions cost nothing until they are annotated.
+ */
+public class OverlayStore {
+
+	// -- Fields --
+
+	/** Number of rasterized dimensional positions. */
+	protected int length;
+
+	/** Overlay objects at each allocated position, keyed by raster index. */
+	protected Hashtable planes = new Hashtable();
+
+	/** Sorted raster indices of allocated positions, or null if stale. */
+	protected int[] indices;
+
+	// -- Constructor --
+
+	/** Constructs an empty overlay store with the given number of positions. */
+	public OverlayStore(final int length) {
+		this.length = length;
+	}
+
+	// -- OverlayStore API methods --
+
+	/** Gets the number of rasterized dimensional positions. */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Changes the number of rasterized dimensional positions, discarding any
+	 * overlays at positions beyond the new length.
+	 */
+	public void setLength(final int length) {
+		if (length < this.length) {
+			final int[] ndx = getIndices();
+			for (int i = 0; i < ndx.length; i++) {
+				if (ndx[i] >= length) planes.remove(Integer.valueOf(ndx[i]));
+			}
+			indices = null;
+		}
+		this.length = length;
+	}
+
+	/**
+	 * Gets the overlay objects at the given raster index, or null if no
+	 * overlays have been placed there.
+	 */
+	public Vector get(final int ndx) {
+		return (Vector) planes.get(Integer.valueOf(ndx));
+	}
+
+	/** Gets the number of overlay objects at the given raster index. */
+	public int size(final int ndx) {
+		final Vector v = get(ndx);
+		return v == null ? 0 : v.size();
+	}
+
+	/** Adds an overlay object at the given raster index. */
+	public void add(final int ndx, final OverlayObject obj) {
+		final Integer key = Integer.valueOf(ndx);
+		Vector v = (Vector) planes.get(key);
+		if (v == null) {
+			v = new Vector();
+			planes.put(key, v);
+			indices = null;
+		}
+		v.add(obj);
+	}
+
+	/** Removes an overlay object from the given raster index. */
+	public boolean remove(final int ndx, final OverlayObject obj) {
+		final Vector v = get(ndx);
+		if (v == null || !v.remove(obj)) return false;
+		prune(ndx);
+		return true;
+	}
+
+	/** Releases the object list at the given raster index if it is empty. */
+	public void prune(final int ndx) {
+		final Vector v = get(ndx);
+		if (v == null || !v.isEmpty()) return;
+		planes.remove(Integer.valueOf(ndx));
+		indices = null;
+	}
+
+	/** Gets the sorted raster indices of all positions holding overlays. */
+	public int[] getIndices() {
+		if (indices == null) {
+			final int[] ndx = new int[planes.size()];
+			final Enumeration en = planes.keys();
+			for (int i = 0; i < ndx.length && en.hasMoreElements(); i++) {
+				ndx[i] = ((Integer) en.nextElement()).intValue();
+			}
+			Arrays.sort(ndx);
+			indices = ndx;
+		}
+		return indices;
+	}
+
+	/** Gets the total number of overlay objects across all positions. */
+	public int getObjectCount() {
+		int count = 0;
+		final Enumeration en = planes.elements();
+		while (en.hasMoreElements())
+			count += ((Vector) en.nextElement()).size();
+		return count;
+	}
+
+}
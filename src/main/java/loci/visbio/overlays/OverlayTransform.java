@@ -31,8 +31,12 @@ import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.rmi.RemoteException;
+import java.util.Hashtable;
 import java.util.Vector;
 
 import javax.swing.JComponent;
@@ -121,8 +125,14 @@ public class OverlayTransform extends DataTransform implements
 	/** Controls for creating overlays. */
 	protected OverlayWidget controls;
 
-	/** List of overlays for each dimensional position. */
-	protected Vector[] overlays;
+	/** Overlays at each dimensional position. */
+	protected OverlayStore overlays;
+
+	/** Spatial index of the overlays at each dimensional position. */
+	protected Hashtable indices = new Hashtable();
+
+	/** Intensity statistics of the overlays. */
+	protected MeasurementEngine measurements = new MeasurementEngine(this);
 
 	/** Current dimensional position. */
 	protected int[] pos;
@@ -194,9 +204,11 @@ public class OverlayTransform extends DataTransform implements
 	public void addObject(final OverlayObject obj, final int[] pos) {
 		configureOverlay(obj);
 		final int ndx = FormatTools.positionToRaster(lengths, pos);
-		if (ndx < 0 || ndx >= overlays.length) return;
+		if (ndx < 0 || ndx >= overlays.getLength()) return;
 		synchronized (overlays) {
-			overlays[ndx].add(obj);
+			overlays.add(ndx, obj);
+			final OverlayIndex index = getBuiltIndex(ndx);
+			if (index != null) index.update(obj);
 		}
 		if (ObjectUtil.arraysEqual(pos, this.pos)) controls.refreshListObjects();
 		notifyListeners(new TransformEvent(this));
@@ -210,9 +222,11 @@ public class OverlayTransform extends DataTransform implements
 	/** Removes an overlay object at the given dimensional position. */
 	public void removeObject(final OverlayObject obj, final int[] pos) {
 		final int ndx = FormatTools.positionToRaster(lengths, pos);
-		if (ndx < 0 || ndx >= overlays.length) return;
+		if (ndx < 0 || ndx >= overlays.getLength()) return;
 		synchronized (overlays) {
-			overlays[ndx].remove(obj);
+			overlays.remove(ndx, obj);
+			final OverlayIndex index = getBuiltIndex(ndx);
+			if (index != null) index.remove(obj);
 		}
 		if (ObjectUtil.arraysEqual(pos, this.pos)) controls.refreshListObjects();
 		notifyListeners(new TransformEvent(this));
@@ -236,18 +250,22 @@ public class OverlayTransform extends DataTransform implements
 	/** Removes selected overlay objects at the given dimensional position. */
 	public void removeSelectedObjects(final int[] pos) {
 		final int ndx = FormatTools.positionToRaster(lengths, pos);
-		if (ndx < 0 || ndx >= overlays.length) return;
+		if (ndx < 0 || ndx >= overlays.getLength()) return;
 		boolean anyRemoved = false;
 		int i = 0;
 		synchronized (overlays) {
-			while (i < overlays[ndx].size()) {
-				final OverlayObject obj = (OverlayObject) overlays[ndx].elementAt(i);
+			final Vector objs = overlays.get(ndx);
+			final OverlayIndex index = getBuiltIndex(ndx);
+			while (objs != null && i < objs.size()) {
+				final OverlayObject obj = (OverlayObject) objs.elementAt(i);
 				if (obj.isSelected()) {
-					overlays[ndx].removeElementAt(i);
+					objs.removeElementAt(i);
+					if (index != null) index.remove(obj);
 					anyRemoved = true;
 				}
 				else i++;
 			}
+			overlays.prune(ndx);
 		}
 		if (anyRemoved) {
 			if (ObjectUtil.arraysEqual(pos, this.pos)) controls.refreshListObjects();
@@ -269,12 +287,13 @@ public class OverlayTransform extends DataTransform implements
 	 */
 	public void copySelectedObjects(final int[] pos) {
 		final int ndx = FormatTools.positionToRaster(lengths, pos);
-		if (ndx < 0 || ndx >= overlays.length) return;
+		if (ndx < 0 || ndx >= overlays.getLength()) return;
 		synchronized (overlays) {
 			clipboard.removeAllElements();
 			clipboardPos = pos;
-			for (int i = 0; i < overlays[ndx].size(); i++) {
-				final OverlayObject obj = (OverlayObject) overlays[ndx].elementAt(i);
+			final Vector objs = overlays.get(ndx);
+			for (int i = 0; objs != null && i < objs.size(); i++) {
+				final OverlayObject obj = (OverlayObject) objs.elementAt(i);
 				if (obj.isSelected()) clipboard.add(obj);
 			}
 			controls.refreshPasteComponent(!clipboard.isEmpty());
@@ -289,9 +308,10 @@ public class OverlayTransform extends DataTransform implements
 	/** Pastes copied objects at the given dimensional position. */
 	public void pasteObjects(final int[] pos) {
 		final int ndx = FormatTools.positionToRaster(lengths, pos);
-		if (ndx < 0 || ndx >= overlays.length) return;
+		if (ndx < 0 || ndx >= overlays.getLength()) return;
 		synchronized (overlays) {
 			if (clipboard.isEmpty()) return;
+			final OverlayIndex index = getBuiltIndex(ndx);
 			for (int i = 0; i < clipboard.size(); i++) {
 				final OverlayObject orig = (OverlayObject) clipboard.elementAt(i);
 				final OverlayObject obj =
@@ -308,11 +328,12 @@ public class OverlayTransform extends DataTransform implements
 				obj.drawing = false;
 				obj.selected = true;
 				if (obj instanceof OverlayText) ((OverlayText) obj).computeTextBounds();
-				overlays[ndx].add(obj);
+				overlays.add(ndx, obj);
+				if (index != null) index.update(obj);
 			}
 		}
 		controls.refreshListObjects();
-		notifyListeners(new TransformEvent(this));
+		notifyDataChanged(pos);
 	}
 
 	/**
@@ -335,7 +356,7 @@ public class OverlayTransform extends DataTransform implements
 	 */
 	public String distributeObjects(final int[] pos) {
 		int ndx = FormatTools.positionToRaster(lengths, pos);
-		if (ndx < 0 || ndx >= overlays.length) {
+		if (ndx < 0 || ndx >= overlays.getLength()) {
 			return "Invalid dimensional position.";
 		}
 
@@ -352,8 +373,9 @@ public class OverlayTransform extends DataTransform implements
 
 			// grab currently selected overlay
 			OverlayObject sel = null;
-			for (int i = 0; i < overlays[ndx].size(); i++) {
-				final OverlayObject obj = (OverlayObject) overlays[ndx].elementAt(i);
+			final Vector objs = overlays.get(ndx);
+			for (int i = 0; objs != null && i < objs.size(); i++) {
+				final OverlayObject obj = (OverlayObject) objs.elementAt(i);
 				if (obj.isSelected()) {
 					if (sel != null) {
 						return "There must not be multiple overlays selected.";
@@ -428,7 +450,9 @@ public class OverlayTransform extends DataTransform implements
 				obj.selected = false;
 				if (obj instanceof OverlayText) ((OverlayText) obj).computeTextBounds();
 
-				overlays[ndx].add(obj);
+				overlays.add(ndx, obj);
+				final OverlayIndex index = getBuiltIndex(ndx);
+				if (index != null) index.update(obj);
 			}
 		}
 
@@ -444,10 +468,75 @@ public class OverlayTransform extends DataTransform implements
 	/** Gets the overlay objects at the given dimensional position. */
 	public OverlayObject[] getObjects(final int[] pos) {
 		final int ndx = FormatTools.positionToRaster(lengths, pos);
-		if (ndx < 0 || ndx >= overlays.length) return null;
-		final OverlayObject[] oo = new OverlayObject[overlays[ndx].size()];
-		overlays[ndx].copyInto(oo);
-		return oo;
+		if (ndx < 0 || ndx >= overlays.getLength()) return null;
+		synchronized (overlays) {
+			final Vector objs = overlays.get(ndx);
+			final OverlayObject[] oo =
+				new OverlayObject[objs == null ? 0 : objs.size()];
+			if (objs != null) objs.copyInto(oo);
+			return oo;
+		}
+	}
+
+	/** Gets the intensity statistics engine for the overlays. */
+	public MeasurementEngine getMeasurements() {
+		return measurements;
+	}
+
+	/**
+	 * Gets the spatial index of the overlay objects at the given dimensional
+	 * position, rebinning any objects that moved since it was last used. The
+	 * index is built from the plane's objects the first time it is needed, and
+	 * kept up to date incrementally after that.
+	 */
+	public OverlayIndex getIndex(final int[] pos) {
+		final int ndx = FormatTools.positionToRaster(lengths, pos);
+		if (ndx < 0 || ndx >= overlays.getLength()) return null;
+		synchronized (overlays) {
+			final Integer key = Integer.valueOf(ndx);
+			OverlayIndex index = (OverlayIndex) indices.get(key);
+			if (index == null) {
+				index = new OverlayIndex();
+				final Vector objs = overlays.get(ndx);
+				index.sync(objs == null ? new Vector() : objs);
+				indices.put(key, index);
+			}
+			else index.flush();
+			return index;
+		}
+	}
+
+	/**
+	 * Gets the selected overlay objects at the given dimensional position,
+	 * without visiting the unselected ones.
+	 */
+	public OverlayObject[] getSelectedObjects(final int[] pos) {
+		final OverlayIndex index = getIndex(pos);
+		if (index == null) return new OverlayObject[0];
+		final Vector v = index.getSelected();
+		final OverlayObject[] objs = new OverlayObject[v.size()];
+		v.copyInto(objs);
+		return objs;
+	}
+
+	/**
+	 * Marks the given object as moved in the spatial indices containing it, so
+	 * that it is rebinned the next time its index is used.
+	 */
+	public void objectMoved(final OverlayObject obj) {
+		final Object[] idx = indices.values().toArray();
+		for (int i = 0; i < idx.length; i++)
+			((OverlayIndex) idx[i]).markMoved(obj);
+	}
+
+	/**
+	 * Records a change to the selection state of the given object in the
+	 * spatial indices containing it.
+	 */
+	public void selectionChanged(final OverlayObject obj) {
+		final Object[] idx = indices.values().toArray();
+		for (int i = 0; i < idx.length; i++)
+			((OverlayIndex) idx[i]).updateSelection(obj);
 	}
 
 	/** Sets transform's current dimensional position. */
@@ -464,11 +553,7 @@ public class OverlayTransform extends DataTransform implements
 
 	/** Reads the overlays from the given reader. */
 	public void loadOverlays(final BufferedReader in) throws IOException {
-		final Vector[] loadedOverlays = OverlayIO.loadOverlays(in, this);
-		if (loadedOverlays == null) return;
-		overlays = loadedOverlays;
-		controls.refreshListObjects();
-		notifyListeners(new TransformEvent(this));
+		setOverlays(OverlayIO.loadOverlays(in, this));
 	}
 
 	/** Writes the overlays to the given writer. */
@@ -476,11 +561,28 @@ public class OverlayTransform extends DataTransform implements
 		OverlayIO.saveOverlays(out, this);
 	}
 
+	/** Reads the overlays from the given stream in binary format. */
+	public void loadBinaryOverlays(final InputStream in) throws IOException {
+		setOverlays(OverlayBinaryIO.loadOverlays(in, this));
+	}
+
+	/** Writes the overlays to the given stream in binary format. */
+	public void saveBinaryOverlays(final OutputStream out) throws IOException {
+		OverlayBinaryIO.saveOverlays(out, this, true);
+	}
+
 	/** Exports the overlays as .xls to the given output file. */
 	public HSSFWorkbook exportOverlays() {
 		return OverlayIO.exportOverlays(this);
 	}
 
+	/** Exports the overlays as delimited text to the given writer. */
+	public void exportOverlays(final Writer out, final char delimiter)
+		throws IOException
+	{
+		OverlayIO.exportOverlays(out, this, delimiter);
+	}
+
 	/** Gets domain type (XY). */
 	public RealTupleType getDomainType() {
 		final ImageTransform it = (ImageTransform) parent;
@@ -629,9 +731,10 @@ public class OverlayTransform extends DataTransform implements
 			return null;
 		}
 		final int q = FormatTools.positionToRaster(lengths, pos);
-		if (q < 0 || q >= overlays.length) return null;
+		if (q < 0 || q >= overlays.getLength()) return null;
 		synchronized (overlays) {
-			final int size = overlays[q].size();
+			final Vector objs = overlays.get(q);
+			final int size = objs == null ? 0 : objs.size();
 			DataImpl selectData = null;
 			FieldImpl rgbField = null, txtField = null;
 			try {
@@ -639,7 +742,7 @@ public class OverlayTransform extends DataTransform implements
 					// compute number of selected objects, text objects
 					int rgbSize = 0, txtSize = 0, sel = 0, outline = 0;
 					for (int i = 0; i < size; i++) {
-						final OverlayObject obj = (OverlayObject) overlays[q].elementAt(i);
+						final OverlayObject obj = (OverlayObject) objs.elementAt(i);
 						if (obj.hasText()) {
 							if (drawText || obj.isSelected()) txtSize++;
 							else outline++;
@@ -649,6 +752,7 @@ public class OverlayTransform extends DataTransform implements
 						if (obj.isSelected() && !obj.isDrawing()) sel++;
 					}
 					final RealType index = RealType.getRealType("overlay_index");
+					final float scale = OverlayUtil.getMultiplier(display);
 
 					// compile standard objects into RGB field
 					if (rgbSize > 0 || sel > 0 || outline > 0) {
@@ -661,30 +765,27 @@ public class OverlayTransform extends DataTransform implements
 						// compute overlay data for each non-text object
 						for (int i = 0, c = 0; i < size && c < rgbSize; i++) {
 							final OverlayObject obj =
-								(OverlayObject) overlays[q].elementAt(i);
+								(OverlayObject) objs.elementAt(i);
 							// rescale object if appropriate
 							// (currently applies only to OverlayMarkers)
-							if (obj.isScalable()) obj.rescale(OverlayUtil
-								.getMultiplier(display));
+							if (obj.isScalable()) obj.rescale(scale);
 							if (obj.hasText()) continue;
-							rgbField.setSample(c++, obj.getData(), false);
+							rgbField.setSample(c++, obj.getCachedData(scale), false);
 						}
 						// compute selection grid for each selected object
 						for (int i = 0, c = 0; i < size && c < sel; i++) {
 							final OverlayObject obj =
-								(OverlayObject) overlays[q].elementAt(i);
+								(OverlayObject) objs.elementAt(i);
 							if (!obj.isSelected() || obj.isDrawing()) continue;
-							final DataImpl layer =
-								OverlayUtil.getSelectionLayer(obj, link, false);
+							final DataImpl layer = obj.getSelectionLayer(link, false, scale);
 							rgbField.setSample(rgbSize + c++, layer, false);
 						}
 						// compute outline grid for each invisible text object
 						for (int i = 0, c = 0; i < size && c < outline; i++) {
 							final OverlayObject obj =
-								(OverlayObject) overlays[q].elementAt(i);
+								(OverlayObject) objs.elementAt(i);
 							if (!obj.hasText() || obj.isSelected()) continue;
-							final DataImpl layer =
-								OverlayUtil.getSelectionLayer(obj, link, true);
+							final DataImpl layer = obj.getSelectionLayer(link, true, scale);
 							rgbField.setSample(rgbSize + sel + c++, layer, false);
 						}
 					}
@@ -700,9 +801,9 @@ public class OverlayTransform extends DataTransform implements
 						int c = 0;
 						for (int i = 0; i < size && c < txtSize; i++) {
 							final OverlayObject obj =
-								(OverlayObject) overlays[q].elementAt(i);
+								(OverlayObject) objs.elementAt(i);
 							if (!obj.hasText() || !drawText) continue;
-							txtField.setSample(c++, obj.getData(), false);
+							txtField.setSample(c++, obj.getCachedData(scale), false);
 						}
 					}
 				}
@@ -814,10 +915,16 @@ public class OverlayTransform extends DataTransform implements
 
 		// recompute grid boxes for text overlays
 		// 4/24 removed computeGridParameters method
-		for (int j = 0; j < overlays.length; j++) {
-			for (int i = 0; i < overlays[j].size(); i++) {
-				final OverlayObject obj = (OverlayObject) overlays[j].get(i);
-				if (obj instanceof OverlayText) ((OverlayText) obj).computeTextBounds();
+		synchronized (overlays) {
+			final int[] ndx = overlays.getIndices();
+			for (int j = 0; j < ndx.length; j++) {
+				final Vector objs = overlays.get(ndx[j]);
+				for (int i = 0; i < objs.size(); i++) {
+					final OverlayObject obj = (OverlayObject) objs.get(i);
+					if (obj instanceof OverlayText) {
+						((OverlayText) obj).computeTextBounds();
+					}
+				}
 			}
 		}
 
@@ -886,10 +993,10 @@ public class OverlayTransform extends DataTransform implements
 			else {
 				// update selected text objects
 				final int ndx = FormatTools.positionToRaster(lengths, pos);
-				if (ndx < 0 || ndx >= overlays.length) return;
-				final Vector objs = overlays[ndx];
+				if (ndx < 0 || ndx >= overlays.getLength()) return;
+				final Vector objs = overlays.get(ndx);
 				boolean changed = false;
-				for (int i = 0; i < objs.size(); i++) {
+				for (int i = 0; objs != null && i < objs.size(); i++) {
 					final OverlayObject oo = (OverlayObject) objs.elementAt(i);
 					if (oo.isSelected() && oo.hasText()) {
 						if (code == KeyEvent.VK_BACK_SPACE) {
@@ -909,7 +1016,7 @@ public class OverlayTransform extends DataTransform implements
 						}
 					}
 				}
-				if (changed) notifyListeners(new TransformEvent(this));
+				if (changed) notifyDataChanged(pos);
 			}
 			// No tools use keyPressed functionality, so it is disabled for now
 			// if (tool != null) tool.keyPressed(e.getKeyCode(), e.getModifiers());
@@ -962,9 +1069,8 @@ public class OverlayTransform extends DataTransform implements
 		makeLabels();
 
 		final int len = FormatTools.getRasterLength(lengths);
-		final Vector[] v = new Vector[len];
-		int minLen = 0;
-		if (overlays != null) {
+		if (overlays == null) overlays = new OverlayStore(len);
+		else {
 			// CTR - This logic is simplistic and will result in erroneous behavior
 			// should a transform with multiple dimensional axes suffer a length
 			// alteration along its axes. That is, the rasterization will probably be
@@ -976,12 +1082,9 @@ public class OverlayTransform extends DataTransform implements
 			// new lengths arrays, and act appropriately, but for now we simply
 			// preserve as many overlays as possible. If the dimensional axes have
 			// been significantly altered, too bad.
-			minLen = overlays.length < len ? overlays.length : len;
-			System.arraycopy(overlays, 0, v, 0, minLen);
+			overlays.setLength(len);
+			indices.clear();
 		}
-		for (int i = minLen; i < len; i++)
-			v[i] = new Vector();
-		overlays = v;
 		pos = new int[lengths.length];
 
 		controls = new OverlayWidget(this);
@@ -1009,6 +1112,23 @@ public class OverlayTransform extends DataTransform implements
 
 	// -- Helper methods --
 
+	/**
+	 * Gets the spatial index of the given raster position, or null if it has
+	 * not been built yet.
+	 */
+	protected OverlayIndex getBuiltIndex(final int ndx) {
+		return (OverlayIndex) indices.get(Integer.valueOf(ndx));
+	}
+
+	/** Replaces the overlays with the given newly loaded ones, if any. */
+	protected void setOverlays(final OverlayStore loadedOverlays) {
+		if (loadedOverlays == null) return;
+		overlays = loadedOverlays;
+		indices.clear();
+		controls.refreshListObjects();
+		notifyListeners(new TransformEvent(this));
+	}
+
 	/** Configures the given overlay to match the current settings. */
 	protected void configureOverlay(final OverlayObject obj) {
 		final OverlayWidget panel = (OverlayWidget) getControls();
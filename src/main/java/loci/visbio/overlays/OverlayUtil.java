@@ -113,6 +113,17 @@ public final class OverlayUtil {
 		return OVERLAY_TYPES;
 	}
 
+	/**
+	 * Get list of all categories of exportable statistics: the overlay types,
+	 * followed by intensity statistics.
+	 */
+	public static String[] getStatCategories() {
+		final String[] categories = new String[OVERLAY_TYPES.length + 1];
+		System.arraycopy(OVERLAY_TYPES, 0, categories, 0, OVERLAY_TYPES.length);
+		categories[OVERLAY_TYPES.length] = MeasurementEngine.INTENSITY;
+		return categories;
+	}
+
 	/**
 	 * Returns statistic names for a particular class.
 	 */
@@ -129,6 +140,8 @@ public final class OverlayUtil {
 		else if (overlayType.equals("Polyline")) statTypes =
 			OverlayNodedObject.getStatTypes();
 		else if (overlayType.equals("Text")) statTypes = OverlayText.getStatTypes();
+		else if (overlayType.equals(MeasurementEngine.INTENSITY)) statTypes =
+			MeasurementEngine.getStatTypes();
 		return statTypes;
 	}
 
@@ -531,9 +544,10 @@ public final class OverlayUtil {
 		// each segment of the freeform or polyline, and an additional Gridded2DSet
 		// for the circle.
 
-		final float delta = GLOW_WIDTH * getMultiplier(link);
-		final float[][] nodes = ono.getNodes();
-		final int numNodes = ono.getNumNodes();
+		final float mult = getMultiplier(link);
+		final float delta = GLOW_WIDTH * mult;
+		// simplify dense curves; the glow hides sub-pixel detail anyway
+		final float[][] nodes = ono.getSimplifiedNodes(mult);
 		final boolean hlt = ono.isHighlightNode();
 		int hltIndex = 0;
 		if (hlt) hltIndex = ono.getHighlightedNodeIndex();
@@ -1252,6 +1266,78 @@ public final class OverlayUtil {
 		return cn;
 	}
 
+	/**
+	 * Simplifies the first numNodes nodes of a curve using the Douglas-Peucker
+	 * algorithm, keeping just enough nodes that no dropped node lies farther
+	 * than the given tolerance from the simplified curve. The first and last
+	 * nodes are always kept, and the given array is left unchanged.
+	 */
+	public static float[][] simplify(final float[][] nodes, final int numNodes,
+		final float tolerance)
+	{
+		if (numNodes <= 2) {
+			final float[][] copy = new float[2][numNodes];
+			for (int j = 0; j < 2; j++)
+				System.arraycopy(nodes[j], 0, copy[j], 0, numNodes);
+			return copy;
+		}
+		final double tol2 = (double) tolerance * tolerance;
+		final boolean[] keep = new boolean[numNodes];
+		keep[0] = keep[numNodes - 1] = true;
+		int kept = 2;
+
+		// ranges still to simplify, as pairs of end node indices
+		final int[] stack = new int[2 * numNodes];
+		int top = 0;
+		stack[top++] = 0;
+		stack[top++] = numNodes - 1;
+		while (top > 0) {
+			final int last = stack[--top];
+			final int first = stack[--top];
+			final double ax = nodes[0][first], ay = nodes[1][first];
+			final double vx = nodes[0][last] - ax, vy = nodes[1][last] - ay;
+			final double vv = vx * vx + vy * vy;
+
+			// find the node farthest from the segment joining the ends
+			int index = -1;
+			double max = tol2;
+			for (int i = first + 1; i < last; i++) {
+				double px = nodes[0][i] - ax, py = nodes[1][i] - ay;
+				if (vv > 0) {
+					double t = (px * vx + py * vy) / vv;
+					if (t < 0) t = 0;
+					else if (t > 1) t = 1;
+					px -= t * vx;
+					py -= t * vy;
+				}
+				final double d2 = px * px + py * py;
+				if (d2 > max) {
+					max = d2;
+					index = i;
+				}
+			}
+			if (index < 0) continue;
+			keep[index] = true;
+			kept++;
+			if (index - first > 1) {
+				stack[top++] = first;
+				stack[top++] = index;
+			}
+			if (last - index > 1) {
+				stack[top++] = index;
+				stack[top++] = last;
+			}
+		}
+
+		final float[][] simple = new float[2][kept];
+		for (int i = 0, c = 0; i < numNodes; i++) {
+			if (!keep[i]) continue;
+			simple[0][c] = nodes[0][i];
+			simple[1][c++] = nodes[1][i];
+		}
+		return simple;
+	}
+
 	/**
 	 * Casts and converts an array of floats in domain coordinates to doubles in
 	 * pixel coordinates.
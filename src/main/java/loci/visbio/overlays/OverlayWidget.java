@@ -35,13 +35,20 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.util.Vector;
 
 import javax.swing.ButtonGroup;
@@ -58,6 +65,7 @@ import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.JToggleButton;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 import javax.swing.border.EtchedBorder;
 import javax.swing.event.DocumentEvent;
@@ -68,9 +76,12 @@ import javax.swing.text.Document;
 
 import loci.formats.gui.ExtensionFileFilter;
 import loci.poi.hssf.usermodel.HSSFWorkbook;
+import loci.visbio.BioTask;
+import loci.visbio.TaskManager;
 import loci.visbio.VisBioFrame;
 import loci.visbio.data.TransformEvent;
 import loci.visbio.data.TransformListener;
+import loci.visbio.state.BooleanOption;
 import loci.visbio.state.OptionManager;
 import loci.visbio.state.SpreadsheetLaunchOption;
 import loci.visbio.state.SpreadsheetOptionStrategy;
@@ -127,6 +138,12 @@ public class OverlayWidget extends JPanel implements ActionListener,
 	/** File chooser for exporting overlays to .xls format. */
 	protected JFileChooser overlayXLSBox;
 
+	/** File filter for binary overlay files in the save file chooser. */
+	protected ExtensionFileFilter overlayBinaryFilter;
+
+	/** File filters for delimited text files in the export file chooser. */
+	protected ExtensionFileFilter overlayCSVFilter, overlayTSVFilter;
+
 	/** Text field indicating current font. */
 	protected JTextField currentFont;
 
@@ -217,16 +234,27 @@ public class OverlayWidget extends JPanel implements ActionListener,
 		overlayLoadBox = new JFileChooser();
 		overlayLoadBox.addChoosableFileFilter(new ExtensionFileFilter(
 			new String[] { "txt" }, "Overlay text files"));
+		overlayLoadBox.addChoosableFileFilter(new ExtensionFileFilter(
+			new String[] { OverlayBinaryIO.EXTENSION }, "Overlay binary files"));
 
 		// file chooser for saving overlays
 		overlaySaveBox = new JFileChooser();
 		overlaySaveBox.addChoosableFileFilter(new ExtensionFileFilter(
 			new String[] { "txt" }, "Overlay text files"));
+		overlayBinaryFilter = new ExtensionFileFilter(
+			new String[] { OverlayBinaryIO.EXTENSION }, "Overlay binary files");
+		overlaySaveBox.addChoosableFileFilter(overlayBinaryFilter);
 		overlaySaveBox.setAccessory(new StatsOptionsPane());
 
 		overlayXLSBox = new JFileChooser();
 		overlayXLSBox.addChoosableFileFilter(new ExtensionFileFilter(
 			new String[] { "xls" }, "Overlay spreadsheet files"));
+		overlayCSVFilter = new ExtensionFileFilter(new String[] { "csv" },
+			"Comma-separated overlay files");
+		overlayXLSBox.addChoosableFileFilter(overlayCSVFilter);
+		overlayTSVFilter = new ExtensionFileFilter(new String[] { "tsv" },
+			"Tab-separated overlay files");
+		overlayXLSBox.addChoosableFileFilter(overlayTSVFilter);
 		overlayXLSBox.setAccessory(new StatsOptionsPane());
 
 		// current font text field
@@ -740,9 +768,17 @@ public class OverlayWidget extends JPanel implements ActionListener,
 			if (rval != JFileChooser.APPROVE_OPTION) return;
 			final File file = overlayLoadBox.getSelectedFile();
 			try {
-				final BufferedReader fin = new BufferedReader(new FileReader(file));
-				overlay.loadOverlays(fin);
-				fin.close();
+				if (OverlayBinaryIO.isBinaryFile(file.getName())) {
+					final InputStream fin =
+						new BufferedInputStream(new FileInputStream(file));
+					overlay.loadBinaryOverlays(fin);
+					fin.close();
+				}
+				else {
+					final BufferedReader fin = new BufferedReader(new FileReader(file));
+					overlay.loadOverlays(fin);
+					fin.close();
+				}
 			}
 			catch (final IOException exc) {
 				JOptionPane.showMessageDialog(this, "Error loading overlay file " +
@@ -762,12 +798,25 @@ public class OverlayWidget extends JPanel implements ActionListener,
 
 			final int rval = overlaySaveBox.showSaveDialog(this);
 			if (rval != JFileChooser.APPROVE_OPTION) return;
-			final File file = overlaySaveBox.getSelectedFile();
+			File file = overlaySaveBox.getSelectedFile();
 			statsPane.saveSettings();
+			boolean binary = OverlayBinaryIO.isBinaryFile(file.getName());
+			if (!binary && overlaySaveBox.getFileFilter() == overlayBinaryFilter) {
+				file = new File(file.getPath() + "." + OverlayBinaryIO.EXTENSION);
+				binary = true;
+			}
 			try {
-				final PrintWriter fout = new PrintWriter(new FileWriter(file));
-				overlay.saveOverlays(fout);
-				fout.close();
+				if (binary) {
+					final OutputStream fout =
+						new BufferedOutputStream(new FileOutputStream(file));
+					overlay.saveBinaryOverlays(fout);
+					fout.close();
+				}
+				else {
+					final PrintWriter fout = new PrintWriter(new FileWriter(file));
+					overlay.saveOverlays(fout);
+					fout.close();
+				}
 			}
 			catch (final IOException exc) {
 				JOptionPane.showMessageDialog(this, "Error saving overlay file " +
@@ -787,20 +836,21 @@ public class OverlayWidget extends JPanel implements ActionListener,
 
 			final int rval = overlayXLSBox.showDialog(this, "Export");
 			if (rval != JFileChooser.APPROVE_OPTION) return;
-			final File file = overlayXLSBox.getSelectedFile();
+			File file = overlayXLSBox.getSelectedFile();
 			statsPane.saveSettings();
-			try {
-				final FileOutputStream fout = new FileOutputStream(file);
-				final HSSFWorkbook wb = overlay.exportOverlays();
-				wb.write(fout); // TODO use a task here... this can be slow for
-				// really big overlay sets
-				fout.close();
-				launchSpreadsheet(file);
-			}
-			catch (final IOException exc) {
-				// TODO add error message or something more sophisticated?
-				exc.printStackTrace();
+			char delimiter = OverlayExporter.getDelimiter(file.getName());
+			if (delimiter == 0) {
+				if (overlayXLSBox.getFileFilter() == overlayCSVFilter) {
+					file = new File(file.getPath() + ".csv");
+					delimiter = OverlayExporter.CSV;
+				}
+				else if (overlayXLSBox.getFileFilter() == overlayTSVFilter) {
+					file = new File(file.getPath() + ".tsv");
+					delimiter = OverlayExporter.TSV;
+				}
 			}
+			if (isIntensitySelected()) measureAndExport(file, delimiter);
+			else exportOverlays(file, delimiter);
 		}
 	}
 
@@ -1002,6 +1052,72 @@ public class OverlayWidget extends JPanel implements ActionListener,
 		}
 	}
 
+	/** Gets whether any intensity statistic is selected for export. */
+	protected boolean isIntensitySelected() {
+		final OptionManager om =
+			(OptionManager) VisBioFrame.getVisBio().getManager(OptionManager.class);
+		final String[] statTypes = MeasurementEngine.getStatTypes();
+		for (int i = 0; i < statTypes.length; i++) {
+			final String name = MeasurementEngine.INTENSITY + "." + statTypes[i];
+			if (((BooleanOption) om.getOption(name)).getValue()) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Measures the intensity statistics of the overlays in a background task,
+	 * then exports the overlays to the given file.
+	 */
+	protected void measureAndExport(final File file, final char delimiter) {
+		final TaskManager tm =
+			(TaskManager) VisBioFrame.getVisBio().getManager(TaskManager.class);
+		final BioTask task = tm.createTask("Measure " + overlay.getName());
+		task.setStoppable(true);
+		new Thread("VisBio-MeasureThread-" + overlay.getName()) {
+
+			@Override
+			public void run() {
+				final boolean done = overlay.getMeasurements().measure(task);
+				task.setCompleted();
+				if (!done) return;
+				SwingUtilities.invokeLater(new Runnable() {
+
+					@Override
+					public void run() {
+						exportOverlays(file, delimiter);
+					}
+				});
+			}
+		}.start();
+	}
+
+	/**
+	 * Exports the overlays to the given file, as delimited text with the given
+	 * delimiter, or as an .xls workbook if the delimiter is 0.
+	 */
+	protected void exportOverlays(final File file, final char delimiter) {
+		try {
+			if (delimiter == 0) {
+				final FileOutputStream fout = new FileOutputStream(file);
+				final HSSFWorkbook wb = overlay.exportOverlays();
+				wb.write(fout); // TODO use a task here... this can be slow for
+				// really big overlay sets
+				fout.close();
+			}
+			else {
+				// delimited text is streamed directly from the overlays
+				final Writer fout = new BufferedWriter(new FileWriter(file));
+				overlay.exportOverlays(fout, delimiter);
+				fout.close();
+			}
+			launchSpreadsheet(file);
+		}
+		catch (final IOException exc) {
+			// TODO add error message or something more sophisticated?
+			exc.printStackTrace();
+		}
+	}
+
 	/** Displays an error message. */
 	protected void displayErrorMessage(final String message) {
 		JOptionPane.showMessageDialog(this, message,
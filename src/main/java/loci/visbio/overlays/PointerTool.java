@@ -25,6 +25,7 @@
 package loci.visbio.overlays;
 
 import java.awt.event.InputEvent;
+import java.util.Hashtable;
 import java.util.Vector;
 
 import loci.visbio.data.TransformEvent;
@@ -48,24 +49,23 @@ public class PointerTool extends OverlayTool {
 	/** The selection box which may be created by this tool. */
 	protected TransientSelectBox select;
 
-	/** Array of OverlayObjects at current dimensional position. */
+	/** Array of selected OverlayObjects at time of mouse press. */
 	protected OverlayObject[] objs;
 
-	/**
-	 * Array of the bounds of the OverlayObjects at the current dimensional
-	 * position.
-	 */
-	protected float[][] bounds;
+	/** Spatial index of the OverlayObjects at current dimensional position. */
+	protected OverlayIndex index;
 
-	/** Array of whether objects are selected at time of mouse press. */
-	protected boolean[] selected;
+	/** Objects that were selected at time of mouse press. */
+	protected Hashtable selected;
+
+	/** Objects inside the selection box as of the last mouse drag. */
+	protected Vector inside;
 
 	// -- Constructor --
 
 	/** Constructs an overlay manipulation tool. */
 	public PointerTool(final OverlayTransform overlay) {
 		super(overlay, "Pointer", "Pointer", "pointer.png");
-		bounds = null;
 	}
 
 	// -- OverlayTool API methods --
@@ -80,36 +80,26 @@ public class PointerTool extends OverlayTool {
 
 		final DisplayImpl display = (DisplayImpl) e.getDisplay();
 
-		// pick nearest object
-		objs = overlay.getObjects(pos);
-		bounds = new float[objs.length][4];
-		selected = new boolean[objs.length];
-		grabbed = new Vector(objs.length);
-
-		double dist = Double.POSITIVE_INFINITY;
-		int ndx = -1;
-		for (int i = 0; i < objs.length; i++) {
-			final double d = objs[i].getDistance(dx, dy);
-			if (d < dist) {
-				dist = d;
-				ndx = i;
-			}
-		}
+		// pick nearest object, visiting only those near the mouse, and work with
+		// the selected objects rather than every object at this position
+		index = overlay.getIndex(pos);
+		objs = overlay.getSelectedObjects(pos);
+		selected = new Hashtable();
+		inside = new Vector();
+		grabbed = new Vector();
 
 		// Factor 8.5 obtained through trail and error.
 		final double threshold = 8.5f * OverlayUtil.getMultiplier(display);
+		final OverlayObject nearest = index.getNearest(dx, dy, threshold);
 
-		if (dist < threshold) {
-			if (shift) objs[ndx].setSelected(true);
-			else if (ctrl) {
-				objs[ndx].setSelected(ctrl ? !objs[ndx].isSelected() : true);
-			}
+		if (nearest != null) {
+			if (shift) nearest.setSelected(true);
+			else if (ctrl) nearest.setSelected(!nearest.isSelected());
 			else {
-				if (objs[ndx].isSelected()) {
+				if (nearest.isSelected()) {
 					// grab all selected objects
-					for (int i = 0; i < objs.length; i++) {
-						if (objs[i].isSelected()) grabbed.add(objs[i]);
-					}
+					for (int i = 0; i < objs.length; i++)
+						grabbed.add(objs[i]);
 					// record location of mouseDown
 					grabX = dx;
 					grabY = dy;
@@ -118,7 +108,7 @@ public class PointerTool extends OverlayTool {
 					// select this object and deselect all others
 					for (int i = 0; i < objs.length; i++)
 						objs[i].setSelected(false);
-					objs[ndx].setSelected(true);
+					nearest.setSelected(true);
 				}
 			}
 		}
@@ -129,25 +119,9 @@ public class PointerTool extends OverlayTool {
 					objs[i].setSelected(false);
 			}
 
-			// assemble array of objects' bounding boxes
+			// compile table tracking initial selection state of all objs here
 			for (int i = 0; i < objs.length; i++) {
-				final float[] bound = new float[4];
-				bound[0] = objs[i].getX();
-				bound[1] = objs[i].getY();
-				if (objs[i].hasEndpoint2()) {
-					bound[2] = objs[i].getX2();
-					bound[3] = objs[i].getY2();
-				}
-				else {
-					bound[2] = bound[0];
-					bound[3] = bound[1];
-				}
-				bounds[i] = bound;
-			}
-
-			// compile array tracking initial selection state of all objs here
-			for (int i = 0; i < objs.length; i++) {
-				selected[i] = objs[i].isSelected();
+				if (objs[i].isSelected()) selected.put(objs[i], objs[i]);
 			}
 
 			// instantiate selection box
@@ -203,121 +177,134 @@ public class PointerTool extends OverlayTool {
 			}
 			grabX = dx;
 			grabY = dy;
-			overlay.notifyListeners(new TransformEvent(overlay));
+			overlay.notifyDataChanged(pos);
 		}
 		else if (select != null) {
 			// extend selection box
 			select.setCorner(px, py);
 
-			// *******************************************************
-			// select objects inside the box
-			for (int i = 0; i < bounds.length; i++) {
-				final float bx1, bx2, by1, by2;
-				final float tx1, tx2, ty1, ty2;
-				float ox1, ox2, oy1, oy2;
-
-				// object corners
-				ox1 = bounds[i][0];
-				oy1 = bounds[i][1];
-				ox2 = bounds[i][2];
-				oy2 = bounds[i][3];
-
-				// un-oriented (disoriented?) box coordinates
-				final double[][] c = select.getCornersDomain();
-
-				// selection box corners 'c'
-				/*
-				 * 0----1
-				 * |    |
-				 * |    |
-				 * 3----2
-				 */
-
-				// express object corners in terms of TSB edge vectors
-				// vector between corners 0 and 1
-				final double[] v1 = { c[1][0] - c[0][0], c[1][1] - c[0][1] };
-				// vector between corners 0 and 3
-				final double[] v2 = { c[3][0] - c[0][0], c[3][1] - c[0][1] };
-
-				// iterate through all 4 points of object bounding box
-				// and check whether they're inside selection area
-				boolean inside = true;
-				for (int j = 0; j < bounds[0].length && inside; j++) {
-					final int xndx = j < 2 ? 0 : 2;
-					final int yndx = j % 2 == 0 ? 1 : 3;
-					final double[] p = { bounds[i][xndx], bounds[i][yndx] };
-					// the above three lines iterate through the pairs (0,1),
-					// (0,3), (2,1), (2, 3) of bounds[i] over the
-					// duration of the loop
-
-					final double[] vp = { p[0] - c[0][0], p[1] - c[0][1] }; // vector from
-																																	// c(0)
-					// to p
-
-					// cos of angle btw. vectors v1 and vp
-					final double cos1 =
-						(vp[0] * v1[0] + vp[1] * v1[1]) /
-							(Math.sqrt(vp[0] * vp[0] + vp[1] * vp[1] + v1[0] * v1[0] + v1[1] *
-								v1[1]));
-
-					// cos of angle btw. v2 and vp
-					final double cos2 =
-						(vp[0] * v2[0] + vp[1] * v2[1]) /
-							(Math.sqrt(vp[0] * vp[0] + vp[1] * vp[1] + v2[0] * v2[0] + v2[1] *
-								v2[1]));
-
-					if (cos1 < 0 || cos2 < 0) inside = false;
-					else {
-						// determine projection of point on edge vectors
-						// if projection is longer than either edge vector,
-						// point is outside selection area
-						final double[] proj1 = MathUtil.getProjection(c[0], c[3], p, false);
-						final double[] proj2 = MathUtil.getProjection(c[0], c[1], p, false);
-
-						final double d1 = MathUtil.getDistance(proj1, c[0]);
-						final double d2 = MathUtil.getDistance(proj2, c[0]);
-
-						final double dv1 = MathUtil.getDistance(c[0], c[3]);
-						final double dv2 = MathUtil.getDistance(c[0], c[1]);
+			// select objects inside the box; objects outside it already have the
+			// right selection state unless they were inside after the last drag
+			final double[][] c = select.getCornersDomain();
+			float xmin = Float.POSITIVE_INFINITY, xmax = Float.NEGATIVE_INFINITY;
+			float ymin = Float.POSITIVE_INFINITY, ymax = Float.NEGATIVE_INFINITY;
+			for (int i = 0; i < c.length; i++) {
+				xmin = Math.min(xmin, (float) c[i][0]);
+				xmax = Math.max(xmax, (float) c[i][0]);
+				ymin = Math.min(ymin, (float) c[i][1]);
+				ymax = Math.max(ymax, (float) c[i][1]);
+			}
+			final Vector candidates = index.query(xmin, ymin, xmax, ymax);
+			for (int i = 0; i < inside.size(); i++) {
+				final Object obj = inside.elementAt(i);
+				if (!candidates.contains(obj)) candidates.add(obj);
+			}
+			inside = new Vector();
 
-						if (d1 > dv1 || d2 > dv2) inside = false;
-					}
-				} // end for
+			for (int i = 0; i < candidates.size(); i++) {
+				final OverlayObject obj = (OverlayObject) candidates.elementAt(i);
+				final boolean wasSelected = selected.containsKey(obj);
 
 				// code for dynamic list refresh
-				if (inside) {
+				if (isInside(obj.getBounds(), c)) {
+					inside.add(obj);
 					if (ctrl && !shift) {
-						if (objs[i].isSelected() == selected[i]) {
-							objs[i].setSelected(!selected[i]);
+						if (obj.isSelected() == wasSelected) {
+							obj.setSelected(!wasSelected);
 							selectionStateChanged = true;
 						}
 					}
-					else if (!objs[i].isSelected()) {
-						objs[i].setSelected(true);
+					else if (!obj.isSelected()) {
+						obj.setSelected(true);
 						selectionStateChanged = true;
 					}
 				}
 				else {
 					if (shift || ctrl) {
-						if (objs[i].isSelected() != selected[i]) {
-							objs[i].setSelected(selected[i]);
+						if (obj.isSelected() != wasSelected) {
+							obj.setSelected(wasSelected);
 							selectionStateChanged = true;
 						}
 					}
 					else {
-						if (objs[i].isSelected()) {
-							objs[i].setSelected(false);
+						if (obj.isSelected()) {
+							obj.setSelected(false);
 							selectionStateChanged = true;
 						}
 					}
 				}
-			} // end for
-			// ****************************************************
+			}
 
 			if (selectionStateChanged) ((OverlayWidget) overlay.getControls())
 				.refreshListSelection();
 
-			overlay.notifyListeners(new TransformEvent(overlay));
+			overlay.notifyDataChanged(pos);
 		}
 	}
+
+	// -- Helper methods --
+
+	/**
+	 * Tests whether all four corners of the given bounding box lie within the
+	 * selection box with the given corners.
+	 */
+	protected static boolean isInside(final float[] bounds, final double[][] c)
+	{
+		// selection box corners 'c'
+		/*
+		 * 0----1
+		 * |    |
+		 * |    |
+		 * 3----2
+		 */
+
+		// express object corners in terms of TSB edge vectors
+		// vector between corners 0 and 1
+		final double[] v1 = { c[1][0] - c[0][0], c[1][1] - c[0][1] };
+		// vector between corners 0 and 3
+		final double[] v2 = { c[3][0] - c[0][0], c[3][1] - c[0][1] };
+
+		// iterate through all 4 points of object bounding box
+		// and check whether they're inside selection area
+		for (int j = 0; j < 4; j++) {
+			final int xndx = j < 2 ? 0 : 2;
+			final int yndx = j % 2 == 0 ? 1 : 3;
+			final double[] p = { bounds[xndx], bounds[yndx] };
+			// the above three lines iterate through the pairs (0,1),
+			// (0,3), (2,1), (2, 3) of bounds over the duration of the loop
+
+			// vector from c(0) to p
+			final double[] vp = { p[0] - c[0][0], p[1] - c[0][1] };
+
+			// cos of angle btw. vectors v1 and vp
+			final double cos1 =
+				(vp[0] * v1[0] + vp[1] * v1[1]) /
+					(Math.sqrt(vp[0] * vp[0] + vp[1] * vp[1] + v1[0] * v1[0] + v1[1] *
+						v1[1]));
+
+			// cos of angle btw. v2 and vp
+			final double cos2 =
+				(vp[0] * v2[0] + vp[1] * v2[1]) /
+					(Math.sqrt(vp[0] * vp[0] + vp[1] * vp[1] + v2[0] * v2[0] + v2[1] *
+						v2[1]));
+
+			if (cos1 < 0 || cos2 < 0) return false;
+
+			// determine projection of point on edge vectors
+			// if projection is longer than either edge vector,
+			// point is outside selection area
+			final double[] proj1 = MathUtil.getProjection(c[0], c[3], p, false);
+			final double[] proj2 = MathUtil.getProjection(c[0], c[1], p, false);
+
+			final double d1 = MathUtil.getDistance(proj1, c[0]);
+			final double d2 = MathUtil.getDistance(proj2, c[0]);
+
+			final double dv1 = MathUtil.getDistance(c[0], c[3]);
+			final double dv2 = MathUtil.getDistance(c[0], c[1]);
+
+			if (d1 > dv1 || d2 > dv2) return false;
+		}
+		return true;
+	}
+
 }
@@ -178,7 +178,7 @@ public class PolylineTool extends OverlayTool {
 		}
 		if (mode == ADJUST) {
 			line.setNodeCoords(selectedNode, dx, dy);
-			overlay.notifyListeners(new TransformEvent(overlay));
+			overlay.notifyDataChanged(pos);
 		}
 		else if (mode == SELECTED_TAIL) {
 			mode = ADJUST_TAIL;
@@ -199,7 +199,7 @@ public class PolylineTool extends OverlayTool {
 				line.setHighlightNode(selectedNode);
 				mode = ADJUST_TAIL;
 			}
-			overlay.notifyListeners(new TransformEvent(overlay));
+			overlay.notifyDataChanged(pos);
 		}
 		else if (mode == PLACE || mode == EXTEND || mode == BEGIN_EXTEND ||
 			mode == EXTEND_ON_TAIL)
@@ -277,16 +277,8 @@ public class PolylineTool extends OverlayTool {
 			}
 		}
 		else if (mode == PLACE) {
+			// the line keeps its own curve length up to date
 			line.setNextNode(dx, dy);
-
-			// keep track of curve length
-			// using frequent updates to curvelength in EXTEND, etc. instead
-			final float[] c = line.getNodeCoords(line.getNumNodes() - 2);
-			final double[] cdub = { c[0], c[1] };
-			final double oldLen = line.getCurveLength();
-			line.setCurveLength(oldLen +
-				MathUtil.getDistance(cdub, new double[] { dx, dy }));
-
 			mode = BEGIN_EXTEND;
 		}
 		else if (mode == EXTEND || mode == EXTEND_ON_TAIL) {
@@ -371,7 +363,7 @@ public class PolylineTool extends OverlayTool {
 			}
 		}
 		else if (mode == ADJUST) {}
-		overlay.notifyListeners(new TransformEvent(overlay));
+		overlay.notifyDataChanged(pos);
 	}
 
 	// -- Helper methods --
@@ -390,13 +382,7 @@ public class PolylineTool extends OverlayTool {
 		else {
 			adjust = true;
 		}
-		if (adjust) {
-			final double lastSegLength = pln.getLastSegmentLength();
-			pln.setLastNode(dx, dy);
-			final double newLastSegLength = pln.getLastSegmentLength();
-			final double delta = newLastSegLength - lastSegLength;
-			pln.setCurveLength(line.getCurveLength() + delta);
-		}
+		if (adjust) pln.setLastNode(dx, dy);
 	}
 
 	// TODO -- combine this method with the similar one for freeforms,
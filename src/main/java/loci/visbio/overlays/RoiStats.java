@@ -0,0 +1,165 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.overlays;
+
+/**
+ * Intensity statistics (pixel count, sum, minimum, maximum, mean and standard
+ * deviation) of each range component within an overlay's region.
+ */
+public class RoiStats {
+
+	// -- Fields --
+
+	/** Number of (non-NaN) values of each range component. */
+	protected long[] count;
+
+	/** Sum of the values of each range component. */
+	protected double[] sum;
+
+	/** Minimum and maximum value of each range component. */
+	protected double[] min, max;
+
+	/** Sum of squared deviations from the mean of each range component. */
+	protected double[] deviation;
+
+	/** Overlay geometry count for which these statistics were computed. */
+	protected int geomCount;
+
+	// -- Constructor --
+
+	/** Constructs a set of ROI statistics from the given values. */
+	public RoiStats(final long[] count, final double[] sum, final double[] min,
+		final double[] max, final double[] deviation, final int geomCount)
+	{
+		this.count = count;
+		this.sum = sum;
+		this.min = min;
+		this.max = max;
+		this.deviation = deviation;
+		this.geomCount = geomCount;
+	}
+
+	// -- RoiStats API methods --
+
+	/** Gets the number of range components. */
+	public int getRangeCount() {
+		return count.length;
+	}
+
+	/** Gets the number of values of the given range component. */
+	public long getCount(final int c) {
+		return count[c];
+	}
+
+	/** Gets the sum of the given range component. */
+	public double getSum(final int c) {
+		return sum[c];
+	}
+
+	/** Gets the minimum value of the given range component. */
+	public double getMin(final int c) {
+		return min[c];
+	}
+
+	/** Gets the maximum value of the given range component. */
+	public double getMax(final int c) {
+		return max[c];
+	}
+
+	/** Gets the mean value of the given range component. */
+	public double getMean(final int c) {
+		return count[c] == 0 ? Double.NaN : sum[c] / count[c];
+	}
+
+	/** Gets the (population) standard deviation of the given component. */
+	public double getStdDev(final int c) {
+		return count[c] == 0 ? Double.NaN : Math.sqrt(deviation[c] / count[c]);
+	}
+
+	// -- Utility methods --
+
+	/**
+	 * Computes the statistics of the given samples within the given mask, for
+	 * an overlay with the given geometry count. Samples are indexed by
+	 * range component, then by row-major pixel index within an image of the
+	 * given width.
+	 */
+	public static RoiStats compute(final float[][] samples, final int width,
+		final SpanMask mask, final int geomCount)
+	{
+		final int len = samples.length;
+		final long[] count = new long[len];
+		final double[] sum = new double[len];
+		final double[] min = new double[len];
+		final double[] max = new double[len];
+		final double[] deviation = new double[len];
+		final int spans = mask.getSpanCount();
+		for (int c = 0; c < len; c++) {
+			final float[] s = samples[c];
+
+			// first pass: range and sum
+			float lo = Float.POSITIVE_INFINITY, hi = Float.NEGATIVE_INFINITY;
+			double total = 0;
+			long n = 0;
+			for (int i = 0; i < spans; i++) {
+				final int offset = mask.getRow(i) * width;
+				final int end = offset + mask.getEnd(i);
+				for (int p = offset + mask.getStart(i); p < end; p++) {
+					final float v = s[p];
+					if (v != v) continue; // NaN
+					if (v < lo) lo = v;
+					if (v > hi) hi = v;
+					total += v;
+					n++;
+				}
+			}
+			count[c] = n;
+			sum[c] = total;
+			if (n == 0) {
+				min[c] = max[c] = Double.NaN;
+				continue;
+			}
+			min[c] = lo;
+			max[c] = hi;
+
+			// second pass: squared deviations from the mean
+			final double mean = total / n;
+			double dev = 0;
+			for (int i = 0; i < spans; i++) {
+				final int offset = mask.getRow(i) * width;
+				final int end = offset + mask.getEnd(i);
+				for (int p = offset + mask.getStart(i); p < end; p++) {
+					final float v = s[p];
+					if (v != v) continue;
+					final double d = v - mean;
+					dev += d * d;
+				}
+			}
+			deviation[c] = dev;
+		}
+		return new RoiStats(count, sum, min, max, deviation, geomCount);
+	}
+
+}
@@ -0,0 +1,139 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.overlays;
+
+/**
+ * SegmentLengths holds the lengths of the segments joining consecutive nodes
+ * of a noded object in a Fenwick tree, so that a segment can be appended or
+ * changed, and the length of any leading part of the curve (or of the whole
+ * curve) found, in O(log n) time.
+ */
+public class SegmentLengths {
+
+	// -- Fields --
+
+	/** Length of each segment. */
+	protected double[] seg;
+
+	/** Fenwick tree of segment lengths, indexed from 1. */
+	protected double[] tree;
+
+	/** Number of segments. */
+	protected int size;
+
+	// -- Constructor --
+
+	/** Constructs an empty list with room for the given number of segments. */
+	public SegmentLengths(final int capacity) {
+		seg = new double[Math.max(capacity, 1)];
+		tree = new double[seg.length + 1];
+	}
+
+	// -- SegmentLengths API methods --
+
+	/** Gets the number of segments. */
+	public int size() {
+		return size;
+	}
+
+	/** Gets the length of the given segment. */
+	public double get(final int i) {
+		return seg[i];
+	}
+
+	/** Gets the total length of the first n segments. */
+	public double getPrefix(final int n) {
+		double sum = 0;
+		for (int k = n; k > 0; k -= k & -k)
+			sum += tree[k];
+		return sum;
+	}
+
+	/** Gets the total length of all segments. */
+	public double getTotal() {
+		return getPrefix(size);
+	}
+
+	/** Appends a segment of the given length. */
+	public void add(final double len) {
+		if (size == seg.length) grow(2 * size);
+		seg[size++] = len;
+		// node k covers segments (k - lowbit(k), k]
+		final int k = size;
+		tree[k] = len + getPrefix(k - 1) - getPrefix(k - (k & -k));
+	}
+
+	/** Changes the length of the given segment. */
+	public void set(final int i, final double len) {
+		final double delta = len - seg[i];
+		if (delta == 0) return;
+		seg[i] = len;
+		for (int k = i + 1; k <= size; k += k & -k)
+			tree[k] += delta;
+	}
+
+	/**
+	 * Recomputes all segment lengths from the first numNodes nodes of the given
+	 * node array, in O(n) time.
+	 */
+	public void rebuild(final float[][] nodes, final int numNodes) {
+		final int n = Math.max(numNodes - 1, 0);
+		if (n > seg.length) grow(n);
+		size = n;
+		for (int i = 0; i < n; i++) {
+			seg[i] = distance(nodes, i, i + 1);
+			tree[i + 1] = seg[i];
+		}
+		// fold each entry into its parent to form the Fenwick tree
+		for (int k = 1; k <= n; k++) {
+			final int parent = k + (k & -k);
+			if (parent <= n) tree[parent] += tree[k];
+		}
+	}
+
+	// -- Utility methods --
+
+	/** Computes the distance between two nodes of the given node array. */
+	public static double distance(final float[][] nodes, final int i,
+		final int j)
+	{
+		final double dx = nodes[0][j] - nodes[0][i];
+		final double dy = nodes[1][j] - nodes[1][i];
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	// -- Helper methods --
+
+	/** Enlarges the arrays to hold the given number of segments. */
+	protected void grow(final int capacity) {
+		final double[] s = new double[capacity];
+		System.arraycopy(seg, 0, s, 0, size);
+		seg = s;
+		final double[] t = new double[capacity + 1];
+		System.arraycopy(tree, 0, t, 0, size + 1);
+		tree = t;
+	}
+
+}
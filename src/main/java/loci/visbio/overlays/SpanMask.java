@@ -0,0 +1,253 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.overlays;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A rasterized overlay shape, stored as horizontal spans of the image pixels
+ * whose centers lie inside the shape. Pixel (column, row) of an image of the
+ * given height is centered at domain coordinates (column, height - 1 - row),
+ * matching the layout of image samples, whose first row is the top of the
+ * image.
+ */
+public class SpanMask {
+
+	// -- Fields --
+
+	/** Image row of each span. */
+	protected int[] rows;
+
+	/** First column of each span. */
+	protected int[] starts;
+
+	/** Column just past the end of each span. */
+	protected int[] ends;
+
+	/** Number of spans. */
+	protected int count;
+
+	/** Total number of pixels covered by the spans. */
+	protected long pixels;
+
+	// -- Constructor --
+
+	/** Constructs an empty mask with room for the given number of spans. */
+	public SpanMask(final int capacity) {
+		final int len = Math.max(capacity, 1);
+		rows = new int[len];
+		starts = new int[len];
+		ends = new int[len];
+	}
+
+	// -- SpanMask API methods --
+
+	/** Adds pixels [start, end) of the given row, if nonempty. */
+	public void addSpan(final int row, final int start, final int end) {
+		if (end <= start) return;
+		if (count == rows.length) {
+			final int len = 2 * count;
+			int[] temp = new int[len];
+			System.arraycopy(rows, 0, temp, 0, count);
+			rows = temp;
+			temp = new int[len];
+			System.arraycopy(starts, 0, temp, 0, count);
+			starts = temp;
+			temp = new int[len];
+			System.arraycopy(ends, 0, temp, 0, count);
+			ends = temp;
+		}
+		rows[count] = row;
+		starts[count] = start;
+		ends[count] = end;
+		count++;
+		pixels += end - start;
+	}
+
+	/** Gets the number of spans. */
+	public int getSpanCount() {
+		return count;
+	}
+
+	/** Gets the image row of the given span. */
+	public int getRow(final int i) {
+		return rows[i];
+	}
+
+	/** Gets the first column of the given span. */
+	public int getStart(final int i) {
+		return starts[i];
+	}
+
+	/** Gets the column just past the end of the given span. */
+	public int getEnd(final int i) {
+		return ends[i];
+	}
+
+	/** Gets the total number of pixels in the mask. */
+	public long getPixelCount() {
+		return pixels;
+	}
+
+	// -- Utility methods --
+
+	/**
+	 * Rasterizes the given overlay onto an image of the given size, clipping it
+	 * to the image. Returns null if the overlay does not enclose an area.
+	 */
+	public static SpanMask make(final OverlayObject obj, final int width,
+		final int height)
+	{
+		if (obj instanceof OverlayBox) {
+			return makeBox(obj.x1, obj.y1, obj.x2, obj.y2, width, height);
+		}
+		if (obj instanceof OverlayOval) {
+			return makeOval(obj.x1, obj.y1, obj.x2, obj.y2, width, height);
+		}
+		if (obj instanceof OverlayFreeform) {
+			return makePolygon(((OverlayFreeform) obj).getNodes(), width, height);
+		}
+		return null;
+	}
+
+	/** Rasterizes the axis-aligned rectangle with the given corners. */
+	public static SpanMask makeBox(final float x1, final float y1,
+		final float x2, final float y2, final int width, final int height)
+	{
+		final int c0 = Math.max(0, (int) Math.ceil(Math.min(x1, x2)));
+		final int c1 = Math.min(width - 1, (int) Math.floor(Math.max(x1, x2)));
+		final int ylo = Math.max(0, (int) Math.ceil(Math.min(y1, y2)));
+		final int yhi = Math.min(height - 1, (int) Math.floor(Math.max(y1, y2)));
+		final SpanMask mask = new SpanMask(yhi - ylo + 1);
+		for (int y = yhi; y >= ylo; y--)
+			mask.addSpan(height - 1 - y, c0, c1 + 1);
+		return mask;
+	}
+
+	/** Rasterizes the ellipse inscribed in the rectangle with given corners. */
+	public static SpanMask makeOval(final float x1, final float y1,
+		final float x2, final float y2, final int width, final int height)
+	{
+		final double cx = (x1 + x2) / 2.0, cy = (y1 + y2) / 2.0;
+		final double rx = Math.abs(x2 - x1) / 2.0, ry = Math.abs(y2 - y1) / 2.0;
+		final int ylo = Math.max(0, (int) Math.ceil(cy - ry));
+		final int yhi = Math.min(height - 1, (int) Math.floor(cy + ry));
+		final SpanMask mask = new SpanMask(yhi - ylo + 1);
+		if (ry == 0) return mask;
+		for (int y = yhi; y >= ylo; y--) {
+			final double dy = (y - cy) / ry;
+			final double half = rx * Math.sqrt(Math.max(0, 1 - dy * dy));
+			final int c0 = Math.max(0, (int) Math.ceil(cx - half));
+			final int c1 = Math.min(width - 1, (int) Math.floor(cx + half));
+			mask.addSpan(height - 1 - y, c0, c1 + 1);
+		}
+		return mask;
+	}
+
+	/**
+	 * Rasterizes the closed polygon with the given vertices, using the even-odd
+	 * rule. Edges are visited in order of their lowest point, so that each row
+	 * considers only the edges crossing it.
+	 */
+	public static SpanMask makePolygon(final float[][] nodes, final int width,
+		final int height)
+	{
+		final int n = nodes[0].length;
+		final SpanMask mask = new SpanMask(height);
+		if (n < 3) return mask;
+
+		// collect non-horizontal edges, oriented upward
+		final float[] lo = new float[n], hi = new float[n];
+		final float[] x0 = new float[n], slope = new float[n];
+		int edges = 0;
+		float ymin = Float.POSITIVE_INFINITY, ymax = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			final int j = i == n - 1 ? 0 : i + 1;
+			float xa = nodes[0][i], ya = nodes[1][i];
+			float xb = nodes[0][j], yb = nodes[1][j];
+			if (ya == yb) continue;
+			if (ya > yb) {
+				float t = xa;
+				xa = xb;
+				xb = t;
+				t = ya;
+				ya = yb;
+				yb = t;
+			}
+			lo[edges] = ya;
+			hi[edges] = yb;
+			x0[edges] = xa;
+			slope[edges] = (xb - xa) / (yb - ya);
+			if (ya < ymin) ymin = ya;
+			if (yb > ymax) ymax = yb;
+			edges++;
+		}
+		if (edges == 0) return mask;
+
+		final Integer[] order = new Integer[edges];
+		for (int i = 0; i < edges; i++)
+			order[i] = new Integer(i);
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(final Integer a, final Integer b) {
+				return Float.compare(lo[a.intValue()], lo[b.intValue()]);
+			}
+		});
+
+		// sweep rows from bottom to top, tracking the edges crossing each row
+		final int ylo = Math.max(0, (int) Math.ceil(ymin));
+		final int yhi = Math.min(height - 1, (int) Math.floor(ymax));
+		final int[] active = new int[edges];
+		final float[] xs = new float[edges];
+		int numActive = 0, next = 0;
+		for (int y = ylo; y <= yhi; y++) {
+			// add edges starting at or below this row
+			while (next < edges && lo[order[next].intValue()] <= y) {
+				active[numActive++] = order[next++].intValue();
+			}
+			// drop edges ending at or below this row, and intersect the rest
+			int numXs = 0;
+			for (int a = 0; a < numActive; a++) {
+				final int e = active[a];
+				if (hi[e] <= y) {
+					active[a--] = active[--numActive];
+					continue;
+				}
+				xs[numXs++] = x0[e] + (y - lo[e]) * slope[e];
+			}
+			Arrays.sort(xs, 0, numXs);
+			final int row = height - 1 - y;
+			for (int k = 0; k + 1 < numXs; k += 2) {
+				final int c0 = Math.max(0, (int) Math.ceil(xs[k]));
+				final int c1 = Math.min(width, (int) Math.ceil(xs[k + 1]));
+				mask.addSpan(row, c0, c1);
+			}
+		}
+		return mask;
+	}
+
+}
@@ -81,7 +81,7 @@ public class StatsOptionsPane extends JPanel implements ActionListener {
 		final OptionManager om =
 			(OptionManager) VisBioFrame.getVisBio().getManager(OptionManager.class);
 
-		final String[] overlayTypes = OverlayUtil.getOverlayTypes();
+		final String[] overlayTypes = OverlayUtil.getStatCategories();
 
 		for (int type = 0; type < overlayTypes.length; type++) {
 			final String[] statTypes = OverlayUtil.getStatTypes(overlayTypes[type]);
@@ -99,7 +99,7 @@ public class StatsOptionsPane extends JPanel implements ActionListener {
 	public void loadSettings() {
 		final OptionManager om =
 			(OptionManager) VisBioFrame.getVisBio().getManager(OptionManager.class);
-		final String[] overlayTypes = OverlayUtil.getOverlayTypes();
+		final String[] overlayTypes = OverlayUtil.getStatCategories();
 
 		for (int type = 0; type < overlayTypes.length; type++) {
 			final String[] statTypes = OverlayUtil.getStatTypes(overlayTypes[type]);
@@ -128,7 +128,7 @@ public class StatsOptionsPane extends JPanel implements ActionListener {
 		final OptionManager om =
 			(OptionManager) VisBioFrame.getVisBio().getManager(OptionManager.class);
 
-		final String[] overlayTypes = OverlayUtil.getOverlayTypes();
+		final String[] overlayTypes = OverlayUtil.getStatCategories();
 		checkBoxes = new JCheckBox[overlayTypes.length][];
 
 		// populate checkbox array
@@ -75,7 +75,7 @@ public class TextTool extends OverlayTool {
 	{
 		if (text == null) return;
 		text.setCoords(dx, dy);
-		overlay.notifyListeners(new TransformEvent(overlay));
+		overlay.notifyDataChanged(pos);
 	}
 
 }
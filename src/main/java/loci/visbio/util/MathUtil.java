@@ -226,12 +226,26 @@ public final class MathUtil {
 		final float y)
 	{
 		// assumes a non-ragged array of float[2][numNodes]
+		return getDistSegWt(nodes, nodes[0].length, x, y);
+	}
+
+	/**
+	 * Gets distance to a curve of points connected by straight line segments,
+	 * considering only the first numNodes nodes of the given array, so that a
+	 * partially filled node buffer need not be copied. Returns the same values
+	 * as {@link #getDistSegWt(float[][], float, float)}.
+	 * 
+	 * @param numNodes number of nodes, from the start of the array, to use
+	 * @param x x coordinate of point in question
+	 * @param y y coordinate of point in question
+	 */
+	public static double[] getDistSegWt(final float[][] nodes,
+		final int numNodes, final float x, final float y)
+	{
 		double minDist = Double.MAX_VALUE;
 		int seg = 0;
 		double weight = 0;
 
-		final int numNodes = nodes[0].length;
-
 		// toss out the trivial case
 		if (numNodes == 1) {
 			final double xdist = x - nodes[0][0];
@@ -28,8 +28,10 @@ import java.rmi.RemoteException;
 import java.util.Arrays;
 
 import loci.visbio.VisBioFrame;
+import loci.visbio.data.ContrastEngine;
 import loci.visbio.data.DataTransform;
 import loci.visbio.data.ImageTransform;
+import loci.visbio.data.PlaneStats;
 import loci.visbio.data.ThumbnailHandler;
 import loci.visbio.state.SaveException;
 import loci.visbio.util.ColorUtil;
@@ -89,6 +91,9 @@ public class ColorHandler {
 	/** Red, green and blue components of images. */
 	protected RealType red, green, blue;
 
+	/** Engine for computing percentile-based color ranges. */
+	protected ContrastEngine contrastEngine = new ContrastEngine();
+
 	// -- Fields - initial state --
 
 	/** Minimum and maximum color range values. */
@@ -297,6 +302,35 @@ public class ColorHandler {
 		}
 	}
 
+	/**
+	 * Computes percentile-based color ranges from the transform's plane
+	 * statistics, without touching pixel data.
+	 * 
+	 * @param global Whether to use statistics aggregated across the whole
+	 *          dataset, rather than those of the current position only
+	 * @return an array containing the low and high values for each color
+	 *         mapping (NaN where statistics are unavailable), or null if no
+	 *         statistics are known
+	 */
+	public double[][] getAutoContrast(final boolean global) {
+		final DataTransform trans = link.getTransform();
+		final ThumbnailHandler th = trans.getThumbHandler();
+		if (th == null) return null;
+		final PlaneStats stats =
+			global ? th.getStats() : th.getStats(link.getHandler().getPos(trans));
+		final ScalarMap[] maps = getMaps();
+		if (stats == null || maps == null) return null;
+		final double[][] range = new double[2][maps.length];
+		for (int i = 0; i < maps.length; i++) {
+			final double[] r =
+				contrastEngine.getRange(stats, stats.getIndex(maps[i]
+					.getScalarName()));
+			range[0][i] = r == null ? Double.NaN : r[0];
+			range[1][i] = r == null ? Double.NaN : r[1];
+		}
+		return range;
+	}
+
 	/** Gets brightness value. */
 	public int getBrightness() {
 		return brightness;
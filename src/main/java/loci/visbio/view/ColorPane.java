@@ -57,6 +57,7 @@ import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 
 import loci.formats.gui.ExtensionFileFilter;
+import loci.visbio.data.ContrastEngine;
 import loci.visbio.util.BioComboBox;
 import loci.visbio.util.ColorUtil;
 import loci.visbio.util.DialogPane;
@@ -154,6 +155,12 @@ public class ColorPane extends DialogPane implements ChangeListener,
 	/** Text field for high color scale value. */
 	protected JTextField hiVal;
 
+	/** Popup menu for choosing the extent of automatic contrast. */
+	protected JPopupMenu autoMenu;
+
+	/** Button for setting color ranges from plane statistics. */
+	protected JButton autoContrast;
+
 	/** Button for loading color look-up table. */
 	protected JButton lutLoad;
 
@@ -551,12 +558,17 @@ public class ColorPane extends DialogPane implements ChangeListener,
 		else if (o == lutPresets) {
 			lutsMenu.show(lutPresets, lutPresets.getWidth(), 0);
 		}
+		else if (o == autoContrast) {
+			autoMenu.show(autoContrast, autoContrast.getWidth(), 0);
+		}
 		else {
-			// apply the chosen LUT preset
 			final String cmd = e.getActionCommand();
 			if (cmd != null && cmd.startsWith("lut")) {
+				// apply the chosen LUT preset
 				setWidgetTable(LUTS[Integer.parseInt(cmd.substring(3))]);
 			}
+			else if ("autoPosition".equals(cmd)) doAutoContrast(false);
+			else if ("autoDataset".equals(cmd)) doAutoContrast(true);
 		}
 		super.actionPerformed(e);
 	}
@@ -765,6 +777,24 @@ public class ColorPane extends DialogPane implements ChangeListener,
 		hiVal.getDocument().addDocumentListener(this);
 		hiVal.setToolTipText("Maximum color range value");
 
+		// automatic contrast popup menu
+		autoMenu = new JPopupMenu();
+		final JMenuItem autoPosition = new JMenuItem("Current position");
+		autoPosition.setActionCommand("autoPosition");
+		autoPosition.addActionListener(this);
+		autoMenu.add(autoPosition);
+		final JMenuItem autoDataset = new JMenuItem("Whole dataset");
+		autoDataset.setActionCommand("autoDataset");
+		autoDataset.addActionListener(this);
+		autoMenu.add(autoDataset);
+
+		// automatic contrast button
+		autoContrast = new JButton("Auto >");
+		autoContrast.addActionListener(this);
+		if (!LAFUtil.isMacLookAndFeel()) autoContrast.setMnemonic('m');
+		autoContrast.setToolTipText("Fixes color ranges to saturate " +
+			ContrastEngine.DEFAULT_SATURATION + "% of values");
+
 		// color widget pane
 		widgetPane = new JPanel();
 		widgetPane.setLayout(new BoxLayout(widgetPane, BoxLayout.X_AXIS));
@@ -807,7 +837,8 @@ public class ColorPane extends DialogPane implements ChangeListener,
 		final CellConstraints cc = new CellConstraints();
 		builder.add(FormsUtil.makeRow("Ran&ge component", selector), cc.xy(1, 1));
 		builder.add(FormsUtil
-			.makeRow(new Object[] { fixed, loVal, toLabel, hiVal }), cc.xy(1, 3));
+			.makeRow(new Object[] { fixed, loVal, toLabel, hiVal, autoContrast }),
+			cc.xy(1, 3));
 		builder.add(widgetPane, cc.xy(1, 5, "fill, fill"));
 		builder.add(
 			ButtonBarFactory.buildCenteredBar(lutLoad, lutSave, lutPresets), cc.xy(1,
@@ -861,6 +892,39 @@ public class ColorPane extends DialogPane implements ChangeListener,
 		}
 	}
 
+	/**
+	 * Fixes the preview color ranges at percentile-based values computed from
+	 * plane statistics, for either the current position or the whole dataset.
+	 */
+	protected void doAutoContrast(final boolean global) {
+		if (maps == null) return;
+		final double[][] range = handler.getAutoContrast(global);
+		if (range == null) {
+			JOptionPane.showMessageDialog(dialog,
+				"No statistics are available yet for this data.",
+				"Cannot compute contrast", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		DisplayUtil.setDisplayDisabled(preview, true);
+		for (int i = 0; i < maps.length; i++) {
+			if (Double.isNaN(range[0][i])) continue;
+			ColorUtil.setColorRange(preview, maps[i], range[0][i], range[1][i],
+				true);
+		}
+		DisplayUtil.setDisplayDisabled(preview, false);
+
+		// refresh range components for the selected color table
+		final int ndx = selector.getSelectedIndex();
+		if (ndx >= 0) {
+			ignore = true;
+			fixed.setSelected(!maps[ndx].isAutoScale());
+			final double[] r = maps[ndx].getRange();
+			loVal.setText("" + Convert.shortString(r[0]));
+			hiVal.setText("" + Convert.shortString(r[1]));
+			ignore = false;
+		}
+	}
+
 	/** Updates image color ranges, when settings are adjusted. */
 	protected void doColorRanges() {
 		if (ignore) return;
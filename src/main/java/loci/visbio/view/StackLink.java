@@ -25,12 +25,14 @@
 package loci.visbio.view;
 
 import java.rmi.RemoteException;
+import java.util.Arrays;
 import java.util.Vector;
 
 import loci.visbio.data.DataCache;
 import loci.visbio.data.DataTransform;
 import loci.visbio.data.ImageTransform;
 import loci.visbio.data.ThumbnailHandler;
+import loci.visbio.data.TransformEvent;
 import loci.visbio.state.Dynamic;
 import loci.visbio.state.SaveException;
 import loci.visbio.util.ColorUtil;
@@ -569,6 +571,24 @@ public class StackLink extends TransformLink {
 
 	// -- Internal TransformLink API methods --
 
+	/**
+	 * Gets whether the given event affects the currently displayed data,
+	 * considering every slice along the stack axis.
+	 */
+	@Override
+	protected boolean isAffected(final TransformEvent e) {
+		final int[][] positions = e.getPositions();
+		if (positions == null || stackAxis < 0) return super.isAffected(e);
+		final int[] pos = handler.getPos(trans);
+		for (int i = 0; i < positions.length; i++) {
+			if (positions[i].length != pos.length) return true;
+			final int[] p = positions[i].clone();
+			p[stackAxis] = pos[stackAxis];
+			if (Arrays.equals(p, pos)) return true;
+		}
+		return false;
+	}
+
 	/** Updates the currently displayed data for the given transform. */
 	@Override
 	protected void doTransform() {
@@ -633,18 +653,25 @@ public class StackLink extends TransformLink {
 			if (cachedPos != null && cachedPos.length == pos.length) {
 				for (int i = 0; i < pos.length; i++) {
 					if (cachedPos[i] != pos[i] && i != stackAxis) {
-						// for now, simply dump old full-resolution data
+						// release old full-resolution data (other displays may use it)
 						for (int s = 0; s < len; s++) {
 							if (stackAxis >= 0) cachedPos[stackAxis] = s;
-							cache.dump(trans, cachedPos, null);
+							cache.release(this, trans, cachedPos, null);
 						}
-						// also dump old collapsed image stack
-						cache.dump(trans, cachedPos, "collapse");
+						// also release old collapsed image stack
+						if (stackAxis >= 0) cachedPos[stackAxis] = 0;
+						cache.release(this, trans, cachedPos, "collapse");
 						break;
 					}
 				}
 			}
 			cachedPos = pos;
+			for (int s = 0; s < len; s++) {
+				if (stackAxis >= 0) pos[stackAxis] = s;
+				cache.retain(this, trans, pos, null);
+			}
+			if (stackAxis >= 0) pos[stackAxis] = 0;
+			cache.retain(this, trans, pos, "collapse");
 		}
 
 		// retrieve collapsed image stack from data cache
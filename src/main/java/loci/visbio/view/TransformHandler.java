@@ -40,6 +40,7 @@ import javax.swing.event.ChangeListener;
 
 import loci.visbio.VisBioFrame;
 import loci.visbio.data.DataCache;
+import loci.visbio.data.DataManager;
 import loci.visbio.data.DataTransform;
 import loci.visbio.data.ImageTransform;
 import loci.visbio.state.SaveException;
@@ -82,7 +83,7 @@ public class TransformHandler implements ChangeListener, Runnable, Saveable {
 	/** GUI controls for transform handler. */
 	protected TransformPanel panel;
 
-	/** Cache of full-resolution data in memory. */
+	/** Cache of full-resolution data in memory, shared with other displays. */
 	protected DataCache cache;
 
 	/** Data transform links. */
@@ -122,7 +123,9 @@ public class TransformHandler implements ChangeListener, Runnable, Saveable {
 	/** Creates a display transform handler. */
 	public TransformHandler(final DisplayWindow dw) {
 		window = dw;
-		cache = new DataCache();
+		final DataManager dm =
+			(DataManager) dw.getVisBio().getManager(DataManager.class);
+		cache = dm == null ? new DataCache() : dm.getCache();
 		links = new Vector();
 		sliders = new Vector();
 		sliderPanel = new JPanel();
@@ -146,6 +149,7 @@ public class TransformHandler implements ChangeListener, Runnable, Saveable {
 		if (link != null) {
 			links.remove(link);
 			link.destroy();
+			cache.releaseAll(link);
 		}
 		panel.removeTransform(trans);
 		rebuild(false);
@@ -153,6 +157,8 @@ public class TransformHandler implements ChangeListener, Runnable, Saveable {
 
 	/** Unlinks all data transforms from the display. */
 	public void removeAllTransforms() {
+		for (int i = 0; i < links.size(); i++)
+			cache.releaseAll(links.elementAt(i));
 		links.removeAllElements();
 		panel.removeAllTransforms();
 		rebuild(false);
@@ -29,9 +29,11 @@ import java.rmi.RemoteException;
 import java.util.Vector;
 
 import loci.visbio.VisBioFrame;
+import loci.visbio.data.DataCache;
 import loci.visbio.data.DataManager;
 import loci.visbio.data.DataTransform;
 import loci.visbio.data.ImageTransform;
+import loci.visbio.data.PlaneStats;
 import loci.visbio.data.ThumbnailHandler;
 import loci.visbio.data.TransformEvent;
 import loci.visbio.data.TransformListener;
@@ -453,7 +455,7 @@ public class TransformLink implements DisplayListener, Dynamic, Runnable,
 	public void transformChanged(final TransformEvent e) {
 		final int id = e.getId();
 		if (id == TransformEvent.DATA_CHANGED) {
-			doTransform(TransformHandler.MINIMUM_BURN_DELAY);
+			if (isAffected(e)) doTransform(TransformHandler.MINIMUM_BURN_DELAY);
 		}
 		else if (id == TransformEvent.FONT_CHANGED) {
 			Font font = trans.getFont();
@@ -500,6 +502,11 @@ public class TransformLink implements DisplayListener, Dynamic, Runnable,
 
 	// -- Internal TransformLink API methods --
 
+	/** Gets whether the given event affects the currently displayed data. */
+	protected boolean isAffected(final TransformEvent e) {
+		return e.affects(handler.getPos(trans));
+	}
+
 	/** Updates displayed data based on current dimensional position. */
 	protected void doTransform() {
 		doTransform(handler.getBurnDelay());
@@ -557,18 +564,23 @@ public class TransformLink implements DisplayListener, Dynamic, Runnable,
 		if (thumbs) setData(thumb);
 		else {
 			setMessage("loading full-resolution data");
+			final DataCache cache = handler.getCache();
 			if (!ObjectUtil.arraysEqual(pos, cachedPos)) {
-				// for now, simply dump old full-resolution data
-				handler.getCache().dump(trans, cachedPos, null);
+				// release old full-resolution data, unless another display uses it
+				if (cachedPos != null) cache.release(this, trans, cachedPos, null);
 			}
 			cachedPos = pos;
+			cache.retain(this, trans, pos, null);
 			final Data d =
-				dim == 3 ? trans.getData(this, pos, 3, handler.getCache())
-					: getImageData(pos);
+				dim == 3 ? trans.getData(this, pos, 3, cache) : getImageData(pos);
 			if (th != null && thumb == null) {
 				// fill in missing thumbnail
 				th.setThumb(pos, th.makeThumb(d));
 			}
+			if (th != null && dim == 2 && !th.hasExactStats(pos)) {
+				// record statistics of the full-resolution plane
+				th.setStats(pos, PlaneStats.compute(d));
+			}
 			setMessage("burning in full-resolution data");
 			clearWhenDone = true;
 			setData(d);
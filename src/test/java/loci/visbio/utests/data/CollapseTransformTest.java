@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.utests.data;
+
+import junit.framework.TestCase;
+import loci.visbio.data.CollapseTransform;
+import visad.FlatField;
+import visad.FunctionType;
+import visad.Linear2DSet;
+import visad.RealTupleType;
+import visad.RealType;
+
+/**
+ * Unit tests for sample sharing by CollapseTransform.
+ */
+public class CollapseTransformTest extends TestCase {
+
+	// -- Fields --
+
+	/** Single-component planes to collapse. */
+	protected FlatField[] fields;
+
+	/** Range types of the collapsed field. */
+	protected RealType[] types;
+
+	// -- TestCase API methods --
+
+	/** This method runs before each test. */
+	@Override
+	public void setUp() throws Exception {
+		final RealTupleType domain =
+			new RealTupleType(RealType.getRealType("CollapseTest_X"), RealType
+				.getRealType("CollapseTest_Y"));
+		final Linear2DSet set = new Linear2DSet(domain, 0, 1, 2, 0, 1, 2);
+		fields = new FlatField[3];
+		types = new RealType[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			final RealType range = RealType.getRealType("CollapseTest_V" + i);
+			fields[i] = new FlatField(new FunctionType(domain, range), set);
+			fields[i].setSamples(new float[][] { { i, i + 1, i + 2, i + 3 } },
+				false);
+			types[i] = RealType.getRealType("CollapseTest_C" + i);
+		}
+	}
+
+	// -- CollapseTransform tests --
+
+	/** Tests that collapsed samples are the input planes' arrays, not copies. */
+	public void testSharedSamples() throws Exception {
+		final FlatField collapsed = CollapseTransform.collapse(fields, types);
+		assertNotNull(collapsed);
+		final float[][] samples = collapsed.getFloats(false);
+		assertEquals(fields.length, samples.length);
+		for (int i = 0; i < fields.length; i++) {
+			assertSame(fields[i].getFloats(false)[0], samples[i]);
+		}
+	}
+
+	/** Tests that mismatched range counts are rejected. */
+	public void testRangeMismatch() {
+		final RealType[] fewer = { types[0], types[1] };
+		assertNull(CollapseTransform.collapse(fields, fewer));
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.utests.data;
+
+import junit.framework.TestCase;
+import loci.visbio.data.ContrastEngine;
+import loci.visbio.data.PlaneStats;
+
+/**
+ * Unit tests for the ContrastEngine class.
+ */
+public class ContrastEngineTest extends TestCase {
+
+	// -- Constants --
+
+	/** Tolerance for comparing doubles. */
+	public static final double DELTA = 1e-9;
+
+	/** Range component names. */
+	protected static final String[] NAMES = { "value" };
+
+	// -- Tests --
+
+	/** Tests that no saturation yields the full range. */
+	public void testNoSaturation() {
+		final PlaneStats s = PlaneStats.compute(NAMES, ramp(1000));
+		final double[] r = new ContrastEngine(0).getRange(s, 0);
+		assertEquals(0, r[0], DELTA);
+		assertEquals(999, r[1], DELTA);
+	}
+
+	/** Tests that saturation trims an outlier from each end. */
+	public void testSaturation() {
+		final float[] v = new float[1000];
+		for (int i = 0; i < v.length; i++)
+			v[i] = 100 + i % 100;
+		v[0] = 0;
+		v[1] = 10000;
+		final PlaneStats s = PlaneStats.compute(NAMES, new float[][] { v });
+		final double[] r = new ContrastEngine(1).getRange(s, 0);
+		assertTrue(r[0] >= 50);
+		assertTrue(r[1] <= 300);
+	}
+
+	/** Tests percentiles of a uniform ramp. */
+	public void testPercentile() {
+		final PlaneStats s = PlaneStats.compute(NAMES, ramp(2560));
+		assertEquals(1279.5, ContrastEngine.getPercentile(s, 0, 0.5), 10);
+		assertEquals(255.9, ContrastEngine.getPercentile(s, 0, 0.1), 10);
+		assertNull(new ContrastEngine().getRange(s, -1));
+	}
+
+	// -- Helper methods --
+
+	/** Creates a single component ramp of the given length. */
+	protected static float[][] ramp(final int len) {
+		final float[] v = new float[len];
+		for (int i = 0; i < len; i++)
+			v[i] = i;
+		return new float[][] { v };
+	}
+
+}
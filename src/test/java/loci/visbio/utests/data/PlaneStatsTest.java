@@ -0,0 +1,95 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.utests.data;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+import loci.visbio.data.PlaneStats;
+
+/**
+ * Unit tests for the PlaneStats class.
+ */
+public class PlaneStatsTest extends TestCase {
+
+	// -- Constants --
+
+	/** Tolerance for comparing doubles. */
+	public static final double DELTA = 1e-9;
+
+	/** Range component names. */
+	protected static final String[] NAMES = { "value" };
+
+	// -- Tests --
+
+	/** Tests statistics of a single plane, ignoring NaN values. */
+	public void testCompute() {
+		final float[][] samples = { { 4f, 0f, Float.NaN, 2f, 255f } };
+		final PlaneStats s = PlaneStats.compute(NAMES, samples);
+		assertEquals(0, s.getMin(0), DELTA);
+		assertEquals(255, s.getMax(0), DELTA);
+		assertEquals(261 / 4.0, s.getMean(0), DELTA);
+		assertEquals(4, s.getCount(0));
+		final long[] h = s.getHistogram(0);
+		assertEquals(1, h[0]);
+		assertEquals(1, h[2]);
+		assertEquals(1, h[4]);
+		assertEquals(1, h[PlaneStats.BINS - 1]);
+	}
+
+	/** Tests aggregation of several planes. */
+	public void testMerge() {
+		final PlaneStats a =
+			PlaneStats.compute(NAMES, new float[][] { { 0f, 10f } });
+		final PlaneStats b =
+			PlaneStats.compute(NAMES, new float[][] { { 20f, 255f, 255f } });
+		final PlaneStats m = PlaneStats.merge(new PlaneStats[] { a, null, b });
+		assertEquals(0, m.getMin(0), DELTA);
+		assertEquals(255, m.getMax(0), DELTA);
+		assertEquals(5, m.getCount(0));
+		assertEquals(540 / 5.0, m.getMean(0), DELTA);
+		long total = 0;
+		final long[] h = m.getHistogram(0);
+		for (int i = 0; i < h.length; i++)
+			total += h[i];
+		assertEquals(5, total);
+		assertEquals(2, h[PlaneStats.BINS - 1]);
+		assertNull(PlaneStats.merge(new PlaneStats[2]));
+	}
+
+	/** Tests that statistics survive a round trip through bytes. */
+	public void testBytes() throws IOException {
+		final PlaneStats s =
+			PlaneStats.compute(NAMES, new float[][] { { 1f, 2f, 3f } });
+		final PlaneStats t = PlaneStats.fromBytes(s.toBytes());
+		assertEquals("value", t.getName(0));
+		assertEquals(0, t.getIndex("value"));
+		assertEquals(s.getMin(0), t.getMin(0), DELTA);
+		assertEquals(s.getMax(0), t.getMax(0), DELTA);
+		assertEquals(s.getMean(0), t.getMean(0), DELTA);
+		assertEquals(s.getHistogram(0)[128], t.getHistogram(0)[128]);
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.utests.data;
+
+import junit.framework.TestCase;
+import loci.visbio.data.ProjectionEngine;
+
+/**
+ * Unit tests for the ProjectionEngine class.
+ */
+public class ProjectionEngineTest extends TestCase {
+
+	// -- Constants --
+
+	/** Tolerance for comparing floats. */
+	public static final float DELTA = 1e-5f;
+
+	/** Planes to project, each with one range component of four pixels. */
+	protected static final float[][][] PLANES = {
+		{ { 1f, 5f, Float.NaN, -2f } },
+		{ { 3f, 4f, Float.NaN, -2f } },
+		{ { 2f, 9f, Float.NaN, 7f } },
+		{ { 6f, 1f, Float.NaN, Float.NaN } } };
+
+	// -- Tests --
+
+	/** Tests that every mode is computed correctly from one pass. */
+	public void testAllModes() {
+		final ProjectionEngine engine =
+			new ProjectionEngine(new int[] { ProjectionEngine.MAXIMUM,
+				ProjectionEngine.MINIMUM, ProjectionEngine.SUM,
+				ProjectionEngine.MEAN, ProjectionEngine.STD_DEV,
+				ProjectionEngine.MEDIAN });
+		for (int i = 0; i < PLANES.length; i++)
+			engine.add(PLANES[i]);
+		assertEquals(PLANES.length, engine.getPlaneCount());
+
+		compare(new float[] { 6f, 9f, Float.NaN, 7f },
+			engine.getValues(ProjectionEngine.MAXIMUM)[0]);
+		compare(new float[] { 1f, 1f, Float.NaN, -2f },
+			engine.getValues(ProjectionEngine.MINIMUM)[0]);
+		compare(new float[] { 12f, 19f, 0f, 3f },
+			engine.getValues(ProjectionEngine.SUM)[0]);
+		compare(new float[] { 3f, 4.75f, Float.NaN, 1f },
+			engine.getValues(ProjectionEngine.MEAN)[0]);
+		compare(new float[] { (float) Math.sqrt(14f / 3), (float) Math.sqrt(
+			32.75f / 3), Float.NaN, (float) Math.sqrt(27f) },
+			engine.getValues(ProjectionEngine.STD_DEV)[0]);
+		compare(new float[] { 2.5f, 4.5f, Float.NaN, -2f },
+			engine.getValues(ProjectionEngine.MEDIAN)[0]);
+	}
+
+	/** Tests that an engine only provides the modes it was asked for. */
+	public void testUnrequestedMode() {
+		final ProjectionEngine engine = new ProjectionEngine();
+		engine.add(PLANES[0]);
+		assertNotNull(engine.getValues(ProjectionEngine.MAXIMUM));
+		assertNull(engine.getValues(ProjectionEngine.MEAN));
+	}
+
+	/** Tests that an engine with no planes yields no values. */
+	public void testEmpty() {
+		assertNull(new ProjectionEngine().getValues());
+	}
+
+	/** Tests the working memory estimates of each projection mode. */
+	public void testWorkingPlanes() {
+		assertEquals(1, ProjectionEngine.getWorkingPlanes(
+			new int[] { ProjectionEngine.MAXIMUM }, 10));
+		assertEquals(6, ProjectionEngine.getWorkingPlanes(
+			new int[] { ProjectionEngine.MEAN }, 10));
+		assertEquals(11, ProjectionEngine.getWorkingPlanes(
+			new int[] { ProjectionEngine.MEDIAN }, 10));
+		// moments are accumulated once for all modes derived from them
+		assertEquals(8, ProjectionEngine.getWorkingPlanes(new int[] {
+			ProjectionEngine.MINIMUM, ProjectionEngine.SUM,
+			ProjectionEngine.STD_DEV }, 10));
+	}
+
+	// -- Helper methods --
+
+	private void compare(final float[] expected, final float[] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			if (expected[i] != expected[i]) assertTrue(actual[i] != actual[i]);
+			else assertEquals(expected[i], actual[i], DELTA);
+		}
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.utests.data;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import loci.visbio.data.ProjectionEngine;
+import loci.visbio.data.SlidingWindowEngine;
+
+/**
+ * Unit tests for the SlidingWindowEngine class.
+ */
+public class SlidingWindowEngineTest extends TestCase {
+
+	// -- Constants --
+
+	/** Tolerance for comparing floats. */
+	public static final float DELTA = 1e-4f;
+
+	/** Number of planes to slide through. */
+	protected static final int PLANES = 40;
+
+	/** Number of pixels per plane. */
+	protected static final int PIXELS = 50;
+
+	// -- Tests --
+
+	/** Tests that a sliding maximum matches a full projection of the window. */
+	public void testMaximum() {
+		checkMode(ProjectionEngine.MAXIMUM, 5);
+	}
+
+	/** Tests that a sliding sum matches a full projection of the window. */
+	public void testSum() {
+		checkMode(ProjectionEngine.SUM, 7);
+	}
+
+	/** Tests that a sliding mean matches a full projection of the window. */
+	public void testMean() {
+		checkMode(ProjectionEngine.MEAN, 3);
+	}
+
+	/** Tests a window that holds only a single plane. */
+	public void testSinglePlaneWindow() {
+		checkMode(ProjectionEngine.MAXIMUM, 1);
+	}
+
+	/** Tests a maximum window that is emptied and refilled part way. */
+	public void testMaximumEvict() {
+		final SlidingWindowEngine engine =
+			new SlidingWindowEngine(ProjectionEngine.MAXIMUM, 3);
+		engine.push(new float[][] { { 5, 1 } });
+		engine.push(new float[][] { { 2, Float.NaN } });
+		engine.evict();
+		engine.push(new float[][] { { 1, 4 } });
+		assertEquals(2f, engine.getValues()[0][0], DELTA);
+		assertEquals(4f, engine.getValues()[0][1], DELTA);
+		engine.evict();
+		engine.evict();
+		assertEquals(0, engine.size());
+		assertNull(engine.getValues());
+		engine.push(new float[][] { { 3, Float.NaN } });
+		assertEquals(3f, engine.getValues()[0][0], DELTA);
+		assertTrue(engine.getValues()[0][1] != engine.getValues()[0][1]);
+	}
+
+	/** Tests that unsupported modes are rejected. */
+	public void testUnsupportedMode() {
+		try {
+			new SlidingWindowEngine(ProjectionEngine.MEDIAN, 3);
+			fail("Median mode should be rejected");
+		}
+		catch (final IllegalArgumentException exc) {}
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Slides a window of the given size across random planes, comparing each
+	 * step against a projection computed from scratch.
+	 */
+	private void checkMode(final int mode, final int window) {
+		final Random r = new Random(mode * 31 + window);
+		final float[][][] planes = new float[PLANES][1][PIXELS];
+		for (int p = 0; p < PLANES; p++) {
+			for (int i = 0; i < PIXELS; i++) {
+				planes[p][0][i] = r.nextInt(10) == 0 ? Float.NaN : r.nextInt(20);
+			}
+		}
+		final SlidingWindowEngine engine = new SlidingWindowEngine(mode, window);
+		assertNull(engine.getValues());
+		for (int p = 0; p < PLANES; p++) {
+			engine.push(planes[p]);
+			assertEquals(Math.min(p + 1, window), engine.size());
+
+			final ProjectionEngine full = new ProjectionEngine(mode);
+			for (int q = Math.max(0, p - window + 1); q <= p; q++) {
+				full.add(planes[q]);
+			}
+			final float[] expected = full.getValues(mode)[0];
+			final float[] actual = engine.getValues()[0];
+			for (int i = 0; i < PIXELS; i++) {
+				final String msg = "plane " + p + ", pixel " + i;
+				if (expected[i] != expected[i]) {
+					if (mode == ProjectionEngine.SUM) assertEquals(msg, 0f, actual[i]);
+					else assertTrue(msg, actual[i] != actual[i]);
+				}
+				else assertEquals(msg, expected[i], actual[i], DELTA);
+			}
+		}
+		engine.reset();
+		assertEquals(0, engine.size());
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.utests.data;
+
+import junit.framework.TestCase;
+import loci.visbio.data.SmoothingKernel;
+
+/**
+ * Unit tests for the SmoothingKernel class.
+ */
+public class SmoothingKernelTest extends TestCase {
+
+	// -- Constants --
+
+	/** Tolerance for comparing floats. */
+	public static final float DELTA = 1e-5f;
+
+	/** A 4x3 image with one range component. */
+	protected static final float[][] IMAGE = { {
+		1f, 2f, 3f, 4f,
+		5f, 6f, 7f, 8f,
+		9f, 10f, 11f, 12f } };
+
+	// -- Tests --
+
+	/** Tests smoothing of the whole image at once. */
+	public void testWholeImage() {
+		final float[][] out = new float[1][12];
+		new SmoothingKernel().process(IMAGE, out, 4, 3, 0, 3);
+		// corner: mean of 1, 2, 5, 6
+		assertEquals(3.5f, out[0][0], DELTA);
+		// interior: mean of 1-3, 5-7, 9-11
+		assertEquals(6f, out[0][5], DELTA);
+		// edge: mean of 7, 8, 11, 12 and 3, 4
+		assertEquals(7.5f, out[0][7], DELTA);
+	}
+
+	/** Tests that processing rows separately matches processing them at once. */
+	public void testRowBands() {
+		final SmoothingKernel kernel = new SmoothingKernel();
+		final float[][] whole = new float[1][12];
+		kernel.process(IMAGE, whole, 4, 3, 0, 3);
+		final float[][] bands = new float[1][12];
+		kernel.process(IMAGE, bands, 4, 3, 0, 1);
+		kernel.process(IMAGE, bands, 4, 3, 1, 3);
+		for (int i = 0; i < 12; i++)
+			assertEquals(whole[0][i], bands[0][i], DELTA);
+	}
+
+	/** Tests that the kernel preserves the number of range components. */
+	public void testOutputCount() {
+		assertEquals(3, new SmoothingKernel().getOutputCount(3));
+	}
+
+}
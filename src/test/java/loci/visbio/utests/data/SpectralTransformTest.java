@@ -0,0 +1,121 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.utests.data;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import loci.visbio.data.SpectralTransform;
+
+/**
+ * Unit tests for the blocked SpectralTransform weighted mapping kernel.
+ */
+public class SpectralTransformTest extends TestCase {
+
+	// -- Constants --
+
+	/** Number of pixels, spanning several tiles and a partial block. */
+	private static final int COUNT = 40000 + 123;
+
+	/** Tolerance for floating point comparisons. */
+	private static final float DELTA = 1e-4f;
+
+	/** Weights of each input channel, for each output channel. */
+	private static final double[][] WEIGHTS = { { 1, 0.5, 0, 0.25 },
+		{ 0, 0, 1, 0 }, { 0.1, 0.2, 0.3, 0.4 } };
+
+	// -- Fields --
+
+	/** Input samples, indexed by [channel][pixel]. */
+	protected float[][] samples;
+
+	// -- TestCase API methods --
+
+	/** This method runs before each test. */
+	@Override
+	public void setUp() {
+		final Random r = new Random(31);
+		samples = new float[WEIGHTS[0].length][COUNT];
+		for (int w = 0; w < samples.length; w++) {
+			for (int c = 0; c < COUNT; c++)
+				samples[w][c] = 255 * r.nextFloat();
+		}
+	}
+
+	// -- SpectralTransform tests --
+
+	/** Tests that the blocked kernel matches the per-pixel computation. */
+	public void testMatchesScalar() {
+		compare(scalar(samples, WEIGHTS), SpectralTransform.mapSamples(samples,
+			WEIGHTS));
+	}
+
+	/** Tests that a NaN sample yields NaN, even in a channel of zero weight. */
+	public void testNaN() {
+		samples[2][7] = Float.NaN; // zero weight in the first output
+		samples[0][COUNT - 1] = Float.NaN; // zero weight in the second output
+		final float[][] expected = scalar(samples, WEIGHTS);
+		final float[][] actual = SpectralTransform.mapSamples(samples, WEIGHTS);
+		for (int r = 0; r < WEIGHTS.length; r++) {
+			assertTrue(Float.isNaN(expected[r][7]));
+			assertTrue(Float.isNaN(actual[r][7]));
+		}
+		assertTrue(Float.isNaN(actual[1][COUNT - 1]));
+		compare(expected, actual);
+	}
+
+	// -- Helper methods --
+
+	/** Computes the weighted mapping one pixel at a time. */
+	private static float[][] scalar(final float[][] samples,
+		final double[][] weights)
+	{
+		final int count = samples[0].length;
+		final float[][] nsamps = new float[weights.length][count];
+		for (int r = 0; r < weights.length; r++) {
+			final int wlen = weights[r].length;
+			for (int c = 0; c < count; c++) {
+				float sum = 0;
+				for (int w = 0; w < wlen; w++)
+					sum += weights[r][w] * samples[w][c];
+				nsamps[r][c] = sum / wlen;
+			}
+		}
+		return nsamps;
+	}
+
+	private void compare(final float[][] expected, final float[][] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int r = 0; r < expected.length; r++) {
+			assertEquals(expected[r].length, actual[r].length);
+			for (int c = 0; c < expected[r].length; c++) {
+				final float e = expected[r][c];
+				if (e != e) assertTrue(actual[r][c] != actual[r][c]);
+				else assertEquals(e, actual[r][c], DELTA);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.utests.data;
+
+import java.util.Vector;
+
+import junit.framework.TestCase;
+import loci.visbio.data.DataTransform;
+import loci.visbio.data.TransformEvent;
+import loci.visbio.data.TransformListener;
+import loci.visbio.utests.overlays.DummyImageTransform;
+
+/**
+ * Unit tests for coalesced TransformEvent notifications.
+ */
+public class TransformEventTest extends TestCase {
+
+	// -- Fields --
+
+	/** Transform under test. */
+	protected DataTransform trans;
+
+	/** Events received by the test listener. */
+	protected Vector events;
+
+	// -- TestCase API methods --
+
+	/** This method runs before each test. */
+	@Override
+	public void setUp() {
+		trans = new DummyImageTransform(null, "image");
+		events = new Vector();
+		trans.addTransformListener(new TransformListener() {
+
+			@Override
+			public void transformChanged(final TransformEvent e) {
+				events.add(e);
+			}
+		});
+	}
+
+	// -- Tests --
+
+	/** Tests that an event without positions affects every position. */
+	public void testAffectsAll() {
+		final TransformEvent e = new TransformEvent(trans);
+		assertNull(e.getPositions());
+		assertTrue(e.affects(new int[] { 3, 1 }));
+	}
+
+	/** Tests that an event with positions affects only those positions. */
+	public void testAffectsPositions() {
+		final TransformEvent e =
+			new TransformEvent(trans, TransformEvent.DATA_CHANGED, new int[][] {
+				{ 0, 1 }, { 2, 3 } });
+		assertTrue(e.affects(new int[] { 2, 3 }));
+		assertFalse(e.affects(new int[] { 1, 0 }));
+	}
+
+	/** Tests that a burst of changes is delivered as a single event. */
+	public void testCoalesce() {
+		final int version = trans.getVersion();
+		trans.notifyDataChanged(new int[] { 0, 1 });
+		trans.notifyDataChanged(new int[] { 0, 1 });
+		trans.notifyDataChanged(new int[] { 2, 3 });
+		assertTrue(trans.getVersion() > version);
+		trans.flushDataChanged();
+		trans.flushDataChanged();
+		assertEquals(1, events.size());
+		final TransformEvent e = (TransformEvent) events.elementAt(0);
+		assertEquals(TransformEvent.DATA_CHANGED, e.getId());
+		assertEquals(2, e.getPositions().length);
+	}
+
+	/** Tests that an immediate notification supersedes pending changes. */
+	public void testSupersede() {
+		trans.notifyDataChanged(new int[] { 0, 1 });
+		trans.notifyListeners(new TransformEvent(trans));
+		trans.flushDataChanged();
+		assertEquals(1, events.size());
+		assertNull(((TransformEvent) events.elementAt(0)).getPositions());
+	}
+
+}
@@ -125,4 +125,10 @@ public class DummyImageTransform extends ImageTransform {
 		return new int[] { 1 };
 	}
 
+	/** Return a fake dimensional axis types array. */
+	@Override
+	public String[] getDimTypes() {
+		return new String[] { "Time" };
+	}
+
 }
@@ -24,11 +24,10 @@
 
 package loci.visbio.utests.overlays;
 
-import java.util.Vector;
-
 import loci.formats.FormatTools;
 import loci.visbio.data.DataTransform;
 import loci.visbio.data.TransformListener;
+import loci.visbio.overlays.OverlayStore;
 import loci.visbio.overlays.OverlayTransform;
 import loci.visbio.state.Dynamic;
 
@@ -75,9 +74,8 @@ public class DummyOverlayTransform extends OverlayTransform implements
 		makeLabels();
 
 		final int len = FormatTools.getRasterLength(lengths);
-		final Vector[] v = new Vector[len];
-		int minLen = 0;
-		if (overlays != null) {
+		if (overlays == null) overlays = new OverlayStore(len);
+		else {
 			// CTR - This logic is simplistic and will result in erroneous behavior
 			// should a transform with multiple dimensional axes suffer a length
 			// alteration along its axes. That is, the rasterization will probably be
@@ -89,12 +87,8 @@ public class DummyOverlayTransform extends OverlayTransform implements
 			// new lengths arrays, and act appropriately, but for now we simply
 			// preserve as many overlays as possible. If the dimensional axes have
 			// been significantly altered, too bad.
-			minLen = overlays.length < len ? overlays.length : len;
-			System.arraycopy(overlays, 0, v, 0, minLen);
+			overlays.setLength(len);
 		}
-		for (int i = minLen; i < len; i++)
-			v[i] = new Vector();
-		overlays = v;
 		pos = new int[lengths.length];
 
 		// controls = new OverlayWidget(this);
@@ -102,4 +96,15 @@ public class DummyOverlayTransform extends OverlayTransform implements
 		controls = null;
 		fontMetrics = null;
 	}
+
+	/** Replaces the overlays without refreshing the nonexistent controls. */
+	@Override
+	protected void setOverlays(final OverlayStore loadedOverlays) {
+		if (loadedOverlays != null) overlays = loadedOverlays;
+	}
+
+	/** Gets the overlays, for inspection by tests. */
+	public OverlayStore getOverlays() {
+		return overlays;
+	}
 }
@@ -0,0 +1,126 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.utests.overlays;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+
+import junit.framework.TestCase;
+import loci.visbio.overlays.MeasurementEngine;
+import loci.visbio.overlays.OverlayBox;
+import loci.visbio.overlays.OverlayObject;
+import loci.visbio.overlays.RoiStats;
+
+/**
+ * Tests measurement of overlay intensity statistics, and which overlay changes
+ * make those statistics stale.
+ */
+public class MeasurementEngineTest extends TestCase {
+
+	/** Width and height of the test image. */
+	protected static final int SIZE = 10;
+
+	/** Overlay transform holding the test overlay. */
+	protected DummyOverlayTransform ot;
+
+	/** Engine under test. */
+	protected MeasurementEngine engine;
+
+	/** Test overlay. */
+	protected OverlayObject box;
+
+	/** This method runs before each test. */
+	@Override
+	public void setUp() {
+		final DummyImageTransform it = new DummyImageTransform(null, "image") {
+
+			@Override
+			public int getImageWidth() {
+				return SIZE;
+			}
+
+			@Override
+			public int getImageHeight() {
+				return SIZE;
+			}
+
+			@Override
+			public int getRangeCount() {
+				return 1;
+			}
+
+			/** Returns an image whose pixels hold their column index. */
+			@Override
+			public BufferedImage getImage(final int[] pos) {
+				final BufferedImage img =
+					new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_BYTE_GRAY);
+				final WritableRaster r = img.getRaster();
+				for (int y = 0; y < SIZE; y++) {
+					for (int x = 0; x < SIZE; x++)
+						r.setSample(x, y, 0, x);
+				}
+				return img;
+			}
+		};
+		ot = new DummyOverlayTransform(it, "Howdy");
+		box = new OverlayBox(ot, 2f, 0f, 4f, 1f);
+		ot.getOverlays().add(0, box);
+		engine = new MeasurementEngine(ot);
+	}
+
+	/** Tests measuring an overlay. */
+	public void testMeasure() {
+		assertNull(engine.getStats(box));
+		assertTrue(engine.measure(null));
+		final RoiStats stats = engine.getStats(box);
+		assertNotNull(stats);
+		assertEquals(6, stats.getCount(0));
+		assertEquals(3, stats.getMean(0), 0);
+		assertEquals("4.0", engine.getStat(box, "Max", 0));
+	}
+
+	/** Tests that changes to an overlay's appearance keep its statistics. */
+	public void testAppearance() {
+		engine.measure(null);
+		final RoiStats stats = engine.getStats(box);
+		box.setSelected(true);
+		box.setColor(Color.red);
+		box.setFilled(true);
+		box.setGroup("group");
+		assertSame(stats, engine.getStats(box));
+	}
+
+	/** Tests that moving an overlay makes its statistics stale. */
+	public void testMove() {
+		engine.measure(null);
+		box.setCoords(5f, 0f);
+		box.setCoords2(7f, 1f);
+		assertNull(engine.getStats(box));
+		engine.measure(null);
+		assertEquals(6, engine.getStats(box).getMean(0), 0);
+	}
+
+}
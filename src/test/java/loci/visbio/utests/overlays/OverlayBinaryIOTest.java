@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.utests.overlays;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+import loci.visbio.overlays.OverlayBinaryIO;
+import loci.visbio.overlays.OverlayBox;
+import loci.visbio.overlays.OverlayNodedObject;
+import loci.visbio.overlays.OverlayObject;
+import loci.visbio.overlays.OverlayPolyline;
+import loci.visbio.overlays.OverlayStore;
+
+/**
+ * Tests saving and loading overlays in the binary overlay format.
+ */
+public class OverlayBinaryIOTest extends TestCase {
+
+	/** Overlay transform whose overlays are saved. */
+	protected DummyOverlayTransform ot;
+
+	/** This method runs before each test. */
+	@Override
+	public void setUp() {
+		final DummyImageTransform it = new DummyImageTransform(null, "image");
+		ot = new DummyOverlayTransform(it, "Howdy");
+		final OverlayStore store = new OverlayStore(1);
+		final OverlayBox box = new OverlayBox(ot, 1f, 2f, 30f, 40f);
+		box.setColor(new Color(10, 20, 30));
+		box.setFilled(true);
+		box.setGroup("cells");
+		box.setNotes("notes \u00e9");
+		store.add(0, box);
+		store.add(0, new OverlayPolyline(ot, new float[][] { { 0f, 5.5f, 9f },
+			{ 1f, 2.25f, -3f } }));
+		ot.setOverlays(store);
+	}
+
+	/** Tests that overlays survive a save and load unchanged. */
+	public void testRoundTrip() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ot.saveBinaryOverlays(out);
+		final DummyOverlayTransform loaded =
+			new DummyOverlayTransform(ot.getParent(), "Loaded");
+		loaded.loadBinaryOverlays(new ByteArrayInputStream(out.toByteArray()));
+		final Vector objs = loaded.getOverlays().get(0);
+		assertEquals(2, objs.size());
+
+		final OverlayObject box = (OverlayObject) objs.elementAt(0);
+		assertTrue(box instanceof OverlayBox);
+		assertEquals(1f, box.getX(), 0f);
+		assertEquals(30f, box.getX2(), 0f);
+		assertEquals(new Color(10, 20, 30), box.getColor());
+		assertEquals("cells", box.getGroup());
+		assertEquals("notes \u00e9", box.getNotes());
+
+		final OverlayNodedObject line = (OverlayNodedObject) objs.elementAt(1);
+		final float[][] nodes = line.getNodes();
+		assertEquals(3, nodes[0].length);
+		assertEquals(5.5f, nodes[0][1], 0f);
+		assertEquals(-3f, nodes[1][2], 0f);
+	}
+
+	/** Tests reading a single position through the offset index. */
+	public void testRandomAccess() throws IOException {
+		final File file = File.createTempFile("overlays", ".vbo");
+		file.deleteOnExit();
+		final FileOutputStream out = new FileOutputStream(file);
+		ot.saveBinaryOverlays(out);
+		out.close();
+		final RandomAccessFile in = new RandomAccessFile(file, "r");
+		final OverlayObject[] objs =
+			OverlayBinaryIO.loadOverlays(in, ot, new int[] { 0 });
+		in.close();
+		assertEquals(2, objs.length);
+		assertTrue(objs[1] instanceof OverlayPolyline);
+	}
+
+	/** Tests that a missing color is not confused with transparent black. */
+	public void testNullColor() throws IOException {
+		final OverlayStore store = new OverlayStore(1);
+		final OverlayBox none = new OverlayBox(ot, 0f, 0f, 1f, 1f);
+		none.setColor(null);
+		store.add(0, none);
+		final OverlayBox black = new OverlayBox(ot, 0f, 0f, 1f, 1f);
+		black.setColor(new Color(0, 0, 0, 0));
+		store.add(0, black);
+		ot.setOverlays(store);
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ot.saveBinaryOverlays(out);
+		final DummyOverlayTransform loaded =
+			new DummyOverlayTransform(ot.getParent(), "Loaded");
+		loaded.loadBinaryOverlays(new ByteArrayInputStream(out.toByteArray()));
+		final Vector objs = loaded.getOverlays().get(0);
+		assertEquals(2, objs.size());
+		assertNull(((OverlayObject) objs.elementAt(0)).getColor());
+		assertEquals(new Color(0, 0, 0, 0), ((OverlayObject) objs.elementAt(1))
+			.getColor());
+	}
+
+	/** Tests that files in other formats are rejected. */
+	public void testBadMagic() {
+		final byte[] bytes = "Overlay\tTime (1)\tx1\n".getBytes();
+		try {
+			OverlayBinaryIO.loadOverlays(new ByteArrayInputStream(bytes), ot);
+			fail("Expected IOException");
+		}
+		catch (final IOException exc) {}
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.utests.overlays;
+
+import java.util.Vector;
+
+import junit.framework.TestCase;
+import loci.visbio.overlays.OverlayFreeform;
+import loci.visbio.overlays.OverlayIndex;
+import loci.visbio.overlays.OverlayMarker;
+import loci.visbio.overlays.OverlayObject;
+import loci.visbio.overlays.OverlayTransform;
+
+/**
+ * Tests the OverlayIndex spatial grid.
+ */
+public class OverlayIndexTest extends TestCase {
+
+	/** Overlay transform for test overlays. */
+	protected OverlayTransform ot;
+
+	/** Test overlays. */
+	protected OverlayObject near, far, big;
+
+	/** Index under test. */
+	protected OverlayIndex index;
+
+	/** This method runs before each test. */
+	@Override
+	public void setUp() {
+		final DummyImageTransform it = new DummyImageTransform(null, "image");
+		ot = new DummyOverlayTransform(it, "Howdy");
+		near = new OverlayMarker(ot, 10f, 10f);
+		far = new OverlayFreeform(ot, new float[][] { { 500f, 520f, 540f },
+			{ 500f, 510f, 500f } });
+		big =
+			new OverlayFreeform(ot, new float[][] { { 0f, 5000f }, { 0f, 5000f } });
+		index = new OverlayIndex(16);
+		index.add(near);
+		index.add(far);
+		index.add(big);
+	}
+
+	/** Tests rectangle queries. */
+	public void testQuery() {
+		final Vector v = index.query(0, 0, 20, 20);
+		assertTrue(v.contains(near));
+		assertTrue(v.contains(big));
+		assertFalse(v.contains(far));
+		assertEquals(3, index.query(-1, -1, 6000, 6000).size());
+	}
+
+	/** Tests nearest object queries. */
+	public void testNearest() {
+		assertSame(near, index.getNearest(11f, 11f, 5));
+		assertSame(far, index.getNearest(520f, 512f, 5));
+		assertNull(index.getNearest(300f, 100f, 5));
+	}
+
+	/** Tests that moved and removed objects are rebinned on synchronization. */
+	public void testSync() {
+		near.setCoords(1000f, 1000f);
+		final Vector objs = new Vector();
+		objs.add(near);
+		objs.add(big);
+		index.sync(objs);
+		assertEquals(2, index.size());
+		assertFalse(index.query(0, 0, 20, 20).contains(near));
+		assertTrue(index.query(990, 990, 1010, 1010).contains(near));
+		assertTrue(index.query(500, 500, 540, 510).contains(big));
+		assertFalse(index.query(500, 500, 540, 510).contains(far));
+	}
+
+	/** Tests that only objects marked as moved are rebinned on a flush. */
+	public void testMoved() {
+		near.setCoords(1000f, 1000f);
+		far.setCoords(2000f, 2000f);
+		index.markMoved(near);
+		index.flush();
+		assertTrue(index.query(990, 990, 1010, 1010).contains(near));
+		assertFalse(index.query(0, 0, 20, 20).contains(near));
+		assertTrue(index.query(500, 500, 540, 510).contains(far));
+		index.markMoved(far);
+		index.flush();
+		assertFalse(index.query(500, 500, 540, 510).contains(far));
+		assertEquals(3, index.size());
+	}
+
+	/** Tests tracking of the selected objects. */
+	public void testSelection() {
+		assertTrue(index.getSelected().isEmpty());
+		near.setSelected(true);
+		index.updateSelection(near);
+		far.setSelected(true);
+		index.updateSelection(far);
+		assertEquals(2, index.getSelected().size());
+		far.setSelected(false);
+		index.updateSelection(far);
+		assertEquals(1, index.getSelected().size());
+		assertTrue(index.getSelected().contains(near));
+		index.remove(near);
+		assertTrue(index.getSelected().isEmpty());
+	}
+
+}
@@ -0,0 +1,214 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.utests.overlays;
+
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+import loci.visbio.overlays.OverlayBox;
+import loci.visbio.overlays.OverlayLoader;
+import loci.visbio.overlays.OverlayNodedObject;
+import loci.visbio.overlays.OverlayObject;
+import loci.visbio.overlays.OverlayPolyline;
+import loci.visbio.overlays.OverlayStore;
+import loci.visbio.overlays.OverlayTransform;
+
+/**
+ * Tests reading overlays from the tab-delimited text format.
+ */
+public class OverlayLoaderTest extends TestCase {
+
+	/** Header of the overlay table for the dummy transform. */
+	private static final String TABLE_HEADER =
+		"Overlay\tTime (1)\tx1\ty1\tx2\ty2\ttext\tcolor\tfilled\tgroup\tnotes";
+
+	/** A valid row of the overlay table for the dummy transform. */
+	private static final String BOX_ROW =
+		"Box\t1\t1.0\t2.0\t3.0\t4.0\tN/A\tff0000\ttrue\tNone\t";
+
+	/** Overlay transform into which overlays are loaded. */
+	protected DummyOverlayTransform ot;
+
+	/** This method runs before each test. */
+	@Override
+	public void setUp() {
+		final DummyImageTransform it = new DummyImageTransform(null, "image");
+		ot = new DummyOverlayTransform(it, "Howdy");
+	}
+
+	/** Tests that overlays written by OverlayIO.saveOverlays load unchanged. */
+	public void testRoundTrip() throws IOException {
+		final OverlayStore store = new OverlayStore(1);
+		final OverlayBox box = new OverlayBox(ot, 1.5f, -2.25f, 30f, 40.125f);
+		box.setColor(new Color(10, 20, 30));
+		box.setFilled(true);
+		box.setGroup("cells");
+		box.setNotes("notes");
+		store.add(0, box);
+		store.add(0, new OverlayPolyline(ot, new float[][] {
+			{ 0f, 5.5f, 1234567.5f }, { 1f, -0.1f, 0.015625f } }));
+		ot.setOverlays(store);
+
+		final StringWriter text = new StringWriter();
+		final PrintWriter out = new PrintWriter(text);
+		ot.saveOverlays(out);
+		out.close();
+
+		final TestLoader loader = new TestLoader(ot);
+		final OverlayStore loaded = loader.load(read(text.toString()));
+		assertNull(loader.error, loader.error);
+		assertNotNull(loaded);
+		final Vector objs = loaded.get(0);
+		assertEquals(2, objs.size());
+
+		final OverlayObject b = (OverlayObject) objs.elementAt(0);
+		assertTrue(b instanceof OverlayBox);
+		assertEquals(1.5f, b.getX(), 0f);
+		assertEquals(-2.25f, b.getY(), 0f);
+		assertEquals(30f, b.getX2(), 0f);
+		assertEquals(40.125f, b.getY2(), 0f);
+		assertEquals(new Color(10, 20, 30), b.getColor());
+		assertTrue(b.isFilled());
+		assertEquals("cells", b.getGroup());
+		assertEquals("notes", b.getNotes());
+
+		final OverlayObject p = (OverlayObject) objs.elementAt(1);
+		assertTrue(p instanceof OverlayPolyline);
+		final float[][] nodes = ((OverlayNodedObject) p).getNodes();
+		assertEquals(3, nodes[0].length);
+		assertEquals(5.5f, nodes[0][1], 0f);
+		assertEquals(1234567.5f, nodes[0][2], 0f);
+		assertEquals(-0.1f, nodes[1][1], 0f);
+		assertEquals(0.015625f, nodes[1][2], 0f);
+	}
+
+	/** Tests that parseDecimal matches Float.parseFloat on edge values. */
+	public void testParseDecimal() {
+		final String[] values =
+			{ "0.0", "-0.0", "1.5", "-7.125", "0.1", "16777215.5", "16777216.5",
+				"123456789.75", "0.12345678901", "3.14159265358979323846",
+				"99999999999999999999.9", "0.0000000001", "-0.00000000001" };
+		for (int i = 0; i < values.length; i++) {
+			assertSameFloat(values[i], Float.parseFloat(values[i]), TestLoader
+				.decimal(values[i]));
+		}
+
+		final Random r = new Random(45);
+		for (int i = 0; i < 10000; i++) {
+			// random digits with 1 to 11 of them after the decimal point
+			final int scale = 1 + r.nextInt(11);
+			final long pow = (long) Math.pow(10, scale);
+			final long mantissa = (r.nextLong() >>> 1) >>> r.nextInt(63);
+			final StringBuffer sb = new StringBuffer();
+			if (r.nextBoolean()) sb.append("-");
+			sb.append(mantissa / pow + ".");
+			final String frac = "" + mantissa % pow;
+			for (int z = frac.length(); z < scale; z++)
+				sb.append("0");
+			sb.append(frac);
+			final String s = sb.toString();
+			assertSameFloat(s, Float.parseFloat(s), TestLoader.decimal(s));
+		}
+
+		// forms other than -?[0-9]+\.[0-9]+ are left to the caller
+		assertTrue(Float.isNaN(TestLoader.decimal("1")));
+		assertTrue(Float.isNaN(TestLoader.decimal("1.")));
+		assertTrue(Float.isNaN(TestLoader.decimal(".5")));
+		assertTrue(Float.isNaN(TestLoader.decimal("1.5e3")));
+		assertTrue(Float.isNaN(TestLoader.decimal("1.2.3")));
+	}
+
+	/** Tests that errors past the first batch report the right line number. */
+	public void testErrorLineAcrossBatches() throws IOException {
+		final StringBuffer sb = new StringBuffer();
+		sb.append("# overlay file\n\n"); // lines 1-2
+		sb.append(TABLE_HEADER + "\n"); // line 3
+		int line = 3;
+		for (int i = 0; i < OverlayLoader.BATCH_SIZE + 10; i++) {
+			sb.append(BOX_ROW + "\n");
+			line++;
+			if (i % 1000 == 0) {
+				// ignored lines still count toward the line number
+				sb.append("\n# comment\n");
+				line += 2;
+			}
+		}
+		sb.append("Box\t1\tabc\t2.0\t3.0\t4.0\tN/A\tff0000\ttrue\tNone\t\n");
+		line++;
+		sb.append(BOX_ROW + "\n");
+
+		final TestLoader loader = new TestLoader(ot);
+		assertNull(loader.load(read(sb.toString())));
+		assertEquals("line has invalid coordinate values", loader.error);
+		assertEquals(line, loader.errorLine);
+	}
+
+	// -- Helper methods --
+
+	private static BufferedReader read(final String s) {
+		return new BufferedReader(new StringReader(s));
+	}
+
+	private static void assertSameFloat(final String s, final float expected,
+		final float actual)
+	{
+		assertEquals(s, Float.floatToIntBits(expected), Float
+			.floatToIntBits(actual));
+	}
+
+	// -- Helper classes --
+
+	/** Loader recording its error instead of displaying it. */
+	private static class TestLoader extends OverlayLoader {
+
+		private String error;
+		private int errorLine;
+
+		public TestLoader(final OverlayTransform trans) {
+			super(trans);
+		}
+
+		@Override
+		protected void showError(final int line, final String msg) {
+			if (error != null) return;
+			error = msg;
+			errorLine = line;
+		}
+
+		/** Parses the given string with OverlayLoader.parseDecimal. */
+		public static float decimal(final String s) {
+			return parseDecimal(s, 0, s.length());
+		}
+
+	}
+
+}
@@ -270,6 +270,76 @@ public class OverlayNodedObjectTest extends TestCase {
 		compareNodes(nodesExpected, nodes3);
 	}
 
+	// -- Length and bounds tests --
+
+	/** Tests that appending nodes keeps the curve length and bounds current. */
+	public void testAppendLength() {
+		f.setNextNode(2f, 3f);
+		f.setNextNode(-2f, 3f);
+		assertEquals(9.0, f.getCurveLength(), 1e-6);
+		assertEquals(4.0, f.getLastSegmentLength(), 1e-6);
+		assertEquals(-2f, f.getX(), DELTA);
+		assertEquals(3f, f.getY2(), DELTA);
+	}
+
+	/** Tests that moving, inserting and deleting nodes update the length. */
+	public void testEditLength() {
+		f.setNodeCoords(2, 1f, 4f);
+		assertEquals(5.0, f.getCurveLength(), 1e-6);
+		f.updateBoundingBox();
+		assertEquals(1f, f.getX2(), DELTA);
+		assertEquals(4f, f.getY2(), DELTA);
+		f.insertNode(1, 0f, 3f, false);
+		assertEquals(3.0 + Math.sqrt(10.0) + 4.0, f.getCurveLength(), 1e-6);
+		f.deleteNode(1);
+		assertEquals(5.0, f.getCurveLength(), 1e-6);
+
+		// moving an edge node inward shrinks the box on the next update
+		f.setNodeCoords(2, 1f, 1f);
+		f.updateBoundingBox();
+		assertEquals(1f, f.getY2(), DELTA);
+		assertEquals(2.0, f.getCurveLength(), 1e-6);
+	}
+
+	// -- Level of detail tests --
+
+	/** Tests that simplifying drops redundant nodes but keeps the originals. */
+	public void testSimplify() {
+		final float[][] simple = f.getSimplifiedNodes(1f);
+		compareNodes(new float[][] { { 0f, 2f }, { 0f, 0f } }, simple);
+		compareNodes(NODES, f.getNodes());
+
+		// a curve doubling back keeps its turning point
+		final float[][] simple2 = h.getSimplifiedNodes(1f);
+		compareNodes(new float[][] { { 0f, 2f, 0f }, { 0f, 0f, 0f } }, simple2);
+	}
+
+	/** Tests that detail is kept when nodes are farther apart than the scale. */
+	public void testSimplifyDetail() {
+		final float[][] nodes = { { 0f, 1f, 2f }, { 0f, 1f, 0f } };
+		final float[][] simple = OverlayUtil.simplify(nodes, 3, 0.5f);
+		compareNodes(nodes, simple);
+
+		// changing the nodes discards the cached simplification
+		f.getSimplifiedNodes(1f);
+		f.setNextNode(2f, 1f);
+		compareNodes(new float[][] { { 0f, 2f, 2f }, { 0f, 0f, 1f } },
+			f.getSimplifiedNodes(1f));
+	}
+
+	/** Tests that each scale gets its own level of detail, without sharing. */
+	public void testDetailLevels() {
+		assertTrue(f.getDetailLevel(1f) != f.getDetailLevel(0.01f));
+		assertEquals(f.getDetailLevel(1f), f.getDetailLevel(1.1f));
+
+		// drawing at one scale does not change the detail drawn at another
+		final float[][] nodes = { { 0f, 1f, 2f }, { 0f, 0.1f, 0f } };
+		final OverlayFreeform bump = new OverlayFreeform(ot, nodes);
+		assertEquals(2, bump.getSimplifiedNodes(1f)[0].length);
+		assertEquals(3, bump.getSimplifiedNodes(0.01f)[0].length);
+		assertEquals(2, bump.getSimplifiedNodes(1f)[0].length);
+	}
+
 	// -- Helpers --
 
 	/**
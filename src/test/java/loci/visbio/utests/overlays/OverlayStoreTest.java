@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.utests.overlays;
+
+import junit.framework.TestCase;
+import loci.visbio.overlays.OverlayMarker;
+import loci.visbio.overlays.OverlayObject;
+import loci.visbio.overlays.OverlayStore;
+import loci.visbio.overlays.OverlayTransform;
+
+/**
+ * Tests the sparse OverlayStore.
+ */
+public class OverlayStoreTest extends TestCase {
+
+	/** Overlay transform for test overlays. */
+	protected OverlayTransform ot;
+
+	/** Store under test, spanning a huge number of positions. */
+	protected OverlayStore store;
+
+	/** This method runs before each test. */
+	@Override
+	public void setUp() {
+		final DummyImageTransform it = new DummyImageTransform(null, "image");
+		ot = new DummyOverlayTransform(it, "Howdy");
+		store = new OverlayStore(800000);
+	}
+
+	/** Tests that only annotated positions are allocated and iterated. */
+	public void testSparse() {
+		assertEquals(0, store.getIndices().length);
+		assertNull(store.get(12345));
+		store.add(700000, new OverlayMarker(ot, 1f, 1f));
+		store.add(5, new OverlayMarker(ot, 2f, 2f));
+		store.add(5, new OverlayMarker(ot, 3f, 3f));
+		final int[] ndx = store.getIndices();
+		assertEquals(2, ndx.length);
+		assertEquals(5, ndx[0]);
+		assertEquals(700000, ndx[1]);
+		assertEquals(2, store.size(5));
+		assertEquals(3, store.getObjectCount());
+	}
+
+	/** Tests that emptied positions are released. */
+	public void testRemove() {
+		final OverlayObject obj = new OverlayMarker(ot, 1f, 1f);
+		store.add(42, obj);
+		assertTrue(store.remove(42, obj));
+		assertFalse(store.remove(42, obj));
+		assertNull(store.get(42));
+		assertEquals(0, store.getIndices().length);
+	}
+
+	/** Tests that shrinking the store discards positions beyond its end. */
+	public void testSetLength() {
+		store.add(10, new OverlayMarker(ot, 1f, 1f));
+		store.add(500000, new OverlayMarker(ot, 1f, 1f));
+		store.setLength(1000);
+		assertEquals(1000, store.getLength());
+		assertEquals(1, store.getIndices().length);
+		assertEquals(1, store.size(10));
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.utests.overlays;
+
+import junit.framework.TestCase;
+import loci.visbio.overlays.RoiStats;
+import loci.visbio.overlays.SpanMask;
+
+/**
+ * Tests computation of intensity statistics within span masks.
+ */
+public class RoiStatsTest extends TestCase {
+
+	/** Width and height of the test image. */
+	protected static final int SIZE = 10;
+
+	/** Tests that NaN samples are left out of every statistic. */
+	public void testNaN() {
+		final float[][] samples = new float[1][SIZE * SIZE];
+		for (int i = 0; i < samples[0].length; i++)
+			samples[0][i] = i % 2 == 0 ? Float.NaN : 5;
+		final SpanMask mask = SpanMask.makeBox(0f, 9f, 3f, 9f, SIZE, SIZE);
+		final RoiStats stats = RoiStats.compute(samples, SIZE, mask, 0);
+		assertEquals(2, stats.getCount(0));
+		assertEquals(10, stats.getSum(0), 0);
+		assertEquals(5, stats.getMean(0), 0);
+		assertEquals(0, stats.getStdDev(0), 0);
+	}
+
+	/** Tests each range component separately, across several rows. */
+	public void testComponents() {
+		final float[][] samples = new float[2][SIZE * SIZE];
+		for (int i = 0; i < SIZE * SIZE; i++) {
+			samples[0][i] = i / SIZE; // image row
+			samples[1][i] = -1;
+		}
+		// columns 0-1, domain rows 0-2 (image rows 7-9)
+		final SpanMask mask = SpanMask.makeBox(0f, 0f, 1f, 2f, SIZE, SIZE);
+		final RoiStats stats = RoiStats.compute(samples, SIZE, mask, 3);
+		assertEquals(2, stats.getRangeCount());
+		assertEquals(6, stats.getCount(0));
+		assertEquals(7, stats.getMin(0), 0);
+		assertEquals(9, stats.getMax(0), 0);
+		assertEquals(8, stats.getMean(0), 0);
+		assertEquals(Math.sqrt(2.0 / 3), stats.getStdDev(0), 1e-9);
+		assertEquals(-6, stats.getSum(1), 0);
+		assertEquals(-1, stats.getMin(1), 0);
+		assertEquals(-1, stats.getMax(1), 0);
+	}
+
+	/** Tests that a region holding no values has undefined statistics. */
+	public void testEmpty() {
+		final float[][] samples = new float[1][SIZE * SIZE];
+		for (int i = 0; i < samples[0].length; i++)
+			samples[0][i] = Float.NaN;
+		final SpanMask mask = SpanMask.makeBox(2f, 2f, 4f, 4f, SIZE, SIZE);
+		final RoiStats stats = RoiStats.compute(samples, SIZE, mask, 0);
+		assertEquals(0, stats.getCount(0));
+		assertEquals(0, stats.getSum(0), 0);
+		assertTrue(Double.isNaN(stats.getMin(0)));
+		assertTrue(Double.isNaN(stats.getMax(0)));
+		assertTrue(Double.isNaN(stats.getMean(0)));
+		assertTrue(Double.isNaN(stats.getStdDev(0)));
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * #%L
+ * VisBio application for visualization of multidimensional biological
+ * image data.
+ * %%
+ * Copyright (C) 2002 - 2014 Board of Regents of the University of
+ * Wisconsin-Madison.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.visbio.utests.overlays;
+
+import junit.framework.TestCase;
+import loci.visbio.overlays.RoiStats;
+import loci.visbio.overlays.SpanMask;
+
+/**
+ * Tests rasterization of overlay shapes into span masks, and the intensity
+ * statistics computed over them.
+ */
+public class SpanMaskTest extends TestCase {
+
+	/** Width and height of the test image. */
+	protected static final int SIZE = 10;
+
+	/** Tests that a box covers the pixels whose centers lie inside it. */
+	public void testBox() {
+		final SpanMask mask = SpanMask.makeBox(1.5f, 2f, 4f, 4.5f, SIZE, SIZE);
+		// columns 2-4, domain rows 2-4 (image rows 5-7)
+		assertEquals(3, mask.getSpanCount());
+		assertEquals(9, mask.getPixelCount());
+		assertEquals(5, mask.getRow(0));
+		assertEquals(2, mask.getStart(0));
+		assertEquals(5, mask.getEnd(0));
+	}
+
+	/** Tests that shapes are clipped to the image. */
+	public void testClip() {
+		final SpanMask mask = SpanMask.makeBox(-5f, -5f, 20f, 0f, SIZE, SIZE);
+		assertEquals(1, mask.getSpanCount());
+		assertEquals(SIZE - 1, mask.getRow(0));
+		assertEquals(SIZE, mask.getPixelCount());
+	}
+
+	/** Tests that an oval covers fewer pixels than its bounding box. */
+	public void testOval() {
+		final SpanMask oval = SpanMask.makeOval(0f, 0f, 8f, 8f, SIZE, SIZE);
+		final SpanMask box = SpanMask.makeBox(0f, 0f, 8f, 8f, SIZE, SIZE);
+		assertTrue(oval.getPixelCount() < box.getPixelCount());
+		// the center row spans the full diameter
+		assertEquals(9, oval.getEnd(4) - oval.getStart(4));
+	}
+
+	/** Tests that a polygon matching a box covers the same pixels. */
+	public void testPolygon() {
+		final float[][] square =
+			{ { 0.5f, 3.5f, 3.5f, 0.5f }, { 0.5f, 0.5f, 3.5f, 3.5f } };
+		final SpanMask mask = SpanMask.makePolygon(square, SIZE, SIZE);
+		assertEquals(9, mask.getPixelCount());
+		final float[][] triangle = { { 0f, 8f, 0f }, { 0f, 0f, 8f } };
+		final long area = SpanMask.makePolygon(triangle, SIZE, SIZE)
+			.getPixelCount();
+		assertTrue(area > 28 && area < 45);
+	}
+
+	/** Tests statistics computed within a mask. */
+	public void testStats() {
+		final float[][] samples = new float[1][SIZE * SIZE];
+		for (int i = 0; i < samples[0].length; i++)
+			samples[0][i] = i % SIZE;
+		final SpanMask mask = SpanMask.makeBox(2f, 0f, 4f, 1f, SIZE, SIZE);
+		final RoiStats stats = RoiStats.compute(samples, SIZE, mask, 0);
+		assertEquals(6, stats.getCount(0));
+		assertEquals(18, stats.getSum(0), 0);
+		assertEquals(2, stats.getMin(0), 0);
+		assertEquals(4, stats.getMax(0), 0);
+		assertEquals(3, stats.getMean(0), 0);
+		assertEquals(Math.sqrt(2.0 / 3), stats.getStdDev(0), 1e-9);
+	}
+
+}
@@ -322,6 +322,26 @@ public class MathUtilTest extends TestCase {
 		assertEquals(z2e, z2, DELTA);
 	}
 
+	/** Tests getDistSegWt over a prefix of a partially filled node buffer. */
+	public void testDistSegWtPrefix() {
+		// three real nodes followed by buffer nodes far from the query point
+		final float[][] buffer =
+			{ { 0f, 10f, 10f, 50f, 50f }, { 0f, 0f, 10f, 50f, 50f } };
+		final float[][] used = { { 0f, 10f, 10f }, { 0f, 0f, 10f } };
+
+		final double[] expected = MathUtil.getDistSegWt(used, 12f, 5f);
+		final double[] actual = MathUtil.getDistSegWt(buffer, 3, 12f, 5f);
+		assertEquals(2.0, expected[0], DELTA);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], actual[i], DELTA);
+		}
+
+		// a lone node is measured as a point; no nodes are infinitely far away
+		assertEquals(5.0, MathUtil.getDistSegWt(buffer, 1, 3f, 4f)[0], DELTA);
+		assertEquals(Double.MAX_VALUE,
+			MathUtil.getDistSegWt(buffer, 0, 3f, 4f)[0], DELTA);
+	}
+
 	// -- Helper Methods --
 
 	/** Compares two arrays of floats, item-wise. */